@@ -0,0 +1,23 @@
+package org.alpha.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Entry point of {@code benchmarks.jar}: runs JMH with the GC profiler, so every result has its
+ * allocation per operation ({@code gc.alloc.rate.norm}) next to its time per operation.
+ * <p>
+ * Takes the usual JMH arguments, e.g. {@code java -jar target/benchmarks.jar DlrBenchmark -rf json};
+ * giving any {@code -prof} replaces the GC profiler.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        String[] jmhArgs = args;
+        if (!Arrays.asList(args).contains("-prof")) {
+            jmhArgs = Arrays.copyOf(args, args.length + 2);
+            jmhArgs[args.length] = "-prof";
+            jmhArgs[args.length + 1] = "gc";
+        }
+        org.openjdk.jmh.Main.main(jmhArgs);
+    }
+}
@@ -0,0 +1,73 @@
+package org.alpha.benchmarks;
+
+import com.cloudhopper.commons.charset.Charset;
+import com.cloudhopper.commons.charset.CharsetUtil;
+import org.alpha.utils.SmsEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text to short_message bytes, per charset: {@link CharsetUtil#encode}, which allocates the result,
+ * against {@link SmsEncoder} writing into a reused buffer (no UTF-8 there: SMSCs do not take it).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CharsetBenchmark {
+
+    @Param({"GSM", "ISO-8859-1", "UCS-2", "UTF-8"})
+    public String charset;
+
+    @Param({"This is a test message for batch processing - Message #12345"})
+    public String text;
+
+    private Charset cloudhopperCharset;
+    private SmsEncoder.Encoding encoding;
+    private final byte[] buffer = new byte[1024];
+
+    @Setup
+    public void setUp() {
+        switch (charset) {
+            case "GSM" -> {
+                cloudhopperCharset = CharsetUtil.CHARSET_GSM;
+                encoding = SmsEncoder.Encoding.GSM7;
+            }
+            case "ISO-8859-1" -> {
+                cloudhopperCharset = CharsetUtil.CHARSET_ISO_8859_1;
+                encoding = SmsEncoder.Encoding.LATIN1;
+            }
+            case "UCS-2" -> {
+                cloudhopperCharset = CharsetUtil.CHARSET_UCS_2;
+                encoding = SmsEncoder.Encoding.UCS2;
+            }
+            default -> {
+                cloudhopperCharset = CharsetUtil.CHARSET_UTF_8;
+                encoding = null;
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] charsetUtil() {
+        return CharsetUtil.encode(text, cloudhopperCharset);
+    }
+
+    @Benchmark
+    public int smsEncoder() {
+        return encoding != null ? SmsEncoder.encode(text, encoding, buffer, 0) : 0;
+    }
+}
@@ -0,0 +1,97 @@
+package org.alpha.benchmarks;
+
+import com.cloudhopper.commons.charset.CharsetUtil;
+import org.alpha.utils.DeliveryReport;
+import org.alpha.utils.DlrCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery receipt text, both ways: the original {@code SmppServerAppDLU.convertDlrToString} and
+ * {@code SmppClientDLU.parseDlr} against {@link DlrCodec}, which writes and reads the bytes in place.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DlrBenchmark {
+    private static final String MESSAGE_ID = "18f3a2b4c5d60001";
+
+    private DeliveryReport report;
+    private long submitTime;
+    private long doneTime;
+    private final byte[] buffer = new byte[DlrCodec.MAX_LENGTH];
+    private final DlrCodec.Receipt receipt = new DlrCodec.Receipt();
+    private byte[] receiptBytes;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        report = new DeliveryReport(MESSAGE_ID, 1, 1, now.minusSeconds(5), now,
+                DeliveryReport.DeliveryStatus.DELIVRD, 0);
+        doneTime = System.currentTimeMillis();
+        submitTime = doneTime - 5000;
+        int length = DlrCodec.encode(buffer, 0, MESSAGE_ID, 1, 1, submitTime, doneTime,
+                DeliveryReport.DeliveryStatus.DELIVRD, 0, null);
+        receiptBytes = Arrays.copyOf(buffer, length);
+    }
+
+    @Benchmark
+    public byte[] legacyFormat() {
+        return CharsetUtil.encode(convertDlrToString(report), CharsetUtil.CHARSET_ISO_8859_1);
+    }
+
+    @Benchmark
+    public int codecFormat() {
+        return DlrCodec.encode(buffer, 0, MESSAGE_ID, 1, 1, submitTime, doneTime,
+                DeliveryReport.DeliveryStatus.DELIVRD, 0, null);
+    }
+
+    @Benchmark
+    public Map<String, String> legacyParse() {
+        return parseDlr(CharsetUtil.decode(receiptBytes, CharsetUtil.CHARSET_ISO_8859_1));
+    }
+
+    @Benchmark
+    public long codecParse() {
+        return receipt.wrap(receiptBytes, 0, receiptBytes.length) ? receipt.idHash() : 0;
+    }
+
+    // SmppServerAppDLU before DlrCodec
+    private static String convertDlrToString(DeliveryReport dlr) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd HHmmss");
+        return String.format("id:%s sub:%03d dlvrd:%03d submit date:%s done date:%s stat:%s err:%03d",
+                dlr.getMessageId(), dlr.getSubmittedParts(), dlr.getDeliveredParts(),
+                dlr.getSubmitDate().format(formatter), dlr.getDoneDate().format(formatter),
+                dlr.getStatus().getDescription(), dlr.getErrorCode());
+    }
+
+    // SmppClientDLU before DlrCodec
+    private static Map<String, String> parseDlr(String dlrMessage) {
+        Map<String, String> dlrDetails = new HashMap<>();
+        for (String part : dlrMessage.split(" ")) {
+            String[] keyValue = part.split(":");
+            if (keyValue.length == 2) {
+                dlrDetails.put(keyValue[0], keyValue[1]);
+            }
+        }
+        return dlrDetails;
+    }
+}
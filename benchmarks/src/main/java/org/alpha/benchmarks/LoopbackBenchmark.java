@@ -0,0 +1,386 @@
+package org.alpha.benchmarks;
+
+import com.cloudhopper.smpp.SmppBindType;
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.impl.DefaultSmppClient;
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.type.Address;
+import org.alpha.clients.AsyncSubmitEngine;
+import org.alpha.clients.SubmitSmTemplate;
+import org.alpha.server.ReceiptScheduler;
+import org.alpha.server.SmppServerEngine;
+import org.alpha.server.SubmitStages;
+import org.alpha.utils.AllocationMeter;
+import org.alpha.utils.DlrCodec;
+import org.alpha.utils.DlrCorrelationIndex;
+import org.alpha.utils.LatencyHistogram;
+import org.alpha.utils.PropertiesLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end throughput of the simulator in one JVM, over loopback: an embedded server set up like
+ * {@code SmppServerApp0} (its settings and its stages: auth, persist, respond, then a deliver_sm reply
+ * and a delivery receipt per message, offloaded), and client sessions bound to it that push a fixed number
+ * of submit_sm through submit &rarr; submit_sm_resp &rarr; deliver_sm and receipt.
+ * <p>
+ * The server reads {@code loopback.properties}: App0's settings with their own port, store and event log
+ * and no metrics endpoint, so the benchmark can run next to the simulator. The store is emptied first so
+ * nothing from an earlier run is replayed. Each session binds with its own system_id, which keeps every
+ * receipt on the session that submitted the message, where it is read after the submit_sm_resp.
+ * <p>
+ * After a warm-up round, the measured round reports the sustained submit and end-to-end TPS, the
+ * submit&rarr;resp and submit&rarr;receipt latency percentiles, GC count and time, and heap bytes allocated
+ * per message by the whole JVM (client and server). Receipts are sent as soon as possible rather than after
+ * a simulated network delay, and submit_sm are not throttled, so the server's own pacing of deliver_sm
+ * ({@code smpp.server.outboxMaxTps}) is what bounds the end-to-end rate.
+ * <p>
+ * Usage: {@code LoopbackBenchmark [--messages N] [--warmup N] [--sessions N] [--window N]
+ * [--executor virtual|platform] [--nonBlocking true|false] [--port N] [--minTps TPS] [--maxP99Millis MS]}
+ * <p>
+ * Exits with 1 when messages are lost or the submit TPS or submit&rarr;resp p99 misses its threshold, so it
+ * can gate a build on a dedicated box.
+ */
+public class LoopbackBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(LoopbackBenchmark.class);
+    private static final String PROPERTIES = "loopback.properties";
+    private static final String SYSTEM_ID = "loopback"; // session i binds as loopback-i
+    private static final long WINDOW_WAIT_TIMEOUT = 60000; // Max wait for a free window slot (in milliseconds)
+    private static final long REQUEST_EXPIRY_TIMEOUT = 30000; // submit_sm without response after this fail (in milliseconds)
+    private static final long DRAIN_TIMEOUT = 120000; // Max wait for the responses, then the deliver_sm (in milliseconds)
+    private static final int DELIVERIES_PER_MESSAGE = 2; // the reply deliver_sm and the receipt
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        logger.info("Loopback benchmark: {}", options);
+
+        ExecutorService serverExecutor = options.executor();
+        ExecutorService clientExecutor = options.executor();
+        ScheduledExecutorService monitorExecutor = Executors.newScheduledThreadPool(1);
+
+        // Receipts left over from an earlier run would be replayed at bind and count as unmatched
+        PropertiesLoader.init(PROPERTIES);
+        deleteRecursively(Path.of(PropertiesLoader.properties.storeDirectory));
+
+        // The server, as SmppServerApp0 runs it, but with immediate receipts and no throttling
+        SmppServerEngine server = new SmppServerEngine("loopback", PROPERTIES, serverExecutor);
+        ReceiptScheduler receipts = new ReceiptScheduler(server.getMessageIds(), server.getRegistry()::deliver,
+                ReceiptScheduler.Distribution.FIXED, 0, 0, 0, "DELIVRD:1");
+        server.pipeline()
+                .inline(SubmitStages.auth())
+                .inline(SubmitStages.persist(server.getMessageIds()))
+                .inline(SubmitStages.respond())
+                .offload(SubmitStages.reply(server.getRegistry(), "Server-0: Bye , World"))
+                .offload(SubmitStages.receipt(receipts, server.getMessageIds()));
+        server.configure(configuration -> {
+            configuration.setPort(options.port);
+            configuration.setDefaultWindowSize(options.window);
+            configuration.setNonBlockingSocketsEnabled(options.nonBlocking);
+            configuration.setMaxConnectionSize(Math.max(100, options.sessions));
+        });
+        receipts.start();
+        server.start();
+
+        DefaultSmppClient client = new DefaultSmppClient(clientExecutor, options.sessions, monitorExecutor);
+        List<AsyncSubmitEngine> engines = new ArrayList<>();
+        LoopbackHandler[] handlers = new LoopbackHandler[options.sessions];
+        boolean passed = false;
+        try {
+            for (int i = 0; i < options.sessions; i++) {
+                handlers[i] = new LoopbackHandler();
+                SmppSession session = client.bind(sessionConfig(options, i), handlers[i]);
+                engines.add(new AsyncSubmitEngine(session, handlers[i], WINDOW_WAIT_TIMEOUT));
+            }
+            logger.info("{} sessions bound", engines.size());
+
+            SubmitSmTemplate template = new SubmitSmTemplate(new Address((byte) 0x03, (byte) 0x00, "40404"),
+                    (byte) 0x01, (byte) 0x01, (byte) 0x00, SmppConstants.REGISTERED_DELIVERY_SMSC_RECEIPT_REQUESTED,
+                    false, "Loopback message #");
+            if (options.warmup > 0) {
+                Round warmup = new Round(options.warmup);
+                warmup.run(engines, handlers, template);
+                logger.info("Warm-up: {}", warmup);
+            }
+            Round round = new Round(options.messages);
+            round.run(engines, handlers, template);
+            logger.info("Result: {}", round);
+            passed = round.check(options);
+        } finally {
+            for (AsyncSubmitEngine engine : engines) {
+                engine.getSession().unbind(5000);
+                engine.getSession().destroy();
+            }
+            client.destroy();
+            receipts.close();
+            server.close();
+            monitorExecutor.shutdown();
+            clientExecutor.shutdown();
+            serverExecutor.shutdown();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static SmppSessionConfiguration sessionConfig(Options options, int index) {
+        SmppSessionConfiguration config = new SmppSessionConfiguration();
+        config.setName("loopback." + index);
+        config.setType(SmppBindType.TRANSCEIVER);
+        config.setHost("127.0.0.1");
+        config.setPort(options.port);
+        config.setSystemId(SYSTEM_ID + "-" + index);
+        config.setPassword(SYSTEM_ID);
+        config.setWindowSize(options.window);
+        config.setConnectTimeout(10000);
+        config.setRequestExpiryTimeout(REQUEST_EXPIRY_TIMEOUT);
+        config.setWindowMonitorInterval(1000);
+        return config;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * One run of a fixed number of messages and what it measured.
+     */
+    private static final class Round {
+        private final int messages;
+        private final LatencyHistogram submitResp = new LatencyHistogram();
+        private final LatencyHistogram submitReceipt = new LatencyHistogram();
+        // SMSC message_id -> message index and submit time, matched when the receipt arrives
+        private final DlrCorrelationIndex index;
+        private final CountDownLatch responses;
+        private final CountDownLatch deliveries;
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder unmatched = new LongAdder();
+        private long submitNanos;
+        private long totalNanos;
+        private long gcCount;
+        private long gcMillis;
+        private long allocated;
+
+        Round(int messages) {
+            this.messages = messages;
+            this.index = new DlrCorrelationIndex(messages, TimeUnit.HOURS.toMillis(1));
+            this.responses = new CountDownLatch(messages);
+            this.deliveries = new CountDownLatch(messages * DELIVERIES_PER_MESSAGE);
+        }
+
+        void run(List<AsyncSubmitEngine> engines, LoopbackHandler[] handlers, SubmitSmTemplate template) throws Exception {
+            for (LoopbackHandler handler : handlers) {
+                handler.round = this;
+            }
+            Address destination = template.destination("44555519205");
+            long gcCountBefore = gcCount();
+            long gcMillisBefore = gcMillis();
+            long allocatedBefore = AllocationMeter.totalAllocatedBytes();
+            long start = System.nanoTime();
+
+            for (int i = 0; i < messages; i++) {
+                AsyncSubmitEngine engine = engines.get(i % engines.size());
+                SubmitSm submit = template.create(destination, template.body().appendDecimal(i));
+                long messageIndex = i;
+                long sentNanos = System.nanoTime();
+                long sentMillis = System.currentTimeMillis();
+                // The callback runs on the session's I/O thread as the submit_sm_resp is read, so the entry exists
+                // before the same session reads the receipt
+                engine.submit(submit, 0, resp -> {
+                    if (resp.getCommandStatus() == SmppConstants.STATUS_OK) {
+                        index.put(resp.getMessageId(), messageIndex, sentMillis);
+                    }
+                }).whenComplete((resp, error) -> {
+                    if (error == null && resp.getCommandStatus() == SmppConstants.STATUS_OK) {
+                        submitResp.record(System.nanoTime() - sentNanos);
+                    } else {
+                        failed.increment();
+                        // No deliver_sm will come for it
+                        for (int d = 0; d < DELIVERIES_PER_MESSAGE; d++) {
+                            deliveries.countDown();
+                        }
+                    }
+                    responses.countDown();
+                });
+            }
+
+            if (!responses.await(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("{} submit_sm still unanswered", responses.getCount());
+            }
+            submitNanos = System.nanoTime() - start;
+            if (!deliveries.await(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("{} deliver_sm and receipts still missing", deliveries.getCount());
+            }
+            totalNanos = System.nanoTime() - start;
+            gcCount = gcCount() - gcCountBefore;
+            gcMillis = gcMillis() - gcMillisBefore;
+            allocated = allocatedBefore < 0 ? -1 : AllocationMeter.totalAllocatedBytes() - allocatedBefore;
+        }
+
+        void onDeliver(DeliverSm deliver, DlrCodec.Receipt receipt, DlrCorrelationIndex.Correlation correlation) {
+            if ((deliver.getEsmClass() & SmppConstants.ESM_CLASS_MT_SMSC_DELIVERY_RECEIPT) != 0) {
+                byte[] text = deliver.getShortMessage();
+                if (text != null && receipt.wrap(text, 0, text.length) && index.remove(receipt.idHash(), correlation)) {
+                    long elapsed = System.currentTimeMillis() - correlation.getSubmitTime();
+                    submitReceipt.record(TimeUnit.MILLISECONDS.toNanos(elapsed));
+                } else {
+                    unmatched.increment();
+                }
+            }
+            deliveries.countDown();
+        }
+
+        double submitTps() {
+            return messages / (submitNanos / 1e9);
+        }
+
+        double endToEndTps() {
+            return messages / (totalNanos / 1e9);
+        }
+
+        long lost() {
+            return failed.sum() + responses.getCount() + deliveries.getCount() + unmatched.sum();
+        }
+
+        boolean check(Options options) {
+            boolean passed = true;
+            if (lost() > 0) {
+                logger.error("FAIL: {} messages failed, unanswered, undelivered or unmatched", lost());
+                passed = false;
+            }
+            if (options.minTps > 0 && submitTps() < options.minTps) {
+                logger.error("FAIL: submit TPS {} below {}", String.format("%.0f", submitTps()), options.minTps);
+                passed = false;
+            }
+            double p99Millis = submitResp.snapshot().getValueAtPercentile(99) / 1e6;
+            if (options.maxP99Millis > 0 && p99Millis > options.maxP99Millis) {
+                logger.error("FAIL: submit->resp p99 {}ms above {}ms", String.format("%.3f", p99Millis),
+                        options.maxP99Millis);
+                passed = false;
+            }
+            if (passed) {
+                logger.info("PASS");
+            }
+            return passed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("messages=%d submitTps=%.0f endToEndTps=%.0f failed=%d lost=%d%n"
+                            + "  submit->resp    %s%n  submit->receipt %s%n  gc=%d collections %dms, %s bytes/message",
+                    messages, submitTps(), endToEndTps(), failed.sum(), lost(), submitResp.snapshot(),
+                    submitReceipt.snapshot(), gcCount, gcMillis,
+                    allocated < 0 ? "n/a" : String.format("%.0f", (double) allocated / messages));
+        }
+    }
+
+    /**
+     * Completes the engine's futures and hands every deliver_sm to the current round.
+     */
+    private static final class LoopbackHandler extends AsyncSubmitEngine.CompletionHandler {
+        // Reused for every receipt; the handler serves one session and is called on its I/O thread
+        private final DlrCodec.Receipt receipt = new DlrCodec.Receipt();
+        private final DlrCorrelationIndex.Correlation correlation = new DlrCorrelationIndex.Correlation();
+        private volatile Round round;
+
+        @Override
+        public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+            Round current = round;
+            if (pduRequest instanceof DeliverSm deliverSm && current != null) {
+                current.onDeliver(deliverSm, receipt, correlation);
+            }
+            return pduRequest.createResponse();
+        }
+    }
+
+    /**
+     * Command line parameters.
+     */
+    private static final class Options {
+        int messages = 100000;
+        int warmup = 20000;
+        int sessions = 4;
+        int window = 100;
+        boolean virtual = true;
+        boolean nonBlocking = true;
+        int port = 2875;
+        double minTps;
+        double maxP99Millis;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--messages" -> options.messages = Integer.parseInt(value);
+                    case "--warmup" -> options.warmup = Integer.parseInt(value);
+                    case "--sessions" -> options.sessions = Integer.parseInt(value);
+                    case "--window" -> options.window = Integer.parseInt(value);
+                    case "--executor" -> options.virtual = switch (value) {
+                        case "virtual" -> true;
+                        case "platform" -> false;
+                        default -> throw new IllegalArgumentException("Executor must be virtual or platform: " + value);
+                    };
+                    case "--nonBlocking" -> options.nonBlocking = Boolean.parseBoolean(value);
+                    case "--port" -> options.port = Integer.parseInt(value);
+                    case "--minTps" -> options.minTps = Double.parseDouble(value);
+                    case "--maxP99Millis" -> options.maxP99Millis = Double.parseDouble(value);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            return options;
+        }
+
+        ExecutorService executor() {
+            return virtual ? Executors.newVirtualThreadPerTaskExecutor()
+                    : Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("messages=%d warmup=%d sessions=%d window=%d executor=%s nonBlocking=%s port=%d",
+                    messages, warmup, sessions, window, virtual ? "virtual" : "platform", nonBlocking, port);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.alpha.benchmarks;
+
+import org.alpha.utils.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * message_id generation: the servers' original UUID substring against {@link SnowflakeIdGenerator},
+ * as a number and as text, from 4 threads sharing one generator as the session threads do.
+ * <p>
+ * {@code SnowflakeIdGeneratorTest} checks the generator for duplicates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MessageIdBenchmark {
+    private final SnowflakeIdGenerator hex = new SnowflakeIdGenerator(0, SnowflakeIdGenerator.Format.HEX);
+    private final SnowflakeIdGenerator decimal = new SnowflakeIdGenerator(0, SnowflakeIdGenerator.Format.DECIMAL);
+
+    @Benchmark
+    public String uuidSubstring() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Benchmark
+    public long snowflakeLong() {
+        return hex.nextLong();
+    }
+
+    @Benchmark
+    public String snowflakeHex() {
+        return hex.next();
+    }
+
+    @Benchmark
+    public String snowflakeDecimal() {
+        return decimal.next();
+    }
+}
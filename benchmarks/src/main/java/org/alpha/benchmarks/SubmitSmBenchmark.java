@@ -0,0 +1,105 @@
+package org.alpha.benchmarks;
+
+import com.cloudhopper.commons.charset.CharsetUtil;
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.tlv.Tlv;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoder;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoderContext;
+import com.cloudhopper.smpp.transcoder.PduTranscoder;
+import com.cloudhopper.smpp.type.Address;
+import org.alpha.clients.MessageSegmenter;
+import org.alpha.clients.SubmitSmTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and encoding the submit_sm of one batch message: the original {@code sendMessage} path
+ * (String.format, UTF-8 via CharsetUtil, a new PDU and addresses per message) against
+ * {@link SubmitSmTemplate}, which encodes the shared prefix once and only the suffix per message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SubmitSmBenchmark {
+    private static final int MAX_SHORT_MESSAGE_LENGTH = 255;
+    private static final String MESSAGE_TEMPLATE = "This is a test message for batch processing. "
+            + "Testing long message handling with proper payload configuration. "
+            + "Each message will be uniquely identified.";
+
+    private final PduTranscoder transcoder = new DefaultPduTranscoder(new DefaultPduTranscoderContext());
+    private SubmitSmTemplate template;
+    private Address destination;
+    private long index;
+
+    @Setup
+    public void setUp() {
+        // As BatchSmppClient builds it
+        template = new SubmitSmTemplate(new Address((byte) 0x03, (byte) 0x00, "40404"), (byte) 0x01, (byte) 0x01,
+                (byte) 0x00, SmppConstants.REGISTERED_DELIVERY_SMSC_RECEIPT_REQUESTED, false,
+                MESSAGE_TEMPLATE + " - Message #", new MessageSegmenter(MessageSegmenter.Mode.UDH_8BIT));
+        destination = template.destination("44555519205");
+    }
+
+    @Benchmark
+    public SubmitSm legacyCreate() throws Exception {
+        return legacy(index++);
+    }
+
+    @Benchmark
+    public List<SubmitSm> templateCreate() throws Exception {
+        long i = index++;
+        return template.createParts(destination, template.body().appendDecimal(i).append(" - ID: ").appendHex(i));
+    }
+
+    @Benchmark
+    public void legacyEncode(Blackhole bh) throws Exception {
+        SubmitSm submit = legacy(index);
+        submit.setSequenceNumber((int) index++);
+        bh.consume(transcoder.encode(submit));
+    }
+
+    @Benchmark
+    public void templateEncode(Blackhole bh) throws Exception {
+        long i = index++;
+        for (SubmitSm part : template.createParts(destination,
+                template.body().appendDecimal(i).append(" - ID: ").appendHex(i))) {
+            part.setSequenceNumber((int) i);
+            bh.consume(transcoder.encode(part));
+        }
+    }
+
+    // BatchSmppClient.sendMessage before SubmitSmTemplate, without the send
+    private static SubmitSm legacy(long index) throws Exception {
+        String messageText = String.format("%s - Message #%d - ID: %s", MESSAGE_TEMPLATE, index, UUID.randomUUID());
+        byte[] textBytes = CharsetUtil.encode(messageText, CharsetUtil.CHARSET_UTF_8);
+        SubmitSm submit = new SubmitSm();
+        submit.setRegisteredDelivery(SmppConstants.REGISTERED_DELIVERY_SMSC_RECEIPT_REQUESTED);
+        submit.setSourceAddress(new Address((byte) 0x03, (byte) 0x00, "40404"));
+        submit.setDestAddress(new Address((byte) 0x01, (byte) 0x01, "44555519205"));
+        if (textBytes.length <= MAX_SHORT_MESSAGE_LENGTH) {
+            submit.setShortMessage(textBytes);
+        } else {
+            submit.setShortMessage(new byte[0]);
+            submit.addOptionalParameter(new Tlv(SmppConstants.TAG_MESSAGE_PAYLOAD, textBytes));
+        }
+        submit.setDataCoding((byte) 0x08);
+        return submit;
+    }
+}
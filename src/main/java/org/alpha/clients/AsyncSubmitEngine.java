@@ -0,0 +1,318 @@
+package org.alpha.clients;
+
+import com.cloudhopper.commons.util.windowing.WindowFuture;
+import com.cloudhopper.smpp.PduAsyncResponse;
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
+import com.cloudhopper.smpp.pdu.*;
+import com.cloudhopper.smpp.type.SmppChannelException;
+import com.cloudhopper.smpp.type.SmppTimeoutException;
+import org.alpha.utils.AimdRateLimiter;
+import org.alpha.utils.LatencyRecorder;
+import org.alpha.utils.SmppEvents;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking submit_sm pipeline on top of a single bound {@link SmppSession}.
+ * <p>
+ * Requests are written with {@code sendRequestPdu(..., false)} so the caller only ever blocks while
+ * waiting for a free window slot, never for the submit_sm_resp. Responses are matched back to their
+ * {@link CompletableFuture} through the PDU reference object by {@link CompletionHandler}, which must be
+ * the handler the session was bound with. A single producer thread is enough to keep the window full.
+ * <p>
+ * Futures are completed on the session's I/O thread, so dependent stages should stay cheap or hop to
+ * another executor with the {@code *Async} variants.
+ * <p>
+ * An optional {@link AimdRateLimiter} paces the session: every submit takes a permit first, throttling
+ * responses (ESME_RTHROTTLED, ESME_RMSGQFUL) back the rate off and all other responses let it recover.
+ * <p>
+ * With a {@link LatencyRecorder.Scope}, the time spent waiting for a window slot and the submit to
+ * submit_sm_resp latency are recorded. The latter runs from the moment the submit is handed to the session
+ * (window wait included), or from its intended send time when the caller provides one, which keeps an
+ * open-loop load free of coordinated omission.
+ * <p>
+ * The window wait and each response are also emitted as {@link SmppEvents} when those are enabled.
+ */
+public final class AsyncSubmitEngine {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncSubmitEngine.class);
+
+    private final SmppSession session;
+    private final String systemId;
+    private final long windowWaitTimeout;
+    private final AimdRateLimiter rateLimiter;
+    private volatile long lastActivity = System.nanoTime(); // last response seen on the session
+    private volatile Consumer<AsyncSubmitEngine> closeListener;
+    private volatile LatencyRecorder.Scope latencyScope;
+
+    /**
+     * @param session           a session bound with a {@link CompletionHandler}
+     * @param handler           the handler the session was bound with
+     * @param windowWaitTimeout max time (ms) a submit may wait for a free window slot
+     */
+    public AsyncSubmitEngine(SmppSession session, CompletionHandler handler, long windowWaitTimeout) {
+        this(session, handler, windowWaitTimeout, null);
+    }
+
+    /**
+     * @param session           a session bound with a {@link CompletionHandler}
+     * @param handler           the handler the session was bound with
+     * @param windowWaitTimeout max time (ms) a submit may wait for a free window slot
+     * @param rateLimiter       per-session rate limiter, or null to send as fast as the window allows
+     */
+    public AsyncSubmitEngine(SmppSession session, CompletionHandler handler, long windowWaitTimeout,
+                             AimdRateLimiter rateLimiter) {
+        this.session = session;
+        this.systemId = session.getConfiguration().getSystemId();
+        this.windowWaitTimeout = windowWaitTimeout;
+        this.rateLimiter = rateLimiter;
+        handler.attach(this);
+    }
+
+    /**
+     * Writes the submit_sm to the session and returns immediately once it holds a window slot.
+     *
+     * @param submit The PDU to send; its reference object is used by the engine
+     * @return A future completed with the submit_sm_resp, or exceptionally on expiry or channel failure
+     */
+    public CompletableFuture<SubmitSmResp> submit(SubmitSm submit) {
+        return submit(submit, 0);
+    }
+
+    /**
+     * Same as {@link #submit(SubmitSm)}, with latency measured from when the submit was meant to be sent.
+     *
+     * @param submit             The PDU to send; its reference object is used by the engine
+     * @param intendedStartNanos {@link System#nanoTime()} at which the submit was scheduled, or 0 for now
+     * @return A future completed with the submit_sm_resp, or exceptionally on expiry or channel failure
+     */
+    public CompletableFuture<SubmitSmResp> submit(SubmitSm submit, long intendedStartNanos) {
+        return submit(submit, intendedStartNanos, null);
+    }
+
+    /**
+     * Same as {@link #submit(SubmitSm, long)}, with a callback that sees the response before anything else.
+     * Unlike a stage added to the returned future, which runs on the caller's thread when the response beat
+     * it, the callback always runs on the session's I/O thread before it reads the next PDU; e.g. to expect
+     * the delivery receipt of the message before that receipt can arrive.
+     *
+     * @param submit             The PDU to send; its reference object is used by the engine
+     * @param intendedStartNanos {@link System#nanoTime()} at which the submit was scheduled, or 0 for now
+     * @param onResponse         called with the submit_sm_resp (or its equivalent for a generic_nack), or null
+     * @return A future completed with the submit_sm_resp, or exceptionally on expiry or channel failure
+     */
+    public CompletableFuture<SubmitSmResp> submit(SubmitSm submit, long intendedStartNanos,
+                                                  Consumer<? super SubmitSmResp> onResponse) {
+        PendingSubmit pending = new PendingSubmit(submit, systemId, latencyScope, onResponse);
+        submit.setReferenceObject(pending);
+        try {
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
+            }
+            long sendStart = System.nanoTime();
+            pending.startNanos = intendedStartNanos != 0 ? intendedStartNanos : sendStart;
+            SmppEvents.WindowAcquire event = new SmppEvents.WindowAcquire();
+            event.begin();
+            try {
+                session.sendRequestPdu(submit, windowWaitTimeout, false);
+            } catch (Exception e) {
+                event.commandStatus = -1;
+                throw e;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.pdu = "submit_sm";
+                    event.sequenceNumber = submit.getSequenceNumber();
+                    event.systemId = systemId;
+                    event.commit();
+                }
+            }
+            if (pending.scope != null) {
+                pending.scope.record(LatencyRecorder.Metric.WINDOW_WAIT, System.nanoTime() - sendStart);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.completeExceptionally(e);
+        } catch (Exception e) {
+            pending.completeExceptionally(e);
+        }
+        return pending;
+    }
+
+    /**
+     * @return Number of submits currently holding a window slot
+     */
+    public int getOutstanding() {
+        return session.getSendWindow().getSize();
+    }
+
+    /**
+     * @return Nanoseconds since the last response was received on the session
+     */
+    public long getIdleNanos() {
+        return System.nanoTime() - lastActivity;
+    }
+
+    /**
+     * @param closeListener called on the I/O thread when the channel closes unexpectedly, after the
+     *                      in-flight submits have been failed
+     */
+    public void setCloseListener(Consumer<AsyncSubmitEngine> closeListener) {
+        this.closeListener = closeListener;
+    }
+
+    /**
+     * @param latencyScope histograms this session records into, or null to record nothing
+     */
+    public void setLatencyScope(LatencyRecorder.Scope latencyScope) {
+        this.latencyScope = latencyScope;
+    }
+
+    public LatencyRecorder.Scope getLatencyScope() {
+        return latencyScope;
+    }
+
+    public SmppSession getSession() {
+        return session;
+    }
+
+    public AimdRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    void markActive() {
+        lastActivity = System.nanoTime();
+    }
+
+    // Feed the response status back into the rate limiter
+    void onResponse(int commandStatus) {
+        markActive();
+        if (rateLimiter == null) {
+            return;
+        }
+        if (commandStatus == SmppConstants.STATUS_THROTTLED || commandStatus == SmppConstants.STATUS_MSGQFUL) {
+            rateLimiter.onThrottled();
+        } else {
+            rateLimiter.onSuccess();
+        }
+    }
+
+    // Fail everything still sitting in the window, e.g. after the channel dropped
+    void failOutstanding(Throwable cause) {
+        for (WindowFuture<Integer, PduRequest, PduResponse> future : session.getSendWindow().createSortedSnapshot().values()) {
+            if (future.getRequest().getReferenceObject() instanceof PendingSubmit pending) {
+                pending.completeExceptionally(cause);
+            }
+        }
+    }
+
+    // Future carrying the originating request so non-submit_sm_resp replies can be mapped back
+    private static final class PendingSubmit extends CompletableFuture<SubmitSmResp> {
+        private final SubmitSm request;
+        private final String systemId;
+        private final LatencyRecorder.Scope scope;
+        private final Consumer<? super SubmitSmResp> onResponse;
+        private volatile long startNanos;
+
+        PendingSubmit(SubmitSm request, String systemId, LatencyRecorder.Scope scope,
+                      Consumer<? super SubmitSmResp> onResponse) {
+            this.request = request;
+            this.systemId = systemId;
+            this.scope = scope;
+            this.onResponse = onResponse;
+        }
+
+        void completeWith(PduResponse response) {
+            if (scope != null) {
+                scope.record(LatencyRecorder.Metric.SUBMIT_RESP, System.nanoTime() - startNanos);
+            }
+            SmppEvents.Response event = new SmppEvents.Response();
+            if (event.shouldCommit()) {
+                event.sequenceNumber = response.getSequenceNumber();
+                event.systemId = systemId;
+                event.commandStatus = response.getCommandStatus();
+                event.latency = System.nanoTime() - startNanos;
+                event.commit();
+            }
+            SubmitSmResp resp;
+            if (response instanceof SubmitSmResp submitResp) {
+                resp = submitResp;
+            } else {
+                // generic_nack and friends: surface the status through a regular submit_sm_resp
+                resp = request.createResponse();
+                resp.setCommandStatus(response.getCommandStatus());
+            }
+            if (onResponse != null) {
+                onResponse.accept(resp);
+            }
+            complete(resp);
+        }
+    }
+
+    /**
+     * Session handler that completes the engine's futures. Subclass it to handle inbound requests
+     * such as deliver_sm.
+     */
+    public static class CompletionHandler extends DefaultSmppSessionHandler {
+        private volatile AsyncSubmitEngine engine;
+
+        public CompletionHandler() {
+            super(logger);
+        }
+
+        void attach(AsyncSubmitEngine engine) {
+            this.engine = engine;
+        }
+
+        /**
+         * @return The engine driving this handler's session, or null before the bind completed
+         */
+        protected AsyncSubmitEngine getEngine() {
+            return engine;
+        }
+
+        @Override
+        public void fireExpectedPduResponseReceived(PduAsyncResponse pduAsyncResponse) {
+            if (pduAsyncResponse.getRequest().getReferenceObject() instanceof PendingSubmit pending) {
+                AsyncSubmitEngine current = engine;
+                if (current != null) {
+                    current.onResponse(pduAsyncResponse.getResponse().getCommandStatus());
+                }
+                pending.completeWith(pduAsyncResponse.getResponse());
+            } else {
+                AsyncSubmitEngine current = engine;
+                if (current != null) {
+                    current.markActive();
+                }
+                super.fireExpectedPduResponseReceived(pduAsyncResponse);
+            }
+        }
+
+        @Override
+        public void firePduRequestExpired(PduRequest pduRequest) {
+            if (pduRequest.getReferenceObject() instanceof PendingSubmit pending) {
+                pending.completeExceptionally(new SmppTimeoutException(
+                        "submit_sm expired without response [seq " + pduRequest.getSequenceNumber() + "]"));
+            } else {
+                logger.warn("PDU request expired: {}", pduRequest);
+            }
+        }
+
+        @Override
+        public void fireChannelUnexpectedlyClosed() {
+            AsyncSubmitEngine current = engine;
+            if (current != null) {
+                current.failOutstanding(new SmppChannelException("Channel unexpectedly closed"));
+                Consumer<AsyncSubmitEngine> listener = current.closeListener;
+                if (listener != null) {
+                    listener.accept(current);
+                }
+            }
+            super.fireChannelUnexpectedlyClosed();
+        }
+    }
+}
@@ -1,21 +1,25 @@
 package org.alpha.clients;
 
-import com.cloudhopper.commons.charset.CharsetUtil;
 import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppSession;
 import com.cloudhopper.smpp.SmppSessionConfiguration;
 import com.cloudhopper.smpp.SmppBindType;
-import com.cloudhopper.smpp.SmppSession;
 import com.cloudhopper.smpp.impl.DefaultSmppClient;
-import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
 import com.cloudhopper.smpp.pdu.*;
 import com.cloudhopper.smpp.type.Address;
-import com.cloudhopper.smpp.tlv.Tlv;
+import org.alpha.utils.AimdRateLimiter;
+import org.alpha.utils.DlrCodec;
+import org.alpha.utils.DlrCorrelationIndex;
+import org.alpha.utils.LatencyRecorder;
+import org.alpha.utils.MetricsHttpServer;
 import org.alpha.utils.PropertiesLoader;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.concurrent.*;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,9 +27,19 @@ import org.slf4j.LoggerFactory;
 public class BatchSmppClient {
     private static final Logger logger = LoggerFactory.getLogger(BatchSmppClient.class);
     private static final int BATCH_SIZE = 1000; // Number of messages to send in a batch
-    private static final int CONCURRENT_REQUESTS = 100; // Number of concurrent requests to handle
+    private static final int CONCURRENT_REQUESTS = 100; // Window size: submits in flight without a response
     private static final int REQUEST_TIMEOUT = 100000; // Timeout for each message submission (in milliseconds)
-    private static final int MAX_SHORT_MESSAGE_LENGTH = 255; // Maximum length for a short message in SMPP
+    private static final double THROTTLE_DECREASE_FACTOR = 0.5; // Rate multiplier applied on a throttling response
+    private static final long THROTTLE_COOLDOWN = 1000; // Minimum time between two rate decreases (in milliseconds)
+    private static final int MAX_IN_FLIGHT = 10000; // Records read ahead of the lowest unanswered one (backpressure)
+    private static final long PROGRESS_INTERVAL = 5000; // Progress log and checkpoint flush interval (in milliseconds)
+    private static final String DEFAULT_DESTINATION = "44555519205"; // Destination for the synthetic batch
+    private static final double RETRY_BACKOFF_MULTIPLIER = 2.0; // Growth of the delay between two retries
+    private static final String DEFAULT_RETRY_SPOOL = "batch.retry"; // Retry spool of the synthetic batch
+    private static final int MAX_MISSED_ENQUIRE_LINKS = 2; // Unanswered keepalives before a bind is replaced
+    private static final long DLR_EXPIRY_INTERVAL = 60000; // Purge interval of receipts that never came (in milliseconds)
+    private static final String DEFAULT_LATENCY_REPORT = "batch.latency"; // Latency report of the synthetic batch
+    private static final String LATENCY_MBEAN = "org.alpha:type=LatencyRecorder,name=batch"; // JMX name for on-demand dumps
 
     public static void main(String[] args) throws Exception {
         // Executor for task submission
@@ -34,31 +48,101 @@ public class BatchSmppClient {
         // Scheduled executor for monitoring tasks
         ScheduledExecutorService monitorExecutor = Executors.newScheduledThreadPool(1);
 
-        // Create SMPP client with the specified configuration
-        DefaultSmppClient clientBootstrap = new DefaultSmppClient(executor, CONCURRENT_REQUESTS, monitorExecutor);
-
         // Create and configure SMPP session
         SmppSessionConfiguration config = createSessionConfig();
-        DefaultSmppSessionHandler sessionHandler = new BatchClientSmppSessionHandler();
 
-        SmppSession session = null;
-        List<Future<SubmitSmResp>> futures = new ArrayList<>();
+        // Create SMPP client with the specified configuration (one extra session for the warm standby)
+        DefaultSmppClient clientBootstrap = new DefaultSmppClient(executor, PropertiesLoader.properties.clientBindCount + 1, monitorExecutor);
+
+        // enquire_link on idle binds; a bind is replaced after repeated missed responses
+        SessionSupervisor supervisor = new SessionSupervisor(PropertiesLoader.properties.clientEnquireLinkInterval,
+                PropertiesLoader.properties.clientEnquireLinkTimeout, MAX_MISSED_ENQUIRE_LINKS, executor);
+
+        // Results are aggregated as responses arrive; nothing per message is kept
+        CampaignStats stats = new CampaignStats();
+
+        // SMSC message_id -> message index and submit time, matched when the delivery receipt arrives
+        DlrCorrelationIndex dlrIndex = new DlrCorrelationIndex(PropertiesLoader.properties.clientDlrExpectedPending,
+                PropertiesLoader.properties.clientDlrTtl);
+
+        // submit->resp, submit->dlr and window wait per session and host; readable over JMX while running
+        LatencyRecorder latency = new LatencyRecorder();
+        latency.register(LATENCY_MBEAN);
+
+        // Pool of binds; each submit goes to the bind with the fewest outstanding window slots
+        SmppSessionPool pool = new SmppSessionPool(clientBootstrap, List.of(config), PropertiesLoader.properties.clientBindCount,
+                PropertiesLoader.properties.clientWarmStandby, REQUEST_TIMEOUT,
+                () -> new BatchClientSmppSessionHandler(dlrIndex, stats),
+                BatchSmppClient::createRateLimiter, supervisor, executor, monitorExecutor);
+        pool.setLatencyRecorder(latency);
+        pool.setPartListener((resp, messageId) -> expectReceipt(dlrIndex, resp, messageId));
+
+        // Optional recipient file (CSV or JSONL); without it a synthetic batch is sent
+        Path recipientFile = args.length > 0 ? Path.of(args[0]) : null;
+        Path checkpointFile = recipientFile != null ? recipientFile.resolveSibling(recipientFile.getFileName() + ".checkpoint") : null;
+        CampaignCheckpoint checkpoint = new CampaignCheckpoint(checkpointFile, MAX_IN_FLIGHT);
+
+        // Retryable failures are spooled to disk and resent with backoff; leftovers are resumed next run
+        Path spoolFile = recipientFile != null ? recipientFile.resolveSibling(recipientFile.getFileName() + ".retry")
+                : Path.of(DEFAULT_RETRY_SPOOL);
+        RetrySpool spool = new RetrySpool(spoolFile);
+        RetryDrainer retryDrainer = new RetryDrainer(pool, spool, createRetryPolicy(),
+                AimdRateLimiter.fixed(PropertiesLoader.properties.clientRetryTps, 1), stats, executor);
+        Path latencyFile = recipientFile != null ? recipientFile.resolveSibling(recipientFile.getFileName() + ".latency")
+                : Path.of(DEFAULT_LATENCY_REPORT);
+        ScheduledFuture<?> progressTask = null;
+        ScheduledFuture<?> dlrExpiryTask = null;
+        MetricsHttpServer metrics = null;
 
         try {
             // Bind to SMPP server
-            session = clientBootstrap.bind(config, sessionHandler);
-            logger.info("SMPP session established successfully");
+            pool.start();
+            logger.info("SMPP sessions established successfully");
 
-            // Send batch of messages
-            sendBatchMessages(session, futures);
+            if (PropertiesLoader.properties.clientMetricsPort > 0) {
+                // Per bind counters, window occupancy and rates for Prometheus while the campaign runs
+                metrics = new MetricsHttpServer(PropertiesLoader.properties.clientMetricsPort, () -> boundSessions(pool));
+            }
+
+            int spooled = spool.open();
+            if (spooled > 0) {
+                logger.info("Resuming {} spooled retries from {}", spooled, spoolFile);
+            }
+            retryDrainer.start();
+
+            progressTask = monitorExecutor.scheduleAtFixedRate(() -> reportProgress(stats, checkpoint, spool),
+                    PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+            dlrExpiryTask = monitorExecutor.scheduleWithFixedDelay(() -> dlrIndex.expire(System.currentTimeMillis()),
+                    DLR_EXPIRY_INTERVAL, DLR_EXPIRY_INTERVAL, TimeUnit.MILLISECONDS);
+
+            if (recipientFile != null) {
+                // Stream the campaign file, resuming from the last checkpoint
+                sendCampaign(pool, recipientFile, checkpoint, retryDrainer, dlrIndex, stats);
+            } else {
+                // Send batch of messages
+                sendBatchMessages(pool, checkpoint, retryDrainer, dlrIndex, stats);
+            }
 
-            // Process responses for the sent messages
-            processResponses(futures);
+            // Wait for the responses of the sent messages and for their retries
+            awaitResponses(checkpoint, retryDrainer, spool, stats);
         } catch (Exception e) {
             logger.error("Error in batch processing", e);
         } finally {
+            if (progressTask != null) {
+                progressTask.cancel(false);
+            }
+            if (dlrExpiryTask != null) {
+                dlrExpiryTask.cancel(false);
+            }
+            // Stop resending; whatever is still spooled stays on disk for the next run
+            retryDrainer.stop();
+            spool.close();
+            if (metrics != null) {
+                metrics.close();
+            }
+            writeLatencyReport(latency, latencyFile);
             // Cleanup resources
-            cleanup(session, clientBootstrap, executor, monitorExecutor);
+            cleanup(pool, clientBootstrap, executor, monitorExecutor);
         }
     }
 
@@ -68,7 +152,7 @@ public class BatchSmppClient {
 
         // Set up SMPP session configuration
         SmppSessionConfiguration config = new SmppSessionConfiguration();
-        config.setWindowSize(CONCURRENT_REQUESTS); // Set window size (max concurrent requests)
+        config.setWindowSize(CONCURRENT_REQUESTS); // Set window size (max concurrent requests per bind)
         config.setName("batch.client.alpha"); // Name for the client
         config.setType(SmppBindType.TRANSCEIVER); // Bind type (bi-directional communication)
         config.setHost(PropertiesLoader.properties.clientHost); // SMPP server host
@@ -82,69 +166,119 @@ public class BatchSmppClient {
         return config;
     }
 
-    private static void sendBatchMessages(SmppSession session, List<Future<SubmitSmResp>> futures) {
-        // Generate message template
-        String messageTemplate = generateMessageTemplate();
+    // Bound sessions of the pool by name, unique per bind
+    private static Map<String, SmppSession> boundSessions(SmppSessionPool pool) {
+        Map<String, SmppSession> sessions = new HashMap<>();
+        for (AsyncSubmitEngine engine : pool.getEngines()) {
+            SmppSession session = engine.getSession();
+            sessions.put(session.getConfiguration().getName(), session);
+        }
+        return sessions;
+    }
+
+    private static AimdRateLimiter createRateLimiter() {
+        // Per-bind TPS ceiling; backs off on ESME_RTHROTTLED/ESME_RMSGQFUL and recovers additively
+        return new AimdRateLimiter(PropertiesLoader.properties.clientMaxTps, PropertiesLoader.properties.clientMinTps,
+                PropertiesLoader.properties.clientTpsIncreasePerSecond, THROTTLE_DECREASE_FACTOR,
+                THROTTLE_COOLDOWN, CONCURRENT_REQUESTS);
+    }
+
+    private static RetryPolicy createRetryPolicy() {
+        // Exponential backoff between attempts; permanent command_status values are never retried
+        return new RetryPolicy(PropertiesLoader.properties.clientRetryMaxAttempts,
+                PropertiesLoader.properties.clientRetryInitialBackoff, PropertiesLoader.properties.clientRetryMaxBackoff,
+                RETRY_BACKOFF_MULTIPLIER);
+    }
+
+    private static void sendBatchMessages(SmppSessionPool pool, CampaignCheckpoint checkpoint, RetryDrainer retryDrainer,
+                                          DlrCorrelationIndex dlrIndex, CampaignStats stats) throws Exception {
+        // Generate message template; only the index and id differ between messages
+        SubmitSmTemplate template = createTemplate(generateMessageTemplate() + " - Message #");
+        Address destination = template.destination(DEFAULT_DESTINATION); // shared by every PDU
 
-        // Executor for handling message submissions concurrently
-        ExecutorService submissionExecutor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        // Random base so ids differ between runs; each message adds its index
+        long runId = ThreadLocalRandom.current().nextLong();
 
-        // Loop to send the batch of messages
+        // Loop to send the batch of messages; this thread only blocks while the window is full
         for (int i = 0; i < BATCH_SIZE; i++) {
-            final int messageIndex = i;
-            // Submit message sending task to executor
-            Future<SubmitSmResp> future = submissionExecutor.submit(() -> {
-                try {
-                    // Create a unique message for each iteration
-                    String messageText = String.format("%s - Message #%d - ID: %s",
-                            messageTemplate, messageIndex, UUID.randomUUID().toString());
-
-                    // Send the message and return the response
-                    return sendMessage(session, messageText);
-                } catch (Exception e) {
-                    logger.error("Error sending message " + messageIndex, e);
-                    throw e;
-                }
-            });
-            futures.add(future); // Add future to list for later processing
+            // Create a unique message for each iteration
+            List<SubmitSm> parts = createBatchMessage(template, destination, i, runId + i);
+
+            submitTracked(pool, parts, i, i + 1, checkpoint, retryDrainer, dlrIndex, stats);
         }
+    }
 
-        // Shutdown executor after submitting all tasks
-        submissionExecutor.shutdown();
-        try {
-            // Wait for all tasks to finish (with a timeout)
-            submissionExecutor.awaitTermination(5, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            logger.error("Submission executor interrupted", e);
-            Thread.currentThread().interrupt();
+    private static void sendCampaign(SmppSessionPool pool, Path recipientFile, CampaignCheckpoint checkpoint,
+                                     RetryDrainer retryDrainer, DlrCorrelationIndex dlrIndex,
+                                     CampaignStats stats) throws Exception {
+        long startOffset = checkpoint.load();
+        if (startOffset > 0) {
+            logger.info("Resuming campaign {} from offset {}", recipientFile, startOffset);
+        }
+        String messageTemplate = generateMessageTemplate();
+        SubmitSmTemplate template = createTemplate("");
+
+        try (RecipientFileReader reader = new RecipientFileReader(recipientFile, startOffset)) {
+            RecipientFileReader.Recipient recipient = new RecipientFileReader.Recipient();
+            long index = 0;
+            while (reader.next(recipient)) {
+                String messageText = recipient.getText() != null ? recipient.getText() : messageTemplate;
+                List<SubmitSm> parts = template.createParts(template.destination(recipient.getDestination()),
+                        template.body().append(messageText));
+                submitTracked(pool, parts, index++, recipient.getEndOffset(), checkpoint, retryDrainer, dlrIndex,
+                        stats);
+            }
         }
     }
 
-    private static SubmitSmResp sendMessage(SmppSession session, String messageText) throws Exception {
-        // Encode message text to byte array using UTF-8
-        byte[] textBytes = CharsetUtil.encode(messageText, CharsetUtil.CHARSET_UTF_8);
-
-        // Create a new SubmitSm (Submit Short Message) PDU
-        SubmitSm submit = new SubmitSm();
-        submit.setRegisteredDelivery(SmppConstants.REGISTERED_DELIVERY_SMSC_RECEIPT_REQUESTED); // Request delivery receipt
-        submit.setSourceAddress(new Address((byte) 0x03, (byte) 0x00, "40404")); // Source address (sender)
-        submit.setDestAddress(new Address((byte) 0x01, (byte) 0x01, "44555519205")); // Destination address (receiver)
-
-        // Handle message length appropriately based on short message limit
-        if (textBytes.length <= MAX_SHORT_MESSAGE_LENGTH) {
-            // For short messages, set the message content directly
-            submit.setShortMessage(textBytes);
-        } else {
-            // For longer messages, set payload and clear shortMessage
-            submit.setShortMessage(new byte[0]);
-            submit.addOptionalParameter(new Tlv(SmppConstants.TAG_MESSAGE_PAYLOAD, textBytes));
+    // Blocks while MAX_IN_FLIGHT records are unanswered, then submits and aggregates the outcome on completion
+    private static void submitTracked(SmppSessionPool pool, List<SubmitSm> parts, long messageId, long endOffset,
+                                      CampaignCheckpoint checkpoint, RetryDrainer retryDrainer,
+                                      DlrCorrelationIndex dlrIndex, CampaignStats stats) throws InterruptedException {
+        long seq = checkpoint.begin(endOffset);
+        stats.onSubmitted();
+
+        // Hand the message to the pipeline; concatenated parts go back to back on one bind as one message
+        CompletableFuture<MessageSubmitResult> outcome = parts.size() == 1
+                ? pool.submit(parts.get(0), 0, resp -> expectReceipt(dlrIndex, resp, messageId))
+                        .handle((resp, error) -> MessageSubmitResult.of(messageId, resp, error))
+                : pool.submitParts(messageId, parts);
+
+        // Failures are spooled (a disk write) before the record counts as done, so hop off the I/O thread
+        outcome.thenAcceptAsync(result -> {
+            retryDrainer.onResult(result, parts, 1);
+            checkpoint.complete(seq);
+        }, retryDrainer.getExecutor());
+    }
+
+    // Every accepted part gets its own receipt, all linked to the message they belong to. Runs on the session's
+    // I/O thread as the submit_sm_resp is read, so the entry exists before that session reads the receipt
+    private static void expectReceipt(DlrCorrelationIndex dlrIndex, SubmitSmResp resp, long messageId) {
+        if (resp != null && resp.getCommandStatus() == SmppConstants.STATUS_OK && resp.getMessageId() != null) {
+            dlrIndex.put(resp.getMessageId(), messageId, System.currentTimeMillis());
         }
+    }
 
-        // Set data coding to indicate UTF-8 encoding
-        submit.setDataCoding((byte) 0x08);
+    private static SubmitSmTemplate createTemplate(String prefix) {
+        // UDH_8BIT, UDH_16BIT or SAR split long texts into parts; PAYLOAD keeps them in message_payload
+        String concatenation = PropertiesLoader.properties.clientConcatenation;
+        MessageSegmenter segmenter = "PAYLOAD".equalsIgnoreCase(concatenation)
+                ? null : new MessageSegmenter(MessageSegmenter.Mode.valueOf(concatenation));
+
+        // Everything but the destination and the per-message suffix is encoded once
+        return new SubmitSmTemplate(
+                new Address((byte) 0x03, (byte) 0x00, "40404"), // Source address (sender)
+                (byte) 0x01, (byte) 0x01, // Destination TON/NPI
+                (byte) 0x00, // esm_class
+                SmppConstants.REGISTERED_DELIVERY_SMSC_RECEIPT_REQUESTED, // Request delivery receipt
+                PropertiesLoader.properties.clientLatin1Allowed, // GSM7, then Latin-1 (if allowed), then UCS-2
+                prefix,
+                segmenter);
+    }
 
-        // Submit the message and return the response
-        return session.submit(submit, REQUEST_TIMEOUT);
+    // Batch message suffix: " <index> - ID: <hex id>"
+    private static List<SubmitSm> createBatchMessage(SubmitSmTemplate template, Address destination, long index, long id) throws Exception {
+        return template.createParts(destination, template.body().appendDecimal(index).append(" - ID: ").appendHex(id));
     }
 
     private static String generateMessageTemplate() {
@@ -154,59 +288,51 @@ public class BatchSmppClient {
                 + "Each message will be uniquely identified.";
     }
 
-    private static void processResponses(List<Future<SubmitSmResp>> futures) {
-        int successful = 0; // Counter for successful messages
-        int failed = 0; // Counter for failed messages
-
-        // Loop through the responses
-        for (int i = 0; i < futures.size(); i++) {
-            try {
-                // Get the response for each future (message submission)
-                SubmitSmResp resp = futures.get(i).get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+    private static void awaitResponses(CampaignCheckpoint checkpoint, RetryDrainer retryDrainer, RetrySpool spool,
+                                       CampaignStats stats) throws Exception {
+        // Wait until every submitted message has been answered (or has expired)
+        if (!checkpoint.awaitDrained(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            logger.warn("Timed out waiting for {} outstanding responses", checkpoint.getInFlight());
+        }
+        checkpoint.flush();
 
-                // Check if the submission was successful
-                if (resp.getCommandStatus() == SmppConstants.STATUS_OK) {
-                    successful++;
-                    // Log every 100 successful messages
-                    if (successful % 100 == 0) {
-                        logger.info("Successfully sent {} messages", successful);
-                    }
-                } else {
-                    failed++;
-                    // Log failure with status code
-                    logger.warn("Message {} failed with status: {}", i, resp.getCommandStatus());
-                }
-            } catch (Exception e) {
-                failed++;
-                // Log failure in response retrieval
-                logger.error("Failed to get response for message " + i, e);
-            }
+        // Give the retries a chance to go out; the rest is resent on the next run
+        if (!retryDrainer.awaitEmpty(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            logger.warn("{} messages left in the retry spool for the next run", spool.size());
         }
+        spool.flush();
 
         // Log summary of batch processing
-        logger.info("Batch processing completed. Successful: {}, Failed: {}", successful, failed);
+        logger.info("Batch processing completed. Successful: {}, Failed: {}", stats.getSuccessful(), stats.getFailed());
+        logger.info("Batch results: {}", stats);
     }
 
-    private static void cleanup(SmppSession session, DefaultSmppClient clientBootstrap,
-                                ExecutorService executor, ScheduledExecutorService monitorExecutor) {
-        // Cleanup session resources
-        if (session != null) {
-            try {
-                // Unbind the session (close the connection)
-                session.unbind(5000);
-
-                // Log session statistics if available
-                if (session.hasCounters()) {
-                    logger.info("Final Statistics:");
-                    logger.info("Submitted Messages: {}", session.getCounters().getTxSubmitSM());
-                    // Uncomment for successful responses count if needed
-                    // logger.info("Successful Responses: {}", session.getCounters().getRxDataSM());
-                }
-                session.destroy(); // Destroy session after unbinding
-            } catch (Exception e) {
-                logger.error("Error during session cleanup", e);
-            }
+    private static void reportProgress(CampaignStats stats, CampaignCheckpoint checkpoint, RetrySpool spool) {
+        try {
+            spool.flush();
+            checkpoint.flush();
+        } catch (IOException e) {
+            logger.error("Unable to write campaign checkpoint", e);
+        }
+        logger.info("Progress: {} in-flight={} checkpoint={} spooled={}", stats, checkpoint.getInFlight(),
+                checkpoint.getCommittedOffset(), spool.size());
+    }
+
+    private static void writeLatencyReport(LatencyRecorder latency, Path latencyFile) {
+        logger.info("Latency:{}{}", System.lineSeparator(), latency.getReport());
+        try {
+            latency.dump(latencyFile.toString());
+            logger.info("Latency report written to {}", latencyFile);
+        } catch (IOException e) {
+            logger.error("Unable to write latency report", e);
         }
+    }
+
+    private static void cleanup(SmppSessionPool pool, DefaultSmppClient clientBootstrap,
+                                ExecutorService executor, ScheduledExecutorService monitorExecutor) {
+        // Unbind every session in the pool and log its final statistics
+        logger.info("Final Statistics:");
+        pool.close(PropertiesLoader.properties.clientUnbindTimeout);
 
         // Destroy the client bootstrap and shut down executors
         clientBootstrap.destroy();
@@ -215,16 +341,38 @@ public class BatchSmppClient {
         logger.info("Cleanup completed");
     }
 
-    // Custom handler for SMPP session events
-    private static class BatchClientSmppSessionHandler extends DefaultSmppSessionHandler {
-        public BatchClientSmppSessionHandler() {
-            super(logger);
+    // Custom handler for SMPP session events; submit responses and expiries are routed to the engine,
+    // delivery receipts are linked back to their message through the correlation index and timed
+    private static class BatchClientSmppSessionHandler extends AsyncSubmitEngine.CompletionHandler {
+        private final DlrCorrelationIndex dlrIndex;
+        private final CampaignStats stats;
+        // Reused for every receipt; the handler serves one session and is called on its I/O thread
+        private final DlrCodec.Receipt receipt = new DlrCodec.Receipt();
+        private final DlrCorrelationIndex.Correlation correlation = new DlrCorrelationIndex.Correlation();
+
+        BatchClientSmppSessionHandler(DlrCorrelationIndex dlrIndex, CampaignStats stats) {
+            this.dlrIndex = dlrIndex;
+            this.stats = stats;
         }
 
-        // Handle expired PDU requests
         @Override
-        public void firePduRequestExpired(PduRequest pduRequest) {
-            logger.warn("PDU request expired: {}", pduRequest);
+        public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+            if (pduRequest instanceof DeliverSm deliverSm
+                    && (deliverSm.getEsmClass() & SmppConstants.ESM_CLASS_MT_SMSC_DELIVERY_RECEIPT) != 0) {
+                byte[] text = deliverSm.getShortMessage();
+                // Parse in place and hash the id straight from the receipt bytes, no String needed
+                if (text != null && receipt.wrap(text, 0, text.length)) {
+                    boolean matched = dlrIndex.remove(receipt.idHash(), correlation);
+                    stats.onDeliveryReceipt(matched);
+                    LatencyRecorder.Scope scope = getEngine() != null ? getEngine().getLatencyScope() : null;
+                    if (matched && scope != null) {
+                        // Submit time is wall clock (ms), kept that way so it survives in the index for days
+                        long elapsed = System.currentTimeMillis() - correlation.getSubmitTime();
+                        scope.record(LatencyRecorder.Metric.SUBMIT_DLR, TimeUnit.MILLISECONDS.toNanos(elapsed));
+                    }
+                }
+            }
+            return pduRequest.createResponse();
         }
     }
 }
@@ -0,0 +1,138 @@
+package org.alpha.clients;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded in-flight tracker that turns out-of-order submit completions into a resumable offset.
+ * <p>
+ * Every record takes a slot in a fixed ring before it is submitted; when all records up to some point
+ * have completed, the low watermark advances to the end offset of the last one and their slots are
+ * released. The producer blocks once {@code capacity} records are outstanding, which is the
+ * backpressure between the file reader and the submit pipeline. The committed offset can be persisted
+ * to a small file and read back on restart; records after it may be sent again, never skipped.
+ */
+public class CampaignCheckpoint {
+    private final Path file;
+    private final int capacity;
+    private final AtomicLongArray endOffsets;
+    private final AtomicIntegerArray done;
+    private final Semaphore slots;
+    private volatile long nextSeq; // written only by the producer
+    private long lowSeq; // guarded by this
+    private volatile long committedOffset;
+
+    /**
+     * @param file     where the committed offset is persisted, or null to keep it in memory only
+     * @param capacity max number of records in flight
+     */
+    public CampaignCheckpoint(Path file, int capacity) {
+        this.file = file;
+        this.capacity = capacity;
+        this.endOffsets = new AtomicLongArray(capacity);
+        this.done = new AtomicIntegerArray(capacity);
+        this.slots = new Semaphore(capacity);
+    }
+
+    /**
+     * @return The persisted offset to resume from, or 0 when there is none
+     * @throws IOException If the checkpoint file exists but cannot be read
+     */
+    public long load() throws IOException {
+        if (file != null && Files.exists(file)) {
+            committedOffset = Long.parseLong(Files.readString(file, StandardCharsets.US_ASCII).trim());
+        }
+        return committedOffset;
+    }
+
+    /**
+     * Reserves a slot for the next record, blocking while the ring is full.
+     *
+     * @param endOffset offset just past the record
+     * @return Sequence to pass to {@link #complete(long)}
+     * @throws InterruptedException If interrupted while waiting for a slot
+     */
+    public long begin(long endOffset) throws InterruptedException {
+        slots.acquire();
+        long seq = nextSeq;
+        endOffsets.set((int) (seq % capacity), endOffset);
+        nextSeq = seq + 1;
+        return seq;
+    }
+
+    /**
+     * Marks the record finished (successfully or not) and advances the watermark when possible.
+     *
+     * @param seq sequence returned by {@link #begin(long)}
+     */
+    public void complete(long seq) {
+        done.set((int) (seq % capacity), 1);
+        synchronized (this) {
+            int released = 0;
+            while (lowSeq < nextSeq) {
+                int index = (int) (lowSeq % capacity);
+                if (done.get(index) == 0) {
+                    break;
+                }
+                done.set(index, 0);
+                committedOffset = endOffsets.get(index);
+                lowSeq++;
+                released++;
+            }
+            if (released > 0) {
+                slots.release(released);
+            }
+        }
+    }
+
+    /**
+     * @return Offset up to which every record has completed
+     */
+    public long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    /**
+     * @return Number of records begun but not yet covered by the watermark
+     */
+    public int getInFlight() {
+        return capacity - slots.availablePermits();
+    }
+
+    /**
+     * Waits until every begun record has completed.
+     *
+     * @param timeout max time to wait
+     * @param unit    unit of the timeout
+     * @return true if drained, false on timeout
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        if (slots.tryAcquire(capacity, timeout, unit)) {
+            slots.release(capacity);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Atomically writes the committed offset to the checkpoint file.
+     *
+     * @throws IOException If the file cannot be written
+     */
+    public void flush() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, Long.toString(committedOffset), StandardCharsets.US_ASCII);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
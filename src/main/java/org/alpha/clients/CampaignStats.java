@@ -0,0 +1,128 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Incremental result aggregation for a campaign: counters are updated as each submit completes, so
+ * nothing per message is retained.
+ */
+public class CampaignStats {
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder successful = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder errors = new LongAdder(); // no submit_sm_resp at all (timeout, channel)
+    private final LongAdder retried = new LongAdder(); // attempts that went to the retry spool instead of a final outcome
+    private final LongAdder receipts = new LongAdder(); // delivery receipts linked back to a submitted message
+    private final LongAdder unmatchedReceipts = new LongAdder(); // receipts with no pending submit (expired, other run)
+    private final ConcurrentHashMap<Integer, LongAdder> failedByStatus = new ConcurrentHashMap<>();
+
+    public void onSubmitted() {
+        submitted.increment();
+    }
+
+    /**
+     * Records the outcome of one submit; meant to be passed to {@code whenComplete}.
+     *
+     * @param resp  the submit_sm_resp, or null on error
+     * @param error the failure, or null on response
+     */
+    public void record(SubmitSmResp resp, Throwable error) {
+        if (error != null) {
+            failed.increment();
+            errors.increment();
+        } else if (resp.getCommandStatus() == SmppConstants.STATUS_OK) {
+            successful.increment();
+        } else {
+            failed.increment();
+            failedByStatus.computeIfAbsent(resp.getCommandStatus(), status -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Records the outcome of a (possibly concatenated) message as one result: successful only if every
+     * part was accepted, otherwise failed with the first error or non-OK command_status among its parts.
+     *
+     * @param result per-part outcome of the message
+     */
+    public void record(MessageSubmitResult result) {
+        if (result.isSuccess()) {
+            successful.increment();
+            return;
+        }
+        failed.increment();
+        if (result.getError() != null) {
+            errors.increment();
+        } else {
+            failedByStatus.computeIfAbsent(result.getCommandStatus(), status -> new LongAdder()).increment();
+        }
+    }
+
+    public void onRetryScheduled() {
+        retried.increment();
+    }
+
+    /**
+     * @param matched whether the receipt was linked to a pending submit
+     */
+    public void onDeliveryReceipt(boolean matched) {
+        (matched ? receipts : unmatchedReceipts).increment();
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getSuccessful() {
+        return successful.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    public long getReceipts() {
+        return receipts.sum();
+    }
+
+    public long getUnmatchedReceipts() {
+        return unmatchedReceipts.sum();
+    }
+
+    /**
+     * @return Failed responses by command_status, sorted by status
+     */
+    public Map<Integer, Long> getFailedByStatus() {
+        Map<Integer, Long> snapshot = new TreeMap<>();
+        failedByStatus.forEach((status, count) -> snapshot.put(status, count.sum()));
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("submitted=").append(getSubmitted())
+                .append(" successful=").append(getSuccessful())
+                .append(" failed=").append(getFailed())
+                .append(" errors=").append(getErrors())
+                .append(" retried=").append(getRetried())
+                .append(" receipts=").append(getReceipts())
+                .append(" unmatchedReceipts=").append(getUnmatchedReceipts());
+        getFailedByStatus().forEach((status, count) ->
+                sb.append(String.format(" status[0x%08X]=%d", status, count)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package org.alpha.clients;
+
+/**
+ * Offered load over the course of a load test, as a rate (TPS) for any point in time.
+ * <p>
+ * The warm-up runs at the start rate and is not part of the profile's duration; the profile proper then
+ * starts at {@code elapsed == 0}:
+ * <ul>
+ *     <li>CONSTANT: target rate throughout</li>
+ *     <li>RAMP: linear from start rate to target rate over the whole duration</li>
+ *     <li>STEP: {@code steps} equal plateaus from start rate up to target rate</li>
+ *     <li>SPIKE: start rate, with a burst at target rate in the middle of the run</li>
+ * </ul>
+ */
+public class LoadProfile {
+    public enum Shape {
+        CONSTANT, RAMP, STEP, SPIKE
+    }
+
+    private final Shape shape;
+    private final double startTps;
+    private final double targetTps;
+    private final long durationMillis;
+    private final int steps;
+    private final long spikeMillis;
+
+    /**
+     * @param shape          how the rate evolves
+     * @param startTps       rate at the start of the run (and during warm-up)
+     * @param targetTps      highest rate of the run
+     * @param durationMillis length of the measured run
+     * @param steps          number of plateaus of a STEP profile
+     * @param spikeMillis    length of the burst of a SPIKE profile
+     */
+    public LoadProfile(Shape shape, double startTps, double targetTps, long durationMillis, int steps, long spikeMillis) {
+        if (startTps <= 0 || targetTps <= 0 || durationMillis <= 0) {
+            throw new IllegalArgumentException("Rates and duration must be positive");
+        }
+        this.shape = shape;
+        this.startTps = startTps;
+        this.targetTps = targetTps;
+        this.durationMillis = durationMillis;
+        this.steps = Math.max(1, steps);
+        this.spikeMillis = Math.min(spikeMillis, durationMillis);
+    }
+
+    /**
+     * @param elapsedMillis time since the end of the warm-up; negative during warm-up
+     * @return Offered rate (TPS) at that time
+     */
+    public double rateAt(long elapsedMillis) {
+        if (elapsedMillis < 0) {
+            return startTps;
+        }
+        long elapsed = Math.min(elapsedMillis, durationMillis);
+        switch (shape) {
+            case RAMP:
+                return startTps + (targetTps - startTps) * elapsed / durationMillis;
+            case STEP:
+                if (steps == 1) {
+                    return targetTps;
+                }
+                int step = (int) Math.min(steps - 1, elapsed * steps / durationMillis);
+                return startTps + (targetTps - startTps) * step / (steps - 1);
+            case SPIKE:
+                long spikeStart = (durationMillis - spikeMillis) / 2;
+                return elapsed >= spikeStart && elapsed < spikeStart + spikeMillis ? targetTps : startTps;
+            default:
+                return targetTps;
+        }
+    }
+
+    /**
+     * @return Highest rate reached, used to size the pacing
+     */
+    public double getPeakTps() {
+        return shape == Shape.CONSTANT ? targetTps : Math.max(startTps, targetTps);
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return shape + " " + startTps + "->" + targetTps + " TPS over " + durationMillis + " ms";
+    }
+}
@@ -0,0 +1,138 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.tlv.Tlv;
+import com.cloudhopper.smpp.type.SmppInvalidArgumentException;
+import org.alpha.utils.SmsEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Splits long texts into concatenated SMS parts, either with a concatenation UDH in the short_message
+ * (8-bit or 16-bit reference) or with the SAR TLVs, instead of relying on message_payload.
+ * <p>
+ * Parts never split a GSM7 escape sequence or a UTF-16 surrogate pair. Reference numbers come from one
+ * {@link AtomicInteger}, so a single segmenter can be shared by all concurrent senders without locking;
+ * the 8-bit reference space wraps after 256 messages, which only matters per destination handset.
+ */
+public class MessageSegmenter {
+    private static final int MAX_PARTS = 255;
+
+    /**
+     * How the parts are linked together.
+     */
+    public enum Mode {
+        UDH_8BIT(6),
+        UDH_16BIT(7),
+        SAR(0);
+
+        private final int headerLength;
+
+        Mode(int headerLength) {
+            this.headerLength = headerLength;
+        }
+    }
+
+    private final Mode mode;
+    private final AtomicInteger references = new AtomicInteger();
+
+    public MessageSegmenter(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return The next reference number, wrapped to the width the mode carries
+     */
+    public int nextReference() {
+        int reference = references.getAndIncrement();
+        return mode == Mode.UDH_8BIT ? reference & 0xFF : reference & 0xFFFF;
+    }
+
+    /**
+     * @param encoding encoding of the text
+     * @return Units (septets for GSM7, characters otherwise) that fit in one part
+     */
+    public int partCapacity(SmsEncoder.Encoding encoding) {
+        if (mode != Mode.UDH_16BIT) {
+            // SAR parts get the 8-bit concatenation UDH added by the SMSC
+            return encoding.getConcatenatedCapacity();
+        }
+        // one more UDH octet costs one unit: 153->152 septets (fill bits included), 134->133, 67->66
+        return encoding.getConcatenatedCapacity() - 1;
+    }
+
+    /**
+     * Splits the text into linked parts.
+     *
+     * @param text      full message text
+     * @param encoding  encoding chosen for the text
+     * @param prototype creates a PDU with every field but the short_message set
+     * @return The parts in sending order
+     * @throws SmppInvalidArgumentException If a part is rejected by the PDU
+     * @throws IllegalArgumentException     If the text needs more than 255 parts
+     */
+    public List<SubmitSm> split(CharSequence text, SmsEncoder.Encoding encoding, Supplier<SubmitSm> prototype)
+            throws SmppInvalidArgumentException {
+        int capacity = partCapacity(encoding);
+        List<int[]> bounds = new ArrayList<>();
+        for (int start = 0; start < text.length(); ) {
+            int end = SmsEncoder.segmentEnd(text, start, encoding, capacity);
+            bounds.add(new int[]{start, end});
+            start = end;
+        }
+        if (bounds.size() > MAX_PARTS) {
+            throw new IllegalArgumentException("Message needs " + bounds.size() + " parts, max is " + MAX_PARTS);
+        }
+
+        int reference = nextReference();
+        int total = bounds.size();
+        List<SubmitSm> parts = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            int start = bounds.get(i)[0];
+            int end = bounds.get(i)[1];
+            int header = mode.headerLength;
+            byte[] shortMessage = new byte[header + SmsEncoder.encodedLength(text, start, end, encoding)];
+            SmsEncoder.encode(text, start, end, encoding, shortMessage, header);
+
+            SubmitSm part = prototype.get();
+            switch (mode) {
+                case UDH_8BIT -> {
+                    shortMessage[0] = 0x05; // UDH length
+                    shortMessage[1] = 0x00; // IEI: concatenated short message, 8-bit reference
+                    shortMessage[2] = 0x03; // IE length
+                    shortMessage[3] = (byte) reference;
+                    shortMessage[4] = (byte) total;
+                    shortMessage[5] = (byte) (i + 1);
+                    part.setEsmClass((byte) (part.getEsmClass() | SmppConstants.ESM_CLASS_UDHI_MASK));
+                }
+                case UDH_16BIT -> {
+                    shortMessage[0] = 0x06; // UDH length
+                    shortMessage[1] = 0x08; // IEI: concatenated short message, 16-bit reference
+                    shortMessage[2] = 0x04; // IE length
+                    shortMessage[3] = (byte) (reference >>> 8);
+                    shortMessage[4] = (byte) reference;
+                    shortMessage[5] = (byte) total;
+                    shortMessage[6] = (byte) (i + 1);
+                    part.setEsmClass((byte) (part.getEsmClass() | SmppConstants.ESM_CLASS_UDHI_MASK));
+                }
+                case SAR -> {
+                    part.addOptionalParameter(new Tlv(SmppConstants.TAG_SAR_MSG_REF_NUM,
+                            new byte[]{(byte) (reference >>> 8), (byte) reference}));
+                    part.addOptionalParameter(new Tlv(SmppConstants.TAG_SAR_TOTAL_SEGMENTS, new byte[]{(byte) total}));
+                    part.addOptionalParameter(new Tlv(SmppConstants.TAG_SAR_SEGMENT_SEQNUM, new byte[]{(byte) (i + 1)}));
+                }
+            }
+            part.setShortMessage(shortMessage);
+            parts.add(part);
+        }
+        return parts;
+    }
+}
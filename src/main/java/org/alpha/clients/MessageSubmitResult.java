@@ -0,0 +1,91 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+
+/**
+ * Outcome of one logical message: the submit_sm_resp (or failure) of each of its parts, in part order.
+ */
+public class MessageSubmitResult {
+    private final long messageId;
+    private final SubmitSmResp[] responses;
+    private final Throwable[] errors;
+
+    public MessageSubmitResult(long messageId, int parts) {
+        this.messageId = messageId;
+        this.responses = new SubmitSmResp[parts];
+        this.errors = new Throwable[parts];
+    }
+
+    /**
+     * @return The result of a single-part message
+     */
+    public static MessageSubmitResult of(long messageId, SubmitSmResp resp, Throwable error) {
+        MessageSubmitResult result = new MessageSubmitResult(messageId, 1);
+        result.set(0, resp, error);
+        return result;
+    }
+
+    void set(int part, SubmitSmResp resp, Throwable error) {
+        responses[part] = resp;
+        errors[part] = error;
+    }
+
+    public long getMessageId() {
+        return messageId;
+    }
+
+    public int getPartCount() {
+        return responses.length;
+    }
+
+    /**
+     * @return The submit_sm_resp of the part, or null if it failed without one
+     */
+    public SubmitSmResp getResponse(int part) {
+        return responses[part];
+    }
+
+    /**
+     * @return The failure of the part (timeout, channel), or null if it got a response
+     */
+    public Throwable getError(int part) {
+        return errors[part];
+    }
+
+    /**
+     * @return true if every part was accepted by the SMSC
+     */
+    public boolean isSuccess() {
+        for (int i = 0; i < responses.length; i++) {
+            if (errors[i] != null || responses[i].getCommandStatus() != SmppConstants.STATUS_OK) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The first failure among the parts, or null if none failed without a response
+     */
+    public Throwable getError() {
+        for (Throwable error : errors) {
+            if (error != null) {
+                return error;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The first non-OK command_status among the parts, or STATUS_OK
+     */
+    public int getCommandStatus() {
+        for (SubmitSmResp resp : responses) {
+            if (resp != null && resp.getCommandStatus() != SmppConstants.STATUS_OK) {
+                return resp.getCommandStatus();
+            }
+        }
+        return SmppConstants.STATUS_OK;
+    }
+}
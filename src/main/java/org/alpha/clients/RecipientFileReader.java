@@ -0,0 +1,229 @@
+package org.alpha.clients;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams campaign recipients from a CSV or JSONL file using chunked NIO reads into one reusable direct
+ * buffer, so heap use does not depend on the file size.
+ * <p>
+ * Supported line formats (blank lines and lines starting with {@code #} are skipped):
+ * <pre>
+ * 44555519205
+ * 44555519205,Hello there
+ * 44555519205,"Hello, ""quoted"" there"
+ * {"to":"44555519205","text":"Hello there"}
+ * </pre>
+ * Each record reports the file offset just past its line, which is what a checkpoint stores to resume.
+ */
+public class RecipientFileReader implements Closeable {
+    private static final int CHUNK_SIZE = 1 << 20; // Bytes read from the file per system call
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    private final byte[] line = new byte[CHUNK_SIZE];
+    private long bufferStartOffset; // file offset of buffer position 0
+    private boolean eof;
+
+    /**
+     * Reusable record filled by {@link #next(Recipient)}.
+     */
+    public static final class Recipient {
+        private String destination;
+        private String text;
+        private long endOffset;
+
+        public String getDestination() {
+            return destination;
+        }
+
+        /**
+         * @return Per-recipient text, or null when the line only carries a destination
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return File offset just past this record's line
+         */
+        public long getEndOffset() {
+            return endOffset;
+        }
+    }
+
+    /**
+     * @param file        recipient file
+     * @param startOffset offset to resume from, usually a checkpoint; must be at a line start
+     * @throws IOException If the file cannot be opened or positioned
+     */
+    public RecipientFileReader(Path file, long startOffset) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.channel.position(startOffset);
+        this.bufferStartOffset = startOffset;
+        this.buffer.flip(); // start empty
+    }
+
+    /**
+     * Reads the next recipient.
+     *
+     * @param recipient record to fill
+     * @return false at end of file
+     * @throws IOException If reading fails, a line exceeds the chunk size or a record is malformed
+     */
+    public boolean next(Recipient recipient) throws IOException {
+        while (true) {
+            int length = readLine();
+            if (length < 0) {
+                return false;
+            }
+            int start = 0;
+            while (start < length && (line[start] == ' ' || line[start] == '\t')) {
+                start++;
+            }
+            int end = length;
+            while (end > start && (line[end - 1] == '\r' || line[end - 1] == ' ' || line[end - 1] == '\t')) {
+                end--;
+            }
+            if (start == end || line[start] == '#') {
+                continue;
+            }
+            recipient.endOffset = bufferStartOffset + buffer.position();
+            if (line[start] == '{') {
+                parseJson(recipient, start, end);
+            } else {
+                parseCsv(recipient, start, end);
+            }
+            if (recipient.destination == null || recipient.destination.isEmpty()) {
+                throw new IOException("Missing destination in record ending at offset " + recipient.endOffset);
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Copies the next line (without its '\n') into the line array and returns its length, or -1 at EOF
+    private int readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    return length;
+                }
+                if (length == line.length) {
+                    throw new IOException("Line longer than " + line.length + " bytes at offset "
+                            + (bufferStartOffset + buffer.position()));
+                }
+                line[length++] = b;
+            }
+            if (eof) {
+                return length > 0 ? length : -1;
+            }
+            bufferStartOffset += buffer.limit();
+            buffer.clear();
+            if (channel.read(buffer) < 0) {
+                eof = true;
+            }
+            buffer.flip();
+        }
+    }
+
+    private void parseCsv(Recipient recipient, int start, int end) {
+        int comma = start;
+        while (comma < end && line[comma] != ',') {
+            comma++;
+        }
+        recipient.destination = new String(line, start, comma - start, StandardCharsets.US_ASCII).trim();
+        if (comma >= end) {
+            recipient.text = null;
+            return;
+        }
+        int textStart = comma + 1;
+        if (textStart < end && line[textStart] == '"' && line[end - 1] == '"' && end - textStart >= 2) {
+            // quoted field: "" is an escaped quote
+            int out = textStart;
+            for (int i = textStart + 1; i < end - 1; i++) {
+                line[out++] = line[i];
+                if (line[i] == '"' && i + 1 < end - 1 && line[i + 1] == '"') {
+                    i++;
+                }
+            }
+            recipient.text = new String(line, textStart, out - textStart, StandardCharsets.UTF_8);
+        } else {
+            recipient.text = new String(line, textStart, end - textStart, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void parseJson(Recipient recipient, int start, int end) throws IOException {
+        recipient.destination = jsonString("\"to\"", start, end);
+        recipient.text = jsonString("\"text\"", start, end);
+    }
+
+    // Minimal extraction of a top-level string value; campaign files are flat objects
+    private String jsonString(String key, int start, int end) throws IOException {
+        int keyAt = indexOf(key, start, end);
+        if (keyAt < 0) {
+            return null;
+        }
+        int i = keyAt + key.length();
+        while (i < end && (line[i] == ' ' || line[i] == ':')) {
+            i++;
+        }
+        if (i >= end || line[i] != '"') {
+            throw new IOException("Expected string value for " + key);
+        }
+        StringBuilder value = new StringBuilder();
+        int runStart = ++i;
+        while (i < end && line[i] != '"') {
+            if (line[i] == '\\' && i + 1 < end) {
+                value.append(new String(line, runStart, i - runStart, StandardCharsets.UTF_8));
+                char escaped = (char) line[i + 1];
+                switch (escaped) {
+                    case 'n' -> value.append('\n');
+                    case 't' -> value.append('\t');
+                    case 'r' -> value.append('\r');
+                    case 'u' -> {
+                        if (i + 5 >= end) {
+                            throw new IOException("Truncated unicode escape for " + key);
+                        }
+                        value.append((char) Integer.parseInt(new String(line, i + 2, 4, StandardCharsets.US_ASCII), 16));
+                        i += 4;
+                    }
+                    default -> value.append(escaped);
+                }
+                i += 2;
+                runStart = i;
+            } else {
+                i++;
+            }
+        }
+        if (i >= end) {
+            throw new IOException("Unterminated string value for " + key);
+        }
+        value.append(new String(line, runStart, i - runStart, StandardCharsets.UTF_8));
+        return value.toString();
+    }
+
+    private int indexOf(String key, int start, int end) {
+        outer:
+        for (int i = start; i <= end - key.length(); i++) {
+            for (int j = 0; j < key.length(); j++) {
+                if (line[i + j] != key.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,168 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import org.alpha.utils.AimdRateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds failed submits back into the pipeline.
+ * <p>
+ * {@link #onResult(MessageSubmitResult, List, int)} looks at the outcome of every attempt: messages whose
+ * failed parts are all retryable (and have attempts left) are spooled with the backoff of their attempt,
+ * everything else is recorded in the {@link CampaignStats} as final. A background loop takes due entries
+ * from the {@link RetrySpool} and resends them through the pool at a bounded rate, so retries never crowd
+ * out first attempts. The new attempt is spooled before the old one is retired, so a crash in between
+ * sends a part twice rather than never.
+ */
+public class RetryDrainer {
+    private static final Logger logger = LoggerFactory.getLogger(RetryDrainer.class);
+    private static final long IDLE_WAIT = 1000; // Longest sleep when nothing is due (in milliseconds)
+
+    private final SmppSessionPool pool;
+    private final RetrySpool spool;
+    private final RetryPolicy policy;
+    private final AimdRateLimiter rateLimiter;
+    private final CampaignStats stats;
+    private final ExecutorService executor;
+    private volatile boolean running;
+    private CompletableFuture<Void> loop;
+
+    /**
+     * @param pool        pipeline the retries are sent through
+     * @param spool       opened spool
+     * @param policy      retry classification and backoff
+     * @param rateLimiter paces resent parts
+     * @param stats       receives final outcomes
+     * @param executor    runs the drain loop and the spool writes off the I/O threads
+     */
+    public RetryDrainer(SmppSessionPool pool, RetrySpool spool, RetryPolicy policy, AimdRateLimiter rateLimiter,
+                        CampaignStats stats, ExecutorService executor) {
+        this.pool = pool;
+        this.spool = spool;
+        this.policy = policy;
+        this.rateLimiter = rateLimiter;
+        this.stats = stats;
+        this.executor = executor;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public void start() {
+        running = true;
+        loop = CompletableFuture.runAsync(this::drain, executor);
+    }
+
+    /**
+     * Stops the drain loop; spooled entries stay on disk for the next run.
+     */
+    public void stop() {
+        running = false;
+        synchronized (spool) {
+            spool.notifyAll();
+        }
+        if (loop != null) {
+            loop.join();
+        }
+    }
+
+    /**
+     * Handles the outcome of one attempt of a message; meant to run off the I/O thread.
+     *
+     * @param result  per-part outcome
+     * @param parts   the parts that were sent, in the same order as the result
+     * @param attempt attempts made so far, including this one
+     */
+    public void onResult(MessageSubmitResult result, List<SubmitSm> parts, int attempt) {
+        if (result.isSuccess()) {
+            stats.record(result);
+            return;
+        }
+        List<SubmitSm> retry = new ArrayList<>(parts.size());
+        for (int i = 0; i < result.getPartCount(); i++) {
+            Throwable error = result.getError(i);
+            SubmitSmResp resp = result.getResponse(i);
+            if (error == null && resp.getCommandStatus() == SmppConstants.STATUS_OK) {
+                continue;
+            }
+            if (error != null ? !policy.isRetryable(error) : !policy.isRetryable(resp.getCommandStatus())) {
+                // A permanently rejected part makes the whole message undeliverable
+                stats.record(result);
+                return;
+            }
+            retry.add(parts.get(i));
+        }
+        if (!policy.hasAttemptsLeft(attempt)) {
+            stats.record(result);
+            return;
+        }
+        try {
+            spool.append(result.getMessageId(), attempt, System.currentTimeMillis() + policy.backoff(attempt), retry);
+            stats.onRetryScheduled();
+        } catch (IOException e) {
+            logger.error("Unable to spool message {} for retry", result.getMessageId(), e);
+            stats.record(result);
+        }
+    }
+
+    /**
+     * Waits until the spool is empty or the timeout elapses.
+     *
+     * @return true if nothing is left to retry
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean awaitEmpty(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (spool) {
+            while (spool.size() > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                spool.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    private void drain() {
+        while (running) {
+            try {
+                RetrySpool.Entry entry = spool.poll(System.currentTimeMillis());
+                if (entry == null) {
+                    spool.awaitDue(IDLE_WAIT);
+                    continue;
+                }
+                for (int i = 0; i < entry.getParts().size(); i++) {
+                    rateLimiter.acquire();
+                }
+                int attempt = entry.getAttempt() + 1;
+                pool.submitParts(entry.getMessageId(), entry.getParts()).thenAcceptAsync(result -> {
+                    onResult(result, entry.getParts(), attempt);
+                    try {
+                        spool.complete(entry);
+                    } catch (IOException e) {
+                        logger.error("Unable to retire retry entry {}", entry.getEntryId(), e);
+                    }
+                }, executor);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                logger.error("Retry spool failure, drainer stopped", e);
+                return;
+            }
+        }
+    }
+}
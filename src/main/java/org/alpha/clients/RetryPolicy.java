@@ -0,0 +1,79 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.type.RecoverablePduException;
+import com.cloudhopper.smpp.type.SmppChannelException;
+import com.cloudhopper.smpp.type.SmppTimeoutException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which failed submits are worth sending again and when.
+ * <p>
+ * Congestion and transient SMSC errors (queue full, throttled, system error, submit failed, temporary
+ * application error) and failures without any response (timeout, lost channel) are retryable. Every other
+ * command_status (bad address, invalid data coding, ...) is permanent and will fail again unchanged.
+ * Delays grow exponentially from the initial backoff up to the maximum, with +/-20% jitter so that a
+ * burst of failures does not come back as a burst of retries.
+ */
+public class RetryPolicy {
+    private static final double JITTER = 0.2;
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final double multiplier;
+
+    /**
+     * @param maxAttempts    total attempts including the first one
+     * @param initialBackoff delay before the first retry (ms)
+     * @param maxBackoff     upper bound of a delay (ms)
+     * @param multiplier     growth factor between two consecutive delays
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, double multiplier) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * @param commandStatus command_status of a submit_sm_resp
+     * @return true if the same PDU may succeed later
+     */
+    public boolean isRetryable(int commandStatus) {
+        return switch (commandStatus) {
+            case SmppConstants.STATUS_MSGQFUL, SmppConstants.STATUS_THROTTLED, SmppConstants.STATUS_SYSERR,
+                 SmppConstants.STATUS_SUBMITFAIL, SmppConstants.STATUS_X_T_APPN,
+                 SmppConstants.STATUS_DELIVERYFAILURE -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * @param error failure of a submit that got no submit_sm_resp
+     * @return true for timeouts and channel failures
+     */
+    public boolean isRetryable(Throwable error) {
+        return error instanceof SmppTimeoutException || error instanceof SmppChannelException
+                || error instanceof RecoverablePduException;
+    }
+
+    /**
+     * @param attempt attempts already made
+     * @return true if another attempt is allowed
+     */
+    public boolean hasAttemptsLeft(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /**
+     * @param attempt attempts already made (1 after the first failure)
+     * @return Delay before the next attempt (ms)
+     */
+    public long backoff(int attempt) {
+        double delay = Math.min(maxBackoff, initialBackoff * Math.pow(multiplier, attempt - 1));
+        double jitter = 1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(1, (long) (delay * jitter));
+    }
+}
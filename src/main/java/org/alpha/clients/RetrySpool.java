@@ -0,0 +1,312 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.pdu.Pdu;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoder;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoderContext;
+import com.cloudhopper.smpp.transcoder.PduTranscoder;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Disk-backed, append-only spool of submits waiting for a retry.
+ * <p>
+ * The file is a sequence of records {@code [length][crc32][type][entry id][payload]}: an ENTRY record holds
+ * the logical message id, the attempt number, the due time and the encoded submit_sm PDUs of the parts to
+ * resend; a DONE record retires an entry. Only the offsets and due times of pending entries are kept in
+ * memory, the PDUs are read back when an entry becomes due. On open the file is replayed: entries without
+ * a DONE record are pending again (at-least-once), and a torn record at the tail is cut off. The file is
+ * truncated whenever nothing is pending or being retried.
+ * <p>
+ * Appends go to the OS page cache immediately; {@link #flush()} forces them to the device and is meant to
+ * be called periodically, so a crash of the process loses nothing and a power loss at most one interval.
+ */
+public class RetrySpool implements Closeable {
+    private static final byte ENTRY = 1;
+    private static final byte DONE = 2;
+    private static final int HEADER_LENGTH = 4 + 4; // length + crc32
+
+    private final Path file;
+    private final PduTranscoder transcoder = new DefaultPduTranscoder(new DefaultPduTranscoderContext());
+    private final PriorityQueue<Pending> pending = new PriorityQueue<>(
+            (a, b) -> a.dueAt != b.dueAt ? Long.compare(a.dueAt, b.dueAt) : Long.compare(a.entryId, b.entryId));
+    private FileChannel channel;
+    private long nextEntryId;
+    private int retrying; // entries handed out by poll() and not completed yet
+
+    /**
+     * A spooled message handed out for resending.
+     */
+    public static final class Entry {
+        private final long entryId;
+        private final long messageId;
+        private final int attempt;
+        private final List<SubmitSm> parts;
+
+        private Entry(long entryId, long messageId, int attempt, List<SubmitSm> parts) {
+            this.entryId = entryId;
+            this.messageId = messageId;
+            this.attempt = attempt;
+            this.parts = parts;
+        }
+
+        public long getEntryId() {
+            return entryId;
+        }
+
+        public long getMessageId() {
+            return messageId;
+        }
+
+        /**
+         * @return Attempts already made before this one
+         */
+        public int getAttempt() {
+            return attempt;
+        }
+
+        /**
+         * @return The parts to resend, without sequence numbers
+         */
+        public List<SubmitSm> getParts() {
+            return parts;
+        }
+    }
+
+    private record Pending(long entryId, long dueAt, long offset, int length) {
+    }
+
+    public RetrySpool(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the spool file and replays it.
+     *
+     * @return Number of entries still pending from a previous run
+     * @throws IOException If the file cannot be opened or read
+     */
+    public synchronized int open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Map<Long, Pending> entries = new HashMap<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        long offset = 0;
+        long size = channel.size();
+        while (offset + HEADER_LENGTH <= size) {
+            header.clear();
+            readFully(header, offset);
+            int length = header.getInt(0);
+            if (length < 9 || offset + HEADER_LENGTH + length > size) {
+                break; // torn or garbage tail
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            readFully(record, offset + HEADER_LENGTH);
+            if (crc(record.array(), length) != header.getInt(4)) {
+                break;
+            }
+            byte type = record.get(0);
+            long entryId = record.getLong(1);
+            if (type == ENTRY) {
+                entries.put(entryId, new Pending(entryId, record.getLong(1 + 8 + 8 + 4), offset, HEADER_LENGTH + length));
+            } else {
+                entries.remove(entryId);
+            }
+            nextEntryId = Math.max(nextEntryId, entryId + 1);
+            offset += HEADER_LENGTH + length;
+        }
+        channel.truncate(offset);
+        channel.position(offset);
+        pending.addAll(entries.values());
+        truncateIfIdle();
+        return pending.size();
+    }
+
+    /**
+     * Spools the parts of a message for a later attempt.
+     *
+     * @param messageId logical message id
+     * @param attempt   attempts already made
+     * @param dueAt     earliest resend time (epoch ms)
+     * @param parts     parts to resend
+     * @throws IOException If the record cannot be written or a PDU cannot be encoded
+     */
+    public synchronized void append(long messageId, int attempt, long dueAt, List<SubmitSm> parts) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(parts.size());
+        int length = 1 + 8 + 8 + 4 + 8 + 2;
+        for (SubmitSm part : parts) {
+            byte[] pdu = encode(part);
+            encoded.add(pdu);
+            length += 4 + pdu.length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + length);
+        record.position(HEADER_LENGTH);
+        long entryId = nextEntryId++;
+        record.put(ENTRY).putLong(entryId).putLong(messageId).putInt(attempt).putLong(dueAt).putShort((short) parts.size());
+        for (byte[] pdu : encoded) {
+            record.putInt(pdu.length).put(pdu);
+        }
+        long offset = write(record, length);
+        pending.add(new Pending(entryId, dueAt, offset, HEADER_LENGTH + length));
+        notifyAll();
+    }
+
+    /**
+     * Removes the earliest entry if it is due and reads its parts back.
+     *
+     * @param now current time (epoch ms)
+     * @return The entry, or null if none is due; it must be passed to {@link #complete(Entry)} once resent
+     * @throws IOException If the record cannot be read or decoded
+     */
+    public synchronized Entry poll(long now) throws IOException {
+        Pending next = pending.peek();
+        if (next == null || next.dueAt > now) {
+            return null;
+        }
+        pending.poll();
+        retrying++;
+        ByteBuffer record = ByteBuffer.allocate(next.length - HEADER_LENGTH);
+        readFully(record, next.offset + HEADER_LENGTH);
+        record.position(1 + 8);
+        long messageId = record.getLong();
+        int attempt = record.getInt();
+        record.getLong(); // due time
+        int count = record.getShort();
+        List<SubmitSm> parts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] pdu = new byte[record.getInt()];
+            record.get(pdu);
+            parts.add(decode(pdu));
+        }
+        return new Entry(next.entryId, messageId, attempt, parts);
+    }
+
+    /**
+     * Retires an entry handed out by {@link #poll(long)}; a new attempt must be appended before this.
+     *
+     * @throws IOException If the record cannot be written
+     */
+    public synchronized void complete(Entry entry) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + 1 + 8);
+        record.position(HEADER_LENGTH);
+        record.put(DONE).putLong(entry.entryId);
+        write(record, 1 + 8);
+        retrying--;
+        truncateIfIdle();
+        notifyAll();
+    }
+
+    /**
+     * Waits until the earliest entry is due, an entry is appended or the timeout elapses.
+     *
+     * @param maxWait longest wait (ms)
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public synchronized void awaitDue(long maxWait) throws InterruptedException {
+        Pending next = pending.peek();
+        long wait = next == null ? maxWait : Math.min(maxWait, next.dueAt - System.currentTimeMillis());
+        if (wait > 0) {
+            wait(wait);
+        }
+    }
+
+    /**
+     * @return Entries waiting for their due time plus entries being resent
+     */
+    public synchronized int size() {
+        return pending.size() + retrying;
+    }
+
+    /**
+     * Forces appended records to the storage device.
+     *
+     * @throws IOException If the sync fails
+     */
+    public synchronized void flush() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private long write(ByteBuffer record, int length) throws IOException {
+        if (channel == null) {
+            throw new IOException("Retry spool " + file + " is closed");
+        }
+        record.putInt(0, length);
+        record.putInt(4, crc(record.array(), HEADER_LENGTH, length));
+        record.flip();
+        long offset = channel.position();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        return offset;
+    }
+
+    private void truncateIfIdle() throws IOException {
+        if (pending.isEmpty() && retrying == 0 && channel.size() > 0) {
+            channel.truncate(0);
+            channel.position(0);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of retry spool " + file);
+            }
+        }
+    }
+
+    private byte[] encode(SubmitSm submit) throws IOException {
+        try {
+            ChannelBuffer buffer = transcoder.encode(submit);
+            byte[] bytes = new byte[buffer.readableBytes()];
+            buffer.readBytes(bytes);
+            return bytes;
+        } catch (Exception e) {
+            throw new IOException("Unable to encode " + submit.getName() + " for the retry spool", e);
+        }
+    }
+
+    private SubmitSm decode(byte[] bytes) throws IOException {
+        try {
+            Pdu pdu = transcoder.decode(ChannelBuffers.wrappedBuffer(bytes));
+            // The session assigns a fresh sequence number when the part is sent again
+            pdu.removeSequenceNumber();
+            return (SubmitSm) pdu;
+        } catch (Exception e) {
+            throw new IOException("Corrupt submit_sm in retry spool " + file, e);
+        }
+    }
+
+    private static int crc(byte[] bytes, int length) {
+        return crc(bytes, 0, length);
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
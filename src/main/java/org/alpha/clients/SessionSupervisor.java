@@ -0,0 +1,108 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.pdu.EnquireLink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Liveness checks for bound sessions.
+ * <p>
+ * A session that has not received any response for {@code enquireLinkInterval} gets an enquire_link probe
+ * on the probe executor; busy sessions are never probed, their submit responses already prove the link is
+ * up. A session is reported dead once it is no longer bound or {@code maxMissed} probes in a row went
+ * unanswered within {@code enquireLinkTimeout}. {@link #check(Consumer)} is driven by the pool's monitor,
+ * and {@link #rebindDelay(int)} gives the jittered backoff used between bind attempts.
+ */
+public class SessionSupervisor {
+    private static final Logger logger = LoggerFactory.getLogger(SessionSupervisor.class);
+    private static final long MIN_REBIND_DELAY = 100; // First rebind delay (in milliseconds)
+    private static final long MAX_REBIND_DELAY = 30000; // Upper bound of the rebind delay (in milliseconds)
+
+    private final long enquireLinkInterval;
+    private final long enquireLinkTimeout;
+    private final int maxMissed;
+    private final ExecutorService probeExecutor;
+    private final Map<AsyncSubmitEngine, Probe> watched = new ConcurrentHashMap<>();
+
+    // Probe state of one session; written by its probe only
+    private static final class Probe {
+        private volatile boolean running;
+        private volatile int missed;
+    }
+
+    /**
+     * @param enquireLinkInterval idle time (ms) after which a session is probed
+     * @param enquireLinkTimeout  max time (ms) to wait for an enquire_link_resp
+     * @param maxMissed           unanswered probes in a row before the session is declared dead
+     * @param probeExecutor       runs the blocking enquire_link calls
+     */
+    public SessionSupervisor(long enquireLinkInterval, long enquireLinkTimeout, int maxMissed,
+                             ExecutorService probeExecutor) {
+        this.enquireLinkInterval = enquireLinkInterval;
+        this.enquireLinkTimeout = enquireLinkTimeout;
+        this.maxMissed = maxMissed;
+        this.probeExecutor = probeExecutor;
+    }
+
+    public void watch(AsyncSubmitEngine engine) {
+        watched.put(engine, new Probe());
+    }
+
+    public void unwatch(AsyncSubmitEngine engine) {
+        watched.remove(engine);
+    }
+
+    /**
+     * Probes idle sessions and reports dead ones; a reported session is no longer watched.
+     *
+     * @param deadListener receives each dead session once
+     */
+    public void check(Consumer<AsyncSubmitEngine> deadListener) {
+        long idleThreshold = TimeUnit.MILLISECONDS.toNanos(enquireLinkInterval);
+        watched.forEach((engine, probe) -> {
+            if (!engine.getSession().isBound() || probe.missed >= maxMissed) {
+                if (watched.remove(engine) != null) {
+                    logger.warn("Session {} is dead ({}, {} missed enquire_link)",
+                            engine.getSession().getConfiguration().getName(), engine.getSession().getStateName(),
+                            probe.missed);
+                    deadListener.accept(engine);
+                }
+            } else if (!probe.running && engine.getIdleNanos() >= idleThreshold) {
+                probe.running = true;
+                probeExecutor.execute(() -> probe(engine, probe));
+            }
+        });
+    }
+
+    /**
+     * @param failures consecutive failed bind attempts
+     * @return Delay (ms) before the next attempt: exponential, capped, with full jitter over its upper half
+     */
+    public long rebindDelay(int failures) {
+        long delay = Math.min(MAX_REBIND_DELAY, MIN_REBIND_DELAY << Math.min(failures, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void probe(AsyncSubmitEngine engine, Probe probe) {
+        try {
+            engine.getSession().enquireLink(new EnquireLink(), enquireLinkTimeout);
+            engine.markActive();
+            probe.missed = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            probe.missed++;
+            logger.warn("enquire_link on session {} failed ({} in a row): {}",
+                    engine.getSession().getConfiguration().getName(), probe.missed, e.toString());
+        } finally {
+            probe.running = false;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.cloudhopper.smpp.impl.DefaultSmppClient;
 import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
 import com.cloudhopper.smpp.pdu.*;
 import com.cloudhopper.smpp.type.Address;
+import org.alpha.utils.PduEventLog;
 import org.alpha.utils.PropertiesLoader;
 
 import java.util.concurrent.ExecutorService;
@@ -35,10 +36,12 @@ public class SmppClient {
         // Creating an instance of the SmppClient with configured executors
         DefaultSmppClient clientBootstrap = new DefaultSmppClient(executor, 1, monitorExecutor);
 
-        // Creating a custom session handler to process the SMPP messages
-        DefaultSmppSessionHandler sessionHandler = new ClientSmppSessionHandler();
         // set properties_ config file name
         PropertiesLoader.init("application0.properties");
+        // Received PDUs are recorded in the binary event log rather than printed
+        PduEventLog events = PduEventLog.open("client");
+        // Creating a custom session handler to process the SMPP messages
+        DefaultSmppSessionHandler sessionHandler = new ClientSmppSessionHandler(events, "client.alpha.000");
         // Setting up the configuration for the SMPP session
         SmppSessionConfiguration config = new SmppSessionConfiguration();
         config.setWindowSize(1);  // Window size (how many requests to send before expecting a response)
@@ -49,7 +52,7 @@ public class SmppClient {
         config.setConnectTimeout(PropertiesLoader.properties.clientConnectTimeout);  // Connection timeout
         config.setSystemId(PropertiesLoader.properties.clientSystemId);  // System ID for authentication
         config.setPassword(PropertiesLoader.properties.clientPassword);  // Password for authentication
-        config.getLoggingOptions().setLogBytes(true);  // Enable byte logging for debugging
+        config.getLoggingOptions().setLogBytes(false);  // PDU traffic goes to the event log, see PduEventLogPrinter
         config.setRequestExpiryTimeout(PropertiesLoader.properties.clientRequestExpiryTimeout);  // Request expiry timeout
         config.setWindowMonitorInterval(PropertiesLoader.properties.clientWindowMonitorInterval);  // Window monitoring interval
         config.setCountersEnabled(true);  // Enable counters for tracking message statistics
@@ -139,6 +142,7 @@ public class SmppClient {
         clientBootstrap.destroy();
         executor.shutdown();
         monitorExecutor.shutdown();
+        events.close();
 
         logger.info("Done. Exiting");
     }
@@ -147,9 +151,17 @@ public class SmppClient {
      * Custom session handler to process received and expired PDU requests.
      */
     public static class ClientSmppSessionHandler extends DefaultSmppSessionHandler {
-
-        public ClientSmppSessionHandler() {
+        private final PduEventLog events;
+        private final String sessionName;
+
+        /**
+         * @param events      Receives an event per received PDU
+         * @param sessionName Session name recorded with the events
+         */
+        public ClientSmppSessionHandler(PduEventLog events, String sessionName) {
             super(logger);  // Passing the logger to the parent class
+            this.events = events;
+            this.sessionName = sessionName;
         }
 
         @Override
@@ -165,13 +177,9 @@ public class SmppClient {
 
             try {
                 if (pduRequest instanceof DeliverSm deliverSm) {
-                    // If the PDU request is a DeliverSm (SMS delivery), decode and log the message
-                    byte[] shortMessage = deliverSm.getShortMessage();
-                    String messageContent = CharsetUtil.decode(shortMessage, CharsetUtil.CHARSET_ISO_8859_1);
-                    System.out.println("========================================");
-                    System.out.println("Received message from server: " + messageContent);
-                    System.out.println("========================================");
-                    logger.info("Received message from server: {}", messageContent);
+                    // If the PDU request is a DeliverSm (SMS delivery), record the message undecoded
+                    events.record(PduEventLog.Category.DELIVER, PduEventLog.Direction.IN, sessionName,
+                            deliverSm.getCommandStatus(), deliverSm.getSequenceNumber(), deliverSm.getShortMessage());
                 }
             } catch (Exception e) {
                 // Handle any errors during the processing of the received PDU
@@ -3,6 +3,7 @@ package org.alpha.clients;
 
 import com.cloudhopper.commons.charset.CharsetUtil;
 import com.cloudhopper.commons.util.windowing.WindowFuture;
+import com.cloudhopper.smpp.PduAsyncResponse;
 import com.cloudhopper.smpp.SmppConstants;
 import com.cloudhopper.smpp.SmppSessionConfiguration;
 import com.cloudhopper.smpp.SmppBindType;
@@ -11,10 +12,11 @@ import com.cloudhopper.smpp.impl.DefaultSmppClient;
 import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
 import com.cloudhopper.smpp.pdu.*;
 import com.cloudhopper.smpp.type.Address;
+import org.alpha.utils.DlrCodec;
+import org.alpha.utils.DlrCorrelationIndex;
+import org.alpha.utils.PduEventLog;
 import org.alpha.utils.PropertiesLoader;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -24,6 +26,10 @@ import org.slf4j.LoggerFactory;
 
 public class SmppClientDLU {
     private static final Logger logger = LoggerFactory.getLogger(SmppClientDLU.class);
+    private static final long DLR_TTL = 172800000; // How long a submitted message waits for its receipt (48 hours)
+
+    // SMSC message_id -> our message id and submit time, looked up when the receipt arrives
+    private static final DlrCorrelationIndex dlrIndex = new DlrCorrelationIndex(1024, DLR_TTL);
 
     public static void main(String[] args) throws Exception {
         ExecutorService executor = java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor();
@@ -31,8 +37,10 @@ public class SmppClientDLU {
 
         DefaultSmppClient clientBootstrap = new DefaultSmppClient(executor, 1, monitorExecutor);
 
-        ClientSmppSessionHandler sessionHandler = new ClientSmppSessionHandler();
         PropertiesLoader.init("application0.properties");
+        // Receipts and messages are recorded in the binary event log rather than printed
+        PduEventLog events = PduEventLog.open("clientDLU");
+        ClientSmppSessionHandler sessionHandler = new ClientSmppSessionHandler(events, "client.alpha.000");
 
         SmppSessionConfiguration config = new SmppSessionConfiguration();
         config.setWindowSize(1);
@@ -43,7 +51,7 @@ public class SmppClientDLU {
         config.setConnectTimeout(PropertiesLoader.properties.clientConnectTimeout);
         config.setSystemId(PropertiesLoader.properties.clientSystemId);
         config.setPassword(PropertiesLoader.properties.clientPassword);
-        config.getLoggingOptions().setLogBytes(true);
+        config.getLoggingOptions().setLogBytes(false);
         config.setRequestExpiryTimeout(PropertiesLoader.properties.clientRequestExpiryTimeout);
         config.setWindowMonitorInterval(PropertiesLoader.properties.clientWindowMonitorInterval);
         config.setCountersEnabled(true);
@@ -67,7 +75,15 @@ public class SmppClientDLU {
             submit0.setDestAddress(new Address((byte) 0x01, (byte) 0x01, "44555519205"));
             submit0.setShortMessage(textBytes);
 
-            SubmitSmResp submitResp = session0.submit(submit0, 10000);
+            // Sent asynchronously: the handler sees the submit_sm_resp on the session's I/O thread and expects
+            // the receipt before it can read it. The reference object carries our message id.
+            submit0.setReferenceObject(1L);
+            WindowFuture<Integer, PduRequest, PduResponse> future0 = session0.sendRequestPdu(submit0, 10000, false);
+            if (!future0.await()) {
+                logger.error("Failed to receive submit_sm_resp within specified time");
+            } else if (!future0.isSuccess()) {
+                logger.error("Failed to properly receive submit_sm_resp: " + future0.getCause());
+            }
 
             System.out.println("Press any key to unbind and close sessions");
             System.in.read();
@@ -77,12 +93,29 @@ public class SmppClientDLU {
             logger.error("Error occurred", e);
         }
 
-        // Rest of the existing cleanup code remains the same
+        events.close();
     }
 
     public static class ClientSmppSessionHandler extends DefaultSmppSessionHandler {
-        public ClientSmppSessionHandler() {
+        // Reused for every receipt; the handler serves one session and is called on its I/O thread
+        private final DlrCodec.Receipt receipt = new DlrCodec.Receipt();
+        private final DlrCorrelationIndex.Correlation correlation = new DlrCorrelationIndex.Correlation();
+        private final PduEventLog events;
+        private final String sessionName;
+
+        public ClientSmppSessionHandler(PduEventLog events, String sessionName) {
             super(logger);
+            this.events = events;
+            this.sessionName = sessionName;
+        }
+
+        @Override
+        public void fireExpectedPduResponseReceived(PduAsyncResponse pduAsyncResponse) {
+            PduResponse response = pduAsyncResponse.getResponse();
+            if (response instanceof SubmitSmResp submitResp && submitResp.getCommandStatus() == SmppConstants.STATUS_OK
+                    && pduAsyncResponse.getRequest().getReferenceObject() instanceof Long messageId) {
+                dlrIndex.put(submitResp.getMessageId(), messageId, System.currentTimeMillis());
+            }
         }
 
         @Override
@@ -97,24 +130,29 @@ public class SmppClientDLU {
             try {
                 if (pduRequest instanceof DeliverSm deliverSm) {
                     byte[] shortMessage = deliverSm.getShortMessage();
-                    String messageContent = CharsetUtil.decode(shortMessage, CharsetUtil.CHARSET_ISO_8859_1);
 
                     // Check if this is a delivery report
-                    if ((deliverSm.getEsmClass() & 0x04) == 0x04) {
-                        Map<String, String> dlrDetails = parseDlr(messageContent);
-
-                        System.out.println("========================================");
-                        System.out.println("Delivery Report Received:");
-                        dlrDetails.forEach((key, value) ->
-                                System.out.println(key + ": " + value)
-                        );
-                        System.out.println("========================================");
-
-                        logger.info("Parsed Delivery Report: {}", dlrDetails);
+                    if ((deliverSm.getEsmClass() & SmppConstants.ESM_CLASS_MT_SMSC_DELIVERY_RECEIPT) != 0) {
+                        // Parse in place, without decoding the receipt to a String
+                        if (!receipt.wrap(shortMessage, 0, shortMessage.length)) {
+                            logger.warn("Delivery Report without id received");
+                            return response;
+                        }
+
+                        events.record(PduEventLog.Category.RECEIPT, PduEventLog.Direction.IN, sessionName,
+                                deliverSm.getCommandStatus(), deliverSm.getSequenceNumber(), shortMessage);
+
+                        // Link the receipt back to the submit that produced it
+                        if (dlrIndex.remove(receipt.idHash(), correlation)) {
+                            logger.debug("Delivery report {} matches message {} submitted {} ms ago", receipt.getId(),
+                                    correlation.getInternalId(), System.currentTimeMillis() - correlation.getSubmitTime());
+                        } else {
+                            logger.warn("Delivery report {} matches no pending submit", receipt.getId());
+                        }
                     } else {
                         // Regular message handling
-                        System.out.println("Received message: " + messageContent);
-                        logger.info("Received message: {}", messageContent);
+                        events.record(PduEventLog.Category.DELIVER, PduEventLog.Direction.IN, sessionName,
+                                deliverSm.getCommandStatus(), deliverSm.getSequenceNumber(), shortMessage);
                     }
                 }
             } catch (Exception e) {
@@ -123,20 +161,5 @@ public class SmppClientDLU {
 
             return response;
         }
-
-        // Parse DLR string into a map of key-value pairs
-        private Map<String, String> parseDlr(String dlrMessage) {
-            Map<String, String> dlrDetails = new HashMap<>();
-            String[] parts = dlrMessage.split(" ");
-
-            for (String part : parts) {
-                String[] keyValue = part.split(":");
-                if (keyValue.length == 2) {
-                    dlrDetails.put(keyValue[0], keyValue[1]);
-                }
-            }
-
-            return dlrDetails;
-        }
     }
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import com.cloudhopper.smpp.impl.DefaultSmppClient;
 import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
 import com.cloudhopper.smpp.pdu.*;
 import com.cloudhopper.smpp.type.Address;
+import org.alpha.utils.PduEventLog;
 import org.alpha.utils.PropertiesLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,8 +29,10 @@ public class SmppClient_01 {
 
         DefaultSmppClient clientBootstrap = new DefaultSmppClient(executor, 1, monitorExecutor);
 
+        // Received PDUs are recorded in the binary event log rather than logged
+        PduEventLog events = PduEventLog.open("client_01");
         // Custom session handler
-        DefaultSmppSessionHandler sessionHandler = new ClientSmppSessionHandler();
+        DefaultSmppSessionHandler sessionHandler = new ClientSmppSessionHandler(events, "client.beta.001");
 
         // Configuration for session
         SmppSessionConfiguration config = new SmppSessionConfiguration();
@@ -41,7 +44,7 @@ public class SmppClient_01 {
         config.setConnectTimeout(PropertiesLoader.properties.clientConnectTimeout);
         config.setSystemId(PropertiesLoader.properties.clientSystemId);
         config.setPassword(PropertiesLoader.properties.clientPassword);
-        config.getLoggingOptions().setLogBytes(true);
+        config.getLoggingOptions().setLogBytes(false);
         config.setRequestExpiryTimeout(PropertiesLoader.properties.clientRequestExpiryTimeout);
         config.setWindowMonitorInterval(PropertiesLoader.properties.clientWindowMonitorInterval);
         config.setCountersEnabled(true);
@@ -106,6 +109,7 @@ public class SmppClient_01 {
         clientBootstrap.destroy();
         executor.shutdown();
         monitorExecutor.shutdown();
+        events.close();
 
         logger.info("Done. Exiting");
     }
@@ -131,9 +135,13 @@ public class SmppClient_01 {
      * Custom session handler for processing PDU requests and responses.
      */
     public static class ClientSmppSessionHandler extends DefaultSmppSessionHandler {
+        private final PduEventLog events;
+        private final String sessionName;
 
-        public ClientSmppSessionHandler() {
+        public ClientSmppSessionHandler(PduEventLog events, String sessionName) {
             super(logger);
+            this.events = events;
+            this.sessionName = sessionName;
         }
 
         @Override
@@ -147,9 +155,8 @@ public class SmppClient_01 {
 
             // Handle the message if it's a DeliverSm
             if (pduRequest instanceof DeliverSm deliverSm) {
-                byte[] shortMessage = deliverSm.getShortMessage();
-                String messageContent = CharsetUtil.decode(shortMessage, CharsetUtil.CHARSET_ISO_8859_1);
-                logger.info("Received message from server: {}", messageContent);
+                events.record(PduEventLog.Category.DELIVER, PduEventLog.Direction.IN, sessionName,
+                        deliverSm.getCommandStatus(), deliverSm.getSequenceNumber(), deliverSm.getShortMessage());
             }
 
             return response;
@@ -0,0 +1,261 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppBindType;
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.impl.DefaultSmppClient;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import com.cloudhopper.smpp.type.Address;
+import org.alpha.utils.LatencyRecorder;
+import org.alpha.utils.PropertiesLoader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SmppLoadGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(SmppLoadGenerator.class);
+    private static final String DESTINATION = "44555519205"; // Destination of every generated message
+    private static final String LATENCY_REPORT = "load.latency"; // Latency report written at the end of the run
+    private static final String LATENCY_MBEAN = "org.alpha:type=LatencyRecorder,name=load"; // JMX name for on-demand dumps
+    private static final int MAX_MISSED_ENQUIRE_LINKS = 2; // Unanswered keepalives before a bind is replaced
+    private static final long PROGRESS_INTERVAL = 5000; // Interval of the progress log (in milliseconds)
+    private static final long IDLE_WORKER_PAUSE = 10; // Sleep of a closed-loop worker the profile has parked (in milliseconds)
+
+    // Usage: SmppLoadGenerator [host:port]; without an argument smpp.client.host/port are targeted
+    public static void main(String[] args) throws Exception {
+        PropertiesLoader.init("application0.properties");
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        ScheduledExecutorService monitorExecutor = Executors.newScheduledThreadPool(1);
+
+        SmppSessionConfiguration config = createSessionConfig(args.length > 0 ? args[0] : null);
+        int bindCount = PropertiesLoader.properties.loadBindCount;
+        DefaultSmppClient clientBootstrap = new DefaultSmppClient(executor, bindCount, monitorExecutor);
+
+        SessionSupervisor supervisor = new SessionSupervisor(PropertiesLoader.properties.clientEnquireLinkInterval,
+                PropertiesLoader.properties.clientEnquireLinkTimeout, MAX_MISSED_ENQUIRE_LINKS, executor);
+
+        // No per-bind rate limiter and no standby: the generator alone decides the offered load
+        SmppSessionPool pool = new SmppSessionPool(clientBootstrap, List.of(config), bindCount, false,
+                PropertiesLoader.properties.clientSubmitTimeout, AsyncSubmitEngine.CompletionHandler::new,
+                null, supervisor, executor, monitorExecutor);
+        LatencyRecorder latency = new LatencyRecorder();
+        latency.register(LATENCY_MBEAN);
+        pool.setLatencyRecorder(latency);
+
+        LoadProfile profile = new LoadProfile(LoadProfile.Shape.valueOf(PropertiesLoader.properties.loadProfile),
+                PropertiesLoader.properties.loadStartTps, PropertiesLoader.properties.loadTargetTps,
+                PropertiesLoader.properties.loadDuration, PropertiesLoader.properties.loadSteps,
+                PropertiesLoader.properties.loadSpikeDuration);
+        boolean openLoop = "OPEN".equalsIgnoreCase(PropertiesLoader.properties.loadMode);
+        int concurrency = PropertiesLoader.properties.loadConcurrency;
+        long warmup = PropertiesLoader.properties.loadWarmup;
+
+        // Only submits scheduled after the warm-up count; the warm-up merely primes the JIT and the binds
+        CampaignStats stats = new CampaignStats();
+        LoadClock clock = new LoadClock(warmup, profile.getDurationMillis());
+        ScheduledFuture<?> warmupTask = null;
+        ScheduledFuture<?> progressTask = null;
+
+        try {
+            pool.start();
+            logger.info("Load test {} against {}:{} with {} binds: {} loop, {}, warm-up {} ms",
+                    config.getName(), config.getHost(), config.getPort(), bindCount, openLoop ? "open" : "closed",
+                    profile, warmup);
+
+            clock.start();
+            warmupTask = monitorExecutor.schedule(() -> {
+                latency.reset();
+                logger.info("Warm-up done, measuring");
+            }, warmup, TimeUnit.MILLISECONDS);
+            progressTask = monitorExecutor.scheduleAtFixedRate(() -> logger.info("Progress: offered={} TPS {}",
+                            String.format("%.0f", profile.rateAt(clock.elapsedMillis())), stats),
+                    PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+
+            SubmitSmTemplate template = createTemplate();
+            if (openLoop) {
+                runOpenLoop(pool, template, profile, clock, stats);
+            } else {
+                runClosedLoop(pool, template, profile, clock, stats, concurrency, executor);
+            }
+
+            // Let the last responses come in before reporting
+            awaitInFlight(pool, PropertiesLoader.properties.clientSubmitTimeout);
+            report(stats, latency, profile, clock);
+        } catch (Exception e) {
+            logger.error("Error in load test", e);
+        } finally {
+            if (warmupTask != null) {
+                warmupTask.cancel(false);
+            }
+            if (progressTask != null) {
+                progressTask.cancel(false);
+            }
+            pool.close(PropertiesLoader.properties.clientUnbindTimeout);
+            clientBootstrap.destroy();
+            executor.shutdown();
+            monitorExecutor.shutdown();
+        }
+    }
+
+    private static SmppSessionConfiguration createSessionConfig(String target) {
+        SmppSessionConfiguration config = new SmppSessionConfiguration();
+        config.setWindowSize(PropertiesLoader.properties.loadConcurrency); // Outstanding submits per bind
+        config.setName("load.client.alpha");
+        config.setType(SmppBindType.TRANSCEIVER);
+        if (target != null) {
+            int colon = target.lastIndexOf(':');
+            config.setHost(target.substring(0, colon));
+            config.setPort(Integer.parseInt(target.substring(colon + 1)));
+        } else {
+            config.setHost(PropertiesLoader.properties.clientHost);
+            config.setPort(PropertiesLoader.properties.clientPort);
+        }
+        config.setConnectTimeout(PropertiesLoader.properties.clientConnectTimeout);
+        config.setSystemId(PropertiesLoader.properties.clientSystemId);
+        config.setPassword(PropertiesLoader.properties.clientPassword);
+        config.setRequestExpiryTimeout(PropertiesLoader.properties.clientRequestExpiryTimeout);
+        config.setWindowMonitorInterval(PropertiesLoader.properties.clientWindowMonitorInterval);
+        config.setCountersEnabled(true);
+        return config;
+    }
+
+    private static SubmitSmTemplate createTemplate() {
+        // Short single-part text without receipt, so only the submit path is measured
+        return new SubmitSmTemplate(
+                new Address((byte) 0x03, (byte) 0x00, "40404"),
+                (byte) 0x01, (byte) 0x01,
+                (byte) 0x00,
+                SmppConstants.REGISTERED_DELIVERY_SMSC_RECEIPT_NOT_REQUESTED,
+                false,
+                "Load test message #");
+    }
+
+    // Open loop: submits go out on a fixed schedule whatever the responses do. Latency is measured from the
+    // scheduled time, so a stalled window shows up as latency instead of silently lowering the load.
+    private static void runOpenLoop(SmppSessionPool pool, SubmitSmTemplate template, LoadProfile profile,
+                                    LoadClock clock, CampaignStats stats) throws Exception {
+        Address destination = template.destination(DESTINATION);
+        long next = clock.startNanos;
+        long seq = 0;
+        while (next < clock.endNanos) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            SubmitSm submit = template.create(destination, template.body().appendDecimal(seq++));
+            submitMeasured(pool, submit, next, clock, stats);
+            next += (long) (TimeUnit.SECONDS.toNanos(1) / profile.rateAt(clock.elapsedMillis(next)));
+        }
+    }
+
+    // Closed loop: each worker waits for its response before sending again. The profile scales the number of
+    // active workers, from startTps/peak to targetTps/peak of the concurrency.
+    private static void runClosedLoop(SmppSessionPool pool, SubmitSmTemplate template, LoadProfile profile,
+                                      LoadClock clock, CampaignStats stats, int concurrency,
+                                      ExecutorService executor) throws Exception {
+        Address destination = template.destination(DESTINATION);
+        AtomicLong seq = new AtomicLong();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            int worker = i;
+            workers.add(executor.submit(() -> {
+                while (System.nanoTime() < clock.endNanos) {
+                    int active = (int) Math.ceil(concurrency * profile.rateAt(clock.elapsedMillis()) / profile.getPeakTps());
+                    if (worker >= active) {
+                        Thread.sleep(IDLE_WORKER_PAUSE);
+                        continue;
+                    }
+                    SubmitSm submit = template.create(destination, template.body().appendDecimal(seq.getAndIncrement()));
+                    try {
+                        submitMeasured(pool, submit, System.nanoTime(), clock, stats).get();
+                    } catch (ExecutionException e) {
+                        // Already counted as an error
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+    }
+
+    private static CompletableFuture<SubmitSmResp> submitMeasured(SmppSessionPool pool, SubmitSm submit, long intendedStart,
+                                                                  LoadClock clock, CampaignStats stats) {
+        CompletableFuture<SubmitSmResp> response = pool.submit(submit, intendedStart);
+        if (intendedStart >= clock.measureStartNanos) {
+            stats.onSubmitted();
+            response.whenComplete(stats::record);
+        }
+        return response;
+    }
+
+    private static void awaitInFlight(SmppSessionPool pool, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline
+                && pool.getEngines().stream().anyMatch(engine -> engine.getOutstanding() > 0)) {
+            Thread.sleep(100);
+        }
+    }
+
+    private static void report(CampaignStats stats, LatencyRecorder latency, LoadProfile profile, LoadClock clock) {
+        double seconds = profile.getDurationMillis() / 1000.0;
+        logger.info("Load test results ({}):", profile);
+        logger.info("Offered: {} TPS, achieved: {} TPS (accepted submit_sm_resp)",
+                String.format("%.1f", stats.getSubmitted() / seconds), String.format("%.1f", stats.getSuccessful() / seconds));
+        logger.info("Errors: no response={} {}", stats.getErrors(), formatStatuses(stats));
+        logger.info("Latency:{}{}", System.lineSeparator(), latency.getReport());
+        try {
+            latency.dump(Path.of(LATENCY_REPORT).toString());
+            logger.info("Latency report written to {}", LATENCY_REPORT);
+        } catch (IOException e) {
+            logger.error("Unable to write latency report", e);
+        }
+    }
+
+    private static String formatStatuses(CampaignStats stats) {
+        StringBuilder sb = new StringBuilder();
+        stats.getFailedByStatus().forEach((status, count) -> sb.append(String.format("status[0x%08X]=%d ", status, count)));
+        return sb.toString().trim();
+    }
+
+    // Warm-up then measured run, on the System.nanoTime() scale
+    private static final class LoadClock {
+        private final long warmupNanos;
+        private final long durationNanos;
+        private long startNanos;
+        private long measureStartNanos;
+        private long endNanos;
+
+        LoadClock(long warmupMillis, long durationMillis) {
+            this.warmupNanos = TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+            this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            measureStartNanos = startNanos + warmupNanos;
+            endNanos = measureStartNanos + durationNanos;
+        }
+
+        // Time since the end of the warm-up; negative during warm-up
+        long elapsedMillis() {
+            return elapsedMillis(System.nanoTime());
+        }
+
+        long elapsedMillis(long nanos) {
+            return Math.floorDiv(nanos - measureStartNanos, 1_000_000L);
+        }
+    }
+}
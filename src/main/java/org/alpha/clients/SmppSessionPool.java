@@ -0,0 +1,451 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.impl.DefaultSmppClient;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import com.cloudhopper.smpp.type.SmppChannelException;
+import org.alpha.utils.AimdRateLimiter;
+import org.alpha.utils.LatencyRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Pool of binds spread over one or more SMSC hosts, each driven by its own {@link AsyncSubmitEngine}.
+ * <p>
+ * Every submit goes to the live session with the fewest outstanding window slots. Dead sessions are
+ * detected by the {@link SessionSupervisor} (enquire_link on idle binds, missed responses) or right away
+ * when the channel closes; their in-flight submits are failed so they are redispatched onto the remaining
+ * binds, and the slot is rebound with jittered backoff. Redispatch gives at-least-once semantics: a submit
+ * the SMSC accepted just before the link dropped may be sent twice.
+ * <p>
+ * With a warm standby, each host also keeps one extra bound session out of rotation. When a slot dies
+ * the standby takes its place immediately, so failover costs no connect and bind round trip, and the
+ * standby is then rebound in the background.
+ */
+public class SmppSessionPool {
+    private static final Logger logger = LoggerFactory.getLogger(SmppSessionPool.class);
+    private static final int MAX_REDISPATCH = 3; // Attempts on another bind after a channel failure
+    private static final long MONITOR_INTERVAL = 1000; // Keepalive and rebind check interval (in milliseconds)
+
+    private final DefaultSmppClient clientBootstrap;
+    private final long windowWaitTimeout;
+    private final Supplier<? extends AsyncSubmitEngine.CompletionHandler> handlerFactory;
+    private final Supplier<AimdRateLimiter> rateLimiterFactory;
+    private final ExecutorService redispatchExecutor;
+    private final ScheduledExecutorService monitorExecutor;
+    private final SessionSupervisor supervisor;
+    private final Member[] members;
+    private final Member[] standbys; // one per host when warm standby is enabled, otherwise empty
+    private final AtomicInteger rotation = new AtomicInteger();
+    private volatile LatencyRecorder latencyRecorder;
+    private volatile ObjLongConsumer<SubmitSmResp> partListener;
+    private volatile boolean closed;
+    private ScheduledFuture<?> monitorTask;
+
+    /**
+     * @param clientBootstrap    client used for every bind
+     * @param hosts              one configuration per SMSC host; each is bound {@code bindsPerHost} times
+     * @param bindsPerHost       number of binds opened against each host
+     * @param warmStandby        whether each host keeps one extra bound session for instant failover
+     * @param windowWaitTimeout  max time (ms) a submit may wait for a free window slot
+     * @param handlerFactory     creates the session handler for each bind
+     * @param rateLimiterFactory creates the per-bind rate limiter, or null for no pacing
+     * @param supervisor         keepalive and dead-link detection for every bind
+     * @param redispatchExecutor executor used to resubmit messages from a dead session and to rebind
+     * @param monitorExecutor    scheduler for the session monitor
+     */
+    public SmppSessionPool(DefaultSmppClient clientBootstrap, List<SmppSessionConfiguration> hosts, int bindsPerHost,
+                           boolean warmStandby, long windowWaitTimeout,
+                           Supplier<? extends AsyncSubmitEngine.CompletionHandler> handlerFactory,
+                           Supplier<AimdRateLimiter> rateLimiterFactory, SessionSupervisor supervisor,
+                           ExecutorService redispatchExecutor, ScheduledExecutorService monitorExecutor) {
+        this.clientBootstrap = clientBootstrap;
+        this.windowWaitTimeout = windowWaitTimeout;
+        this.handlerFactory = handlerFactory;
+        this.rateLimiterFactory = rateLimiterFactory;
+        this.supervisor = supervisor;
+        this.redispatchExecutor = redispatchExecutor;
+        this.monitorExecutor = monitorExecutor;
+
+        List<Member> list = new ArrayList<>();
+        List<Member> standbyList = new ArrayList<>();
+        for (int host = 0; host < hosts.size(); host++) {
+            SmppSessionConfiguration config = hosts.get(host);
+            for (int i = 0; i < bindsPerHost; i++) {
+                list.add(new Member(copyOf(config, config.getName() + "." + i), host));
+            }
+            if (warmStandby) {
+                standbyList.add(new Member(copyOf(config, config.getName() + ".standby"), host));
+            }
+        }
+        this.members = list.toArray(new Member[0]);
+        this.standbys = standbyList.toArray(new Member[0]);
+    }
+
+    /**
+     * Binds every slot and starts the dead-session monitor. Slots that fail to bind are retried by
+     * the monitor.
+     *
+     * @throws SmppChannelException If no slot could be bound at all
+     */
+    public void start() throws SmppChannelException {
+        int bound = 0;
+        for (Member member : members) {
+            if (bind(member)) {
+                bound++;
+            }
+        }
+        if (bound == 0) {
+            throw new SmppChannelException("Unable to bind any of " + members.length + " sessions");
+        }
+        for (Member standby : standbys) {
+            bind(standby);
+        }
+        logger.info("Session pool started with {}/{} binds and {} standby", bound, members.length, standbys.length);
+        monitorTask = monitorExecutor.scheduleWithFixedDelay(this::checkMembers,
+                MONITOR_INTERVAL, MONITOR_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Routes the submit to the least loaded live session.
+     *
+     * @param submit The PDU to send
+     * @return A future completed with the submit_sm_resp from whichever bind finally carried it
+     */
+    public CompletableFuture<SubmitSmResp> submit(SubmitSm submit) {
+        return submit(submit, 0);
+    }
+
+    /**
+     * Same as {@link #submit(SubmitSm)}, with latency measured from when the submit was meant to be sent
+     * (open-loop load).
+     *
+     * @param submit             The PDU to send
+     * @param intendedStartNanos {@link System#nanoTime()} at which the submit was scheduled, or 0 for now
+     * @return A future completed with the submit_sm_resp from whichever bind finally carried it
+     */
+    public CompletableFuture<SubmitSmResp> submit(SubmitSm submit, long intendedStartNanos) {
+        return submit(submit, intendedStartNanos, null);
+    }
+
+    /**
+     * Same as {@link #submit(SubmitSm, long)}, with a callback run on the I/O thread of the session that got
+     * the response, before it reads the next PDU (see {@link AsyncSubmitEngine#submit(SubmitSm, long, Consumer)}).
+     *
+     * @param submit             The PDU to send
+     * @param intendedStartNanos {@link System#nanoTime()} at which the submit was scheduled, or 0 for now
+     * @param onResponse         called with the submit_sm_resp, or null
+     * @return A future completed with the submit_sm_resp from whichever bind finally carried it
+     */
+    public CompletableFuture<SubmitSmResp> submit(SubmitSm submit, long intendedStartNanos,
+                                                  Consumer<? super SubmitSmResp> onResponse) {
+        CompletableFuture<SubmitSmResp> result = new CompletableFuture<>();
+        dispatch(submit, intendedStartNanos, onResponse, result, 0);
+        return result;
+    }
+
+    /**
+     * @param latencyRecorder receives per-session and per-host latencies of binds made from now on
+     */
+    public void setLatencyRecorder(LatencyRecorder latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    /**
+     * @param partListener sees the submit_sm_resp of every part sent by {@link #submitParts} with its message
+     *                     id, on the session's I/O thread before it reads the next PDU (e.g. the part's receipt)
+     */
+    public void setPartListener(ObjLongConsumer<SubmitSmResp> partListener) {
+        this.partListener = partListener;
+    }
+
+    /**
+     * Sends the parts of one concatenated message back to back on a single session, so the SMSC receives
+     * them in order on the same bind. Parts are not redispatched: a part that fails is reported in the
+     * result instead of being moved to another bind behind the others.
+     *
+     * @param messageId logical id reported in the result
+     * @param parts     PDUs in part order
+     * @return A future completed once every part has been answered or has failed
+     */
+    public CompletableFuture<MessageSubmitResult> submitParts(long messageId, List<SubmitSm> parts) {
+        MessageSubmitResult result = new MessageSubmitResult(messageId, parts.size());
+        AsyncSubmitEngine engine = awaitEngine();
+        if (engine == null) {
+            SmppChannelException error = new SmppChannelException("No bound session available");
+            for (int i = 0; i < parts.size(); i++) {
+                result.set(i, null, error);
+            }
+            return CompletableFuture.completedFuture(result);
+        }
+        ObjLongConsumer<SubmitSmResp> listener = partListener;
+        Consumer<SubmitSmResp> onResponse = listener != null ? resp -> listener.accept(resp, messageId) : null;
+        CompletableFuture<?>[] answered = new CompletableFuture<?>[parts.size()];
+        for (int i = 0; i < parts.size(); i++) {
+            int part = i;
+            answered[i] = engine.submit(parts.get(i), 0, onResponse).handle((resp, error) -> {
+                result.set(part, resp, error);
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(answered).thenApply(ignored -> result);
+    }
+
+    /**
+     * @return Engines of all currently bound sessions
+     */
+    public List<AsyncSubmitEngine> getEngines() {
+        List<AsyncSubmitEngine> engines = new ArrayList<>(members.length);
+        for (Member member : members) {
+            AsyncSubmitEngine engine = member.engine;
+            if (engine != null) {
+                engines.add(engine);
+            }
+        }
+        return engines;
+    }
+
+    /**
+     * Stops the monitor and unbinds every session.
+     *
+     * @param unbindTimeout max time (ms) to wait for each unbind_resp
+     */
+    public void close(long unbindTimeout) {
+        closed = true;
+        if (monitorTask != null) {
+            monitorTask.cancel(false);
+        }
+        List<Member> all = new ArrayList<>(List.of(members));
+        all.addAll(List.of(standbys));
+        for (Member member : all) {
+            AsyncSubmitEngine engine;
+            synchronized (this) {
+                engine = member.engine;
+                member.engine = null;
+            }
+            if (engine != null) {
+                supervisor.unwatch(engine);
+                SmppSession session = engine.getSession();
+                try {
+                    session.unbind(unbindTimeout);
+                    if (session.hasCounters()) {
+                        logger.info("Session {} submitted messages: {}", member.config.getName(),
+                                session.getCounters().getTxSubmitSM());
+                    }
+                } catch (Exception e) {
+                    logger.error("Error during session cleanup", e);
+                }
+                session.destroy();
+            }
+        }
+    }
+
+    private void dispatch(SubmitSm submit, long intendedStartNanos, Consumer<? super SubmitSmResp> onResponse,
+                          CompletableFuture<SubmitSmResp> result, int attempt) {
+        AsyncSubmitEngine engine = awaitEngine();
+        if (engine == null) {
+            result.completeExceptionally(new SmppChannelException("No bound session available"));
+            return;
+        }
+        engine.submit(submit, intendedStartNanos, onResponse).whenComplete((resp, error) -> {
+            if (error == null) {
+                result.complete(resp);
+            } else if (isChannelFailure(error) && attempt < MAX_REDISPATCH && !closed) {
+                // The bind died under this message; send it again on another one
+                submit.removeSequenceNumber();
+                redispatchExecutor.execute(() -> dispatch(submit, intendedStartNanos, onResponse, result, attempt + 1));
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+    }
+
+    // Waits (up to the window wait timeout) for at least one bound session while slots are rebinding
+    private AsyncSubmitEngine awaitEngine() {
+        AsyncSubmitEngine engine = leastOutstanding();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowWaitTimeout);
+        while (engine == null && !closed && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            engine = leastOutstanding();
+        }
+        return engine;
+    }
+
+    private AsyncSubmitEngine leastOutstanding() {
+        // Rotate the starting slot so equally loaded binds share the traffic
+        int start = Math.floorMod(rotation.getAndIncrement(), members.length);
+        AsyncSubmitEngine best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < members.length; i++) {
+            AsyncSubmitEngine engine = members[(start + i) % members.length].engine;
+            if (engine == null || !engine.getSession().isBound()) {
+                continue;
+            }
+            int outstanding = engine.getOutstanding();
+            if (outstanding < bestOutstanding) {
+                best = engine;
+                bestOutstanding = outstanding;
+            }
+        }
+        return best;
+    }
+
+    private void checkMembers() {
+        if (closed) {
+            return;
+        }
+        supervisor.check(this::onSessionLost);
+        long now = System.currentTimeMillis();
+        for (Member member : members) {
+            scheduleRebind(member, now);
+        }
+        for (Member standby : standbys) {
+            scheduleRebind(standby, now);
+        }
+    }
+
+    // Rebind an empty slot in the background once its backoff has elapsed
+    private void scheduleRebind(Member member, long now) {
+        if (member.engine == null && !member.binding && now >= member.nextBindAt && !closed) {
+            member.binding = true;
+            redispatchExecutor.execute(() -> {
+                try {
+                    bind(member);
+                } finally {
+                    member.binding = false;
+                }
+            });
+        }
+    }
+
+    // Called by the supervisor for a dead link and by the handler when the channel closes
+    private void onSessionLost(AsyncSubmitEngine engine) {
+        Member member = null;
+        synchronized (this) {
+            for (Member candidate : members) {
+                if (candidate.engine == engine) {
+                    member = candidate;
+                    member.engine = takeStandby(member.hostIndex);
+                    break;
+                }
+            }
+            for (Member standby : standbys) {
+                if (standby.engine == engine) {
+                    member = standby;
+                    member.engine = null;
+                }
+            }
+        }
+        if (member == null) {
+            return; // already handled
+        }
+        supervisor.unwatch(engine);
+        drain(member, engine);
+    }
+
+    private AsyncSubmitEngine takeStandby(int hostIndex) {
+        for (Member standby : standbys) {
+            AsyncSubmitEngine engine = standby.engine;
+            if (standby.hostIndex == hostIndex && engine != null && engine.getSession().isBound()) {
+                standby.engine = null;
+                logger.info("Standby session {} takes over", standby.config.getName());
+                return engine;
+            }
+        }
+        return null;
+    }
+
+    // Push the dead session's in-flight submits back through dispatch
+    private void drain(Member member, AsyncSubmitEngine engine) {
+        logger.warn("Session {} is no longer usable ({}), draining {} in-flight submits",
+                member.config.getName(), engine.getSession().getStateName(), engine.getOutstanding());
+        engine.failOutstanding(new SmppChannelException("Session no longer bound"));
+        engine.getSession().destroy();
+    }
+
+    private boolean bind(Member member) {
+        try {
+            AsyncSubmitEngine.CompletionHandler handler = handlerFactory.get();
+            SmppSession session = clientBootstrap.bind(member.config, handler);
+            AimdRateLimiter rateLimiter = rateLimiterFactory != null ? rateLimiterFactory.get() : null;
+            AsyncSubmitEngine engine = new AsyncSubmitEngine(session, handler, windowWaitTimeout, rateLimiter);
+            engine.setCloseListener(this::onSessionLost);
+            LatencyRecorder recorder = latencyRecorder;
+            if (recorder != null) {
+                engine.setLatencyScope(recorder.scope(member.config.getName(),
+                        member.config.getHost() + ":" + member.config.getPort()));
+            }
+            supervisor.watch(engine);
+            member.failures = 0;
+            boolean installed;
+            synchronized (this) {
+                installed = !closed;
+                if (installed) {
+                    member.engine = engine;
+                }
+            }
+            if (!installed) {
+                // close() already swept this slot; nobody else would release the session
+                supervisor.unwatch(engine);
+                session.destroy();
+                return false;
+            }
+            logger.info("Session {} bound to {}:{}", member.config.getName(),
+                    member.config.getHost(), member.config.getPort());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Unable to bind session " + member.config.getName(), e);
+        }
+        member.nextBindAt = System.currentTimeMillis() + supervisor.rebindDelay(member.failures++);
+        return false;
+    }
+
+    private static boolean isChannelFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof SmppChannelException;
+    }
+
+    private static SmppSessionConfiguration copyOf(SmppSessionConfiguration source, String name) {
+        SmppSessionConfiguration config = new SmppSessionConfiguration();
+        config.setName(name);
+        config.setType(source.getType());
+        config.setHost(source.getHost());
+        config.setPort(source.getPort());
+        config.setSystemId(source.getSystemId());
+        config.setPassword(source.getPassword());
+        config.setWindowSize(source.getWindowSize());
+        config.setConnectTimeout(source.getConnectTimeout());
+        config.setRequestExpiryTimeout(source.getRequestExpiryTimeout());
+        config.setWindowMonitorInterval(source.getWindowMonitorInterval());
+        config.setCountersEnabled(source.isCountersEnabled());
+        return config;
+    }
+
+    // One bind slot; engine is null while the slot is being (re)bound
+    private static final class Member {
+        private final SmppSessionConfiguration config;
+        private final int hostIndex;
+        private volatile AsyncSubmitEngine engine; // read lock-free by dispatch, written only under the pool's lock
+        private volatile boolean binding;
+        private volatile long nextBindAt; // earliest time of the next bind attempt (epoch ms)
+        private int failures; // consecutive failed bind attempts, touched only by the binding thread
+
+        Member(SmppSessionConfiguration config, int hostIndex) {
+            this.config = config;
+            this.hostIndex = hostIndex;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.tlv.Tlv;
+import com.cloudhopper.smpp.type.Address;
+import com.cloudhopper.smpp.type.SmppInvalidArgumentException;
+import org.alpha.utils.SmppEvents;
+import org.alpha.utils.SmsEncoder;
+
+import java.util.List;
+
+/**
+ * Prebuilt submit_sm: source address, esm_class, registered_delivery and the text prefix (encoded once
+ * per candidate charset) are computed up front, and each message only fills in the destination and its
+ * own text suffix.
+ * <p>
+ * The suffix is written into a per-thread scratch {@link Body}. The data_coding is chosen per message by
+ * {@link SmsEncoder#select(CharSequence, boolean)} over prefix and suffix together, and the text is encoded
+ * straight into the final short_message array. The only allocations per message are the {@link SubmitSm}
+ * itself and that exact-size array (both must outlive the call, since the PDU is encoded later on the I/O
+ * thread) plus the destination {@link Address} when it varies. Address instances are only read while
+ * encoding, so a fixed destination can be shared by all PDUs.
+ * <p>
+ * With a {@link MessageSegmenter}, {@link #createParts(Address, Body)} splits texts that do not fit one
+ * message into concatenated parts; without one, long texts fall back to the message_payload TLV.
+ */
+public class SubmitSmTemplate {
+    private static final int MAX_BODY_LENGTH = 16384; // Upper bound for the per-message suffix, in characters
+    private static final int MAX_SHORT_MESSAGE_LENGTH = 255; // Longer bodies go into the message_payload TLV
+
+    private final Address sourceAddress;
+    private final byte destTon;
+    private final byte destNpi;
+    private final byte esmClass;
+    private final byte registeredDelivery;
+    private final boolean latin1Allowed;
+    private final String prefix;
+    private final MessageSegmenter segmenter; // null: long texts go into message_payload
+    private final byte[][] encodedPrefix; // by Encoding ordinal, null where the prefix cannot be encoded
+    private final ThreadLocal<Body> bodies;
+
+    /**
+     * @param sourceAddress      shared source address
+     * @param destTon            TON used for every destination
+     * @param destNpi            NPI used for every destination
+     * @param esmClass           esm_class of every PDU
+     * @param registeredDelivery registered_delivery of every PDU
+     * @param latin1Allowed      whether the SMSC accepts data_coding 0x03
+     * @param prefix             static leading text, encoded once
+     */
+    public SubmitSmTemplate(Address sourceAddress, byte destTon, byte destNpi, byte esmClass,
+                            byte registeredDelivery, boolean latin1Allowed, String prefix) {
+        this(sourceAddress, destTon, destNpi, esmClass, registeredDelivery, latin1Allowed, prefix, null);
+    }
+
+    /**
+     * @param sourceAddress      shared source address
+     * @param destTon            TON used for every destination
+     * @param destNpi            NPI used for every destination
+     * @param esmClass           esm_class of every PDU
+     * @param registeredDelivery registered_delivery of every PDU
+     * @param latin1Allowed      whether the SMSC accepts data_coding 0x03
+     * @param prefix             static leading text, encoded once
+     * @param segmenter          splits long texts into concatenated parts, or null for message_payload
+     */
+    public SubmitSmTemplate(Address sourceAddress, byte destTon, byte destNpi, byte esmClass,
+                            byte registeredDelivery, boolean latin1Allowed, String prefix,
+                            MessageSegmenter segmenter) {
+        this.sourceAddress = sourceAddress;
+        this.destTon = destTon;
+        this.destNpi = destNpi;
+        this.esmClass = esmClass;
+        this.registeredDelivery = registeredDelivery;
+        this.latin1Allowed = latin1Allowed;
+        this.prefix = prefix;
+        this.segmenter = segmenter;
+        this.encodedPrefix = new byte[SmsEncoder.Encoding.values().length][];
+        for (SmsEncoder.Encoding encoding : SmsEncoder.Encoding.values()) {
+            if (canEncode(prefix, encoding)) {
+                byte[] bytes = new byte[SmsEncoder.encodedLength(prefix, encoding)];
+                SmsEncoder.encode(prefix, encoding, bytes, 0);
+                encodedPrefix[encoding.ordinal()] = bytes;
+            }
+        }
+        this.bodies = ThreadLocal.withInitial(() -> new Body(prefix));
+    }
+
+    /**
+     * @return The calling thread's scratch body, reset to an empty suffix
+     */
+    public Body body() {
+        Body body = bodies.get();
+        body.length = 0;
+        return body;
+    }
+
+    /**
+     * @param destination destination address string
+     * @return A new destination address with the template TON/NPI
+     */
+    public Address destination(String destination) {
+        return new Address(destTon, destNpi, destination);
+    }
+
+    /**
+     * @return The static text every message starts with
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @param body suffix filled on this thread
+     * @return The encoding the message will be sent with
+     */
+    public SmsEncoder.Encoding encodingOf(Body body) {
+        // Selected over the whole text: the prefix and the suffix alone may each fit a different charset
+        return SmsEncoder.select(body.message, latin1Allowed);
+    }
+
+    /**
+     * Builds a PDU from the template and a filled body. Bodies longer than the short_message limit are
+     * carried in the message_payload TLV.
+     *
+     * @param destAddress destination address, may be shared between PDUs
+     * @param body        body obtained from {@link #body()} on this thread
+     * @return A new submit_sm ready to send
+     * @throws SmppInvalidArgumentException If the PDU rejects the short_message
+     */
+    public SubmitSm create(Address destAddress, Body body) throws SmppInvalidArgumentException {
+        SmsEncoder.Encoding encoding = encodingOf(body);
+        byte[] prefixBytes = encodedPrefix[encoding.ordinal()];
+        byte[] text = new byte[prefixBytes.length + SmsEncoder.encodedLength(body, encoding)];
+        System.arraycopy(prefixBytes, 0, text, 0, prefixBytes.length);
+        SmsEncoder.encode(body, encoding, text, prefixBytes.length);
+
+        SubmitSm submit = prototype(destAddress, encoding);
+        if (text.length <= MAX_SHORT_MESSAGE_LENGTH) {
+            submit.setShortMessage(text);
+        } else {
+            submit.setShortMessage(new byte[0]);
+            submit.addOptionalParameter(new Tlv(SmppConstants.TAG_MESSAGE_PAYLOAD, text));
+        }
+        return submit;
+    }
+
+    /**
+     * Builds the PDUs for a message: a single one when the text fits, otherwise the concatenated parts
+     * produced by the segmenter. Without a segmenter this is {@link #create(Address, Body)}.
+     *
+     * @param destAddress destination address, shared by all parts
+     * @param body        body obtained from {@link #body()} on this thread
+     * @return The PDUs in sending order
+     * @throws SmppInvalidArgumentException If a PDU rejects its short_message
+     */
+    public List<SubmitSm> createParts(Address destAddress, Body body) throws SmppInvalidArgumentException {
+        SmppEvents.Encode event = new SmppEvents.Encode();
+        event.begin();
+        List<SubmitSm> parts;
+        SmsEncoder.Encoding encoding = encodingOf(body);
+        if (segmenter == null || fitsSingle(body, encoding)) {
+            parts = List.of(create(destAddress, body));
+        } else {
+            parts = segmenter.split(body.message, encoding, () -> prototype(destAddress, encoding));
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.length = prefix.length() + body.length();
+            event.parts = parts.size();
+            event.commit();
+        }
+        return parts;
+    }
+
+    // Prefix and suffix together within the single-message capacity (septets for GSM7, characters otherwise)
+    private boolean fitsSingle(Body body, SmsEncoder.Encoding encoding) {
+        int units = encoding == SmsEncoder.Encoding.GSM7
+                ? encodedPrefix[encoding.ordinal()].length + SmsEncoder.encodedLength(body, encoding)
+                : prefix.length() + body.length();
+        return units <= encoding.getSingleCapacity();
+    }
+
+    // Whether every character of the text is representable in the encoding
+    private boolean canEncode(CharSequence text, SmsEncoder.Encoding encoding) {
+        return switch (encoding) {
+            case GSM7 -> SmsEncoder.isGsm7(text);
+            case LATIN1 -> latin1Allowed && text.chars().allMatch(c -> c <= 0xFF);
+            case UCS2 -> true;
+        };
+    }
+
+    // Every field but the short_message
+    private SubmitSm prototype(Address destAddress, SmsEncoder.Encoding encoding) {
+        SubmitSm submit = new SubmitSm();
+        submit.setSourceAddress(sourceAddress);
+        submit.setDestAddress(destAddress);
+        submit.setEsmClass(esmClass);
+        submit.setDataCoding(encoding.getDataCoding());
+        submit.setRegisteredDelivery(registeredDelivery);
+        return submit;
+    }
+
+    /**
+     * Per-thread scratch holding the per-message suffix as characters.
+     */
+    public static final class Body implements CharSequence {
+        private final char[] chars = new char[MAX_BODY_LENGTH];
+        private final CharSequence message; // the template prefix followed by this suffix
+        private int length;
+
+        private Body(String prefix) {
+            this.message = new Message(prefix, this);
+        }
+
+        public Body append(CharSequence text) {
+            ensureCapacity(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                chars[length++] = text.charAt(i);
+            }
+            return this;
+        }
+
+        /**
+         * Appends a non-negative number in decimal without creating a String.
+         */
+        public Body appendDecimal(long value) {
+            if (value >= 10) {
+                appendDecimal(value / 10);
+            }
+            ensureCapacity(1);
+            chars[length++] = (char) ('0' + value % 10);
+            return this;
+        }
+
+        /**
+         * Appends a number as 16 lower-case hex digits without creating a String.
+         */
+        public Body appendHex(long value) {
+            ensureCapacity(16);
+            for (int shift = 60; shift >= 0; shift -= 4) {
+                int digit = (int) (value >>> shift) & 0xF;
+                chars[length++] = (char) (digit < 10 ? '0' + digit : 'a' + digit - 10);
+            }
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+
+        private void ensureCapacity(int count) {
+            if (length + count > chars.length) {
+                throw new IllegalArgumentException("Message body exceeds " + chars.length + " characters");
+            }
+        }
+    }
+
+    // Read-only view of the prefix followed by a body, so the whole text is examined without copying it
+    private record Message(String prefix, Body body) implements CharSequence {
+        @Override
+        public int length() {
+            return prefix.length() + body.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return index < prefix.length() ? prefix.charAt(index) : body.charAt(index - prefix.length());
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return prefix + body;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package org.alpha.server;
+
+import com.cloudhopper.commons.util.windowing.WindowFuture;
+import com.cloudhopper.smpp.SmppBindType;
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import org.alpha.utils.AimdRateLimiter;
+import org.alpha.utils.SmppEvents;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Per-session queue of outbound deliver_sm (MO messages and delivery receipts), sent by its own virtual
+ * thread so the request path only enqueues and answers the submit_sm straight away.
+ * <p>
+ * The sender waits for a free slot of the session's send window and paces itself with an
+ * {@link AimdRateLimiter} that backs off when the ESME answers ESME_RTHROTTLED or ESME_RMSGQFUL. The
+ * queue is bounded: a deliver_sm that does not fit, cannot be sent within the window wait timeout or is
+ * still queued when the session closes goes to the overflow handler (by default it is logged and
+ * dropped). So does one the ESME did not take after it was sent: answered with a throttling status,
+ * expired without deliver_sm_resp, or still unanswered when the session closes. Queue depth, in-flight
+ * count, overflows and throttling are exposed over JMX.
+ */
+public class DeliverSmOutbox implements DeliverSmOutboxMBean, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DeliverSmOutbox.class);
+    private static final long POLL_INTERVAL = 100; // Sender wake-up to notice close (in milliseconds)
+    private static final double MIN_RATE = 10; // Pacing floor while the ESME keeps throttling (TPS)
+    private static final double RATE_INCREASE_PER_SECOND = 100; // TPS regained per second without throttling
+    private static final double THROTTLE_DECREASE_FACTOR = 0.5; // Rate multiplier applied on a throttling response
+    private static final long THROTTLE_COOLDOWN = 1000; // Minimum time between two rate decreases (in milliseconds)
+
+    private final String name;
+    private final String systemId;
+    private final SmppBindType bindType;
+    private final WeakReference<SmppSession> sessionRef;
+    private final BlockingQueue<DeliverSm> queue;
+    private final int capacity;
+    private final long windowWaitTimeout;
+    private final AimdRateLimiter rateLimiter;
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private volatile Consumer<DeliverSm> overflowHandler = this::drop;
+    private volatile boolean closed;
+    private Thread sender;
+    private ObjectName objectName;
+
+    /**
+     * @param name              session name, used for the sender thread and the JMX name
+     * @param session           session the deliver_sm are sent on
+     * @param capacity          max queued deliver_sm
+     * @param windowWaitTimeout max time (ms) to wait for a free send window slot
+     * @param maxTps            ceiling of the pacing rate
+     */
+    public DeliverSmOutbox(String name, SmppSession session, int capacity, long windowWaitTimeout, double maxTps) {
+        this.name = name;
+        this.systemId = session.getConfiguration().getSystemId();
+        this.bindType = session.getBindType();
+        this.sessionRef = new WeakReference<>(session);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.windowWaitTimeout = windowWaitTimeout;
+        this.rateLimiter = new AimdRateLimiter(maxTps, Math.min(MIN_RATE, maxTps), RATE_INCREASE_PER_SECOND,
+                THROTTLE_DECREASE_FACTOR, THROTTLE_COOLDOWN, 1);
+    }
+
+    /**
+     * @param overflowHandler receives every deliver_sm the outbox gives up on, e.g. to store it for later
+     */
+    public void setOverflowHandler(Consumer<DeliverSm> overflowHandler) {
+        this.overflowHandler = overflowHandler;
+    }
+
+    /**
+     * Starts the sender thread and registers the outbox with the platform MBean server.
+     */
+    public void start() {
+        sender = Thread.ofVirtual().name("outbox-" + name).start(this::drain);
+        try {
+            objectName = new ObjectName("org.alpha:type=DeliverSmOutbox,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (Exception e) {
+            logger.warn("Unable to register outbox {} with JMX", name, e);
+            objectName = null;
+        }
+    }
+
+    /**
+     * Queues a deliver_sm without blocking.
+     *
+     * @param deliver the PDU to send
+     * @return false if it went to the overflow handler instead
+     */
+    public boolean offer(DeliverSm deliver) {
+        if (closed || !queue.offer(deliver)) {
+            overflow(deliver);
+            return false;
+        }
+        enqueued.increment();
+        return true;
+    }
+
+    /**
+     * Queues a deliver_sm only if there is room, without involving the overflow handler; used to replay
+     * stored deliver_sm, which stay stored when this fails.
+     *
+     * @param deliver the PDU to send
+     * @return true if it was queued
+     */
+    public boolean tryOffer(DeliverSm deliver) {
+        if (closed || !queue.offer(deliver)) {
+            return false;
+        }
+        enqueued.increment();
+        return true;
+    }
+
+    /**
+     * Feeds the deliver_sm_resp back into the pacing; to be called from the session handler. A deliver_sm
+     * the ESME throttled goes to the overflow handler, to be sent again later.
+     */
+    public void onResponse(PduRequest request, PduResponse response) {
+        int status = response.getCommandStatus();
+        if (status == SmppConstants.STATUS_THROTTLED || status == SmppConstants.STATUS_MSGQFUL) {
+            throttled.increment();
+            rateLimiter.onThrottled();
+            if (request instanceof DeliverSm deliver) {
+                overflow(deliver);
+            }
+        } else {
+            rateLimiter.onSuccess();
+        }
+    }
+
+    /**
+     * Hands a deliver_sm that expired without deliver_sm_resp to the overflow handler; to be called from
+     * the session handler. Ignored once closed, as {@link #close()} already handed over everything unanswered.
+     */
+    public void onExpired(DeliverSm deliver) {
+        if (closed) {
+            return;
+        }
+        logger.warn("deliver_sm to {} expired on {}", deliver.getDestAddress(), name);
+        overflow(deliver);
+    }
+
+    /**
+     * Stops the sender; whatever is still queued or sent but unanswered goes to the overflow handler. A
+     * deliver_sm_resp may still be on its way for the latter, so the ESME can get some of them twice.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (sender != null) {
+            sender.interrupt();
+            try {
+                sender.join(windowWaitTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        DeliverSm deliver;
+        while ((deliver = queue.poll()) != null) {
+            overflow(deliver);
+        }
+        SmppSession session = sessionRef.get();
+        if (session != null) {
+            for (WindowFuture<Integer, PduRequest, PduResponse> future : session.getSendWindow().createSortedSnapshot().values()) {
+                if (!future.isDone() && future.getRequest() instanceof DeliverSm unanswered) {
+                    overflow(unanswered);
+                }
+            }
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                logger.debug("Unable to unregister outbox {}", name, e);
+            }
+        }
+        logger.info("Outbox {} closed: {}", name, this);
+    }
+
+    /**
+     * @return Session name, as given to the constructor
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return system_id the session is bound with
+     */
+    public String getSystemId() {
+        return systemId;
+    }
+
+    public SmppBindType getBindType() {
+        return bindType;
+    }
+
+    /**
+     * @return The session, or null once it has been collected
+     */
+    public SmppSession getSession() {
+        return sessionRef.get();
+    }
+
+    /**
+     * @return Whether the session may receive deliver_sm (RECEIVER or TRANSCEIVER bind)
+     */
+    public boolean isReceiver() {
+        return bindType != SmppBindType.TRANSMITTER;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void drain() {
+        while (!closed) {
+            DeliverSm deliver = null;
+            try {
+                deliver = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (deliver == null) {
+                    continue;
+                }
+                rateLimiter.acquire();
+            } catch (InterruptedException e) {
+                // close() interrupted the wait for a permit: already out of the queue, so hand it over here
+                if (deliver != null) {
+                    overflow(deliver);
+                }
+                return;
+            }
+            send(deliver);
+        }
+    }
+
+    private void send(DeliverSm deliver) {
+        SmppSession session = sessionRef.get();
+        if (session == null || !session.isBound()) {
+            overflow(deliver);
+            return;
+        }
+        SmppEvents.WindowAcquire event = new SmppEvents.WindowAcquire();
+        event.begin();
+        try {
+            // Blocks only this sender while the ESME's window is full
+            session.sendRequestPdu(deliver, windowWaitTimeout, false);
+            sent.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            event.commandStatus = -1;
+            overflow(deliver);
+        } catch (Exception e) {
+            logger.warn("Unable to send deliver_sm on {}: {}", name, e.toString());
+            event.commandStatus = -1;
+            overflow(deliver);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.pdu = "deliver_sm";
+            event.sequenceNumber = deliver.getSequenceNumber();
+            event.systemId = systemId;
+            event.commit();
+        }
+    }
+
+    private void overflow(DeliverSm deliver) {
+        overflowed.increment();
+        overflowHandler.accept(deliver);
+    }
+
+    private void drop(DeliverSm deliver) {
+        logger.warn("Outbox {} dropped deliver_sm to {}", name, deliver.getDestAddress());
+    }
+
+    @Override
+    public int getQueued() {
+        return queue.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getInFlight() {
+        SmppSession session = sessionRef.get();
+        return session != null ? session.getSendWindow().getSize() : 0;
+    }
+
+    @Override
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    @Override
+    public long getSent() {
+        return sent.sum();
+    }
+
+    @Override
+    public long getOverflowed() {
+        return overflowed.sum();
+    }
+
+    @Override
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    @Override
+    public double getRate() {
+        return rateLimiter.getRate();
+    }
+
+    @Override
+    public String toString() {
+        return "queued=" + getQueued() + "/" + capacity + " inFlight=" + getInFlight() + " enqueued=" + getEnqueued()
+                + " sent=" + getSent() + " overflowed=" + getOverflowed() + " throttled=" + getThrottled()
+                + " rate=" + String.format("%.0f", getRate());
+    }
+}
@@ -0,0 +1,34 @@
+package org.alpha.server;
+
+/**
+ * JMX view of a {@link DeliverSmOutbox}, one per bound session.
+ */
+public interface DeliverSmOutboxMBean {
+    /**
+     * @return deliver_sm waiting for the sender
+     */
+    int getQueued();
+
+    int getCapacity();
+
+    /**
+     * @return deliver_sm sent and not yet answered by the ESME (send window occupancy)
+     */
+    int getInFlight();
+
+    long getEnqueued();
+
+    long getSent();
+
+    /**
+     * @return deliver_sm handed to the overflow handler because the queue was full or sending failed
+     */
+    long getOverflowed();
+
+    long getThrottled();
+
+    /**
+     * @return Current pacing rate (TPS)
+     */
+    double getRate();
+}
@@ -0,0 +1,442 @@
+package org.alpha.server;
+
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.pdu.Pdu;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoder;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoderContext;
+import com.cloudhopper.smpp.transcoder.PduTranscoder;
+import org.alpha.utils.AimdRateLimiter;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable store-and-forward queue of deliver_sm, one per system_id, for ESMEs that are not bound or cannot
+ * keep up.
+ * <p>
+ * Each system_id has a directory holding a log of memory-mapped, fixed-size segment files. Records are
+ * {@code [length][crc32][encoded deliver_sm]} appended at the tail; a zero length marks the end of the
+ * written part of a segment. A separate 16-byte mapped cursor file holds the segment and offset of the
+ * oldest undelivered record. Segments behind the cursor are deleted, which is the log's compaction: the
+ * store only ever holds the undelivered suffix plus, at most, the rest of the segment being read.
+ * <p>
+ * When a RECEIVER or TRANSCEIVER bind arrives for a system_id, {@link #replay(String, DeliverSmOutbox)}
+ * feeds its stored deliver_sm to that session's outbox at a fixed rate, and only while the outbox is less
+ * than half full, so live traffic keeps room and the reconnecting ESME is not flooded. The cursor moves
+ * past a record once the outbox has accepted it; a deliver_sm the outbox later gives up on, before or after
+ * sending it (expired, throttled or unanswered when the session closes), comes back through the overflow
+ * handler and is appended again. Delivery is therefore at least once.
+ * <p>
+ * Writes land in the OS page cache at once, so a crash of the process loses nothing; segments are forced
+ * to disk when they fill up and on {@link #close()}.
+ */
+public class DeliverSmStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DeliverSmStore.class);
+    private static final int HEADER_LENGTH = 4 + 4; // length + crc32
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURSOR_FILE = "cursor";
+    private static final long BUSY_PAUSE = 10; // Replay pause while the outbox is busy (in milliseconds)
+
+    private final Path directory;
+    private final int segmentSize;
+    private final double replayTps;
+    private final PduTranscoder transcoder = new DefaultPduTranscoder(new DefaultPduTranscoderContext());
+    private final Map<String, SystemLog> logs = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * @param directory   root directory; each system_id gets a subdirectory
+     * @param segmentSize size of a segment file in bytes
+     * @param replayTps   rate at which stored deliver_sm are handed to a reconnecting session
+     */
+    public DeliverSmStore(Path directory, int segmentSize, double replayTps) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.replayTps = replayTps;
+    }
+
+    /**
+     * Stores a deliver_sm for later delivery; if a receiving session of the system_id is being replayed
+     * to, it goes out as soon as the outbox has room.
+     *
+     * @throws IOException If the deliver_sm cannot be encoded or written
+     */
+    public void append(String systemId, DeliverSm deliver) throws IOException {
+        if (closed) {
+            throw new IOException("DeliverSm store is closed");
+        }
+        SystemLog log = log(systemId);
+        log.append(encode(deliver));
+        log.resumeReplay();
+    }
+
+    /**
+     * @return An outbox overflow handler storing what the outbox gives up on under the given system_id
+     */
+    public Consumer<DeliverSm> overflowTo(String systemId) {
+        return deliver -> {
+            try {
+                append(systemId, deliver);
+            } catch (IOException e) {
+                logger.error("Unable to store deliver_sm for {}, dropped", systemId, e);
+            }
+        };
+    }
+
+    /**
+     * Starts feeding the stored deliver_sm of a system_id to a newly bound session; the session stays the
+     * replay target until it closes or another session of the system_id binds.
+     */
+    public void replay(String systemId, DeliverSmOutbox outbox) {
+        try {
+            SystemLog log = log(systemId);
+            log.target = outbox;
+            log.resumeReplay();
+        } catch (IOException e) {
+            logger.error("Unable to open deliver_sm store of {}", systemId, e);
+        }
+    }
+
+    /**
+     * @return Stored deliver_sm of a system_id not yet handed to a session
+     */
+    public long getPending(String systemId) {
+        if (!logs.containsKey(systemId) && !Files.isDirectory(directory.resolve(directoryName(systemId)))) {
+            return 0;
+        }
+        try {
+            return log(systemId).pending();
+        } catch (IOException e) {
+            logger.warn("Unable to open deliver_sm store of {}", systemId, e);
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (SystemLog log : logs.values()) {
+            log.close();
+        }
+    }
+
+    private SystemLog log(String systemId) throws IOException {
+        SystemLog log = logs.get(systemId);
+        if (log != null) {
+            return log;
+        }
+        synchronized (logs) {
+            log = logs.get(systemId);
+            if (log == null) {
+                log = new SystemLog(systemId, directory.resolve(directoryName(systemId)));
+                logs.put(systemId, log);
+            }
+            return log;
+        }
+    }
+
+    // system_id as a file name: kept if plain, hex-encoded otherwise
+    private static String directoryName(String systemId) {
+        if (systemId.matches("[A-Za-z0-9_-]+")) {
+            return systemId;
+        }
+        StringBuilder sb = new StringBuilder("x");
+        for (byte b : systemId.getBytes(StandardCharsets.UTF_8)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private byte[] encode(DeliverSm deliver) throws IOException {
+        try {
+            ChannelBuffer buffer = transcoder.encode(deliver);
+            byte[] bytes = new byte[buffer.readableBytes()];
+            buffer.readBytes(bytes);
+            return bytes;
+        } catch (Exception e) {
+            throw new IOException("Unable to encode deliver_sm for the store", e);
+        }
+    }
+
+    private DeliverSm decode(byte[] bytes) throws IOException {
+        try {
+            Pdu pdu = transcoder.decode(ChannelBuffers.wrappedBuffer(bytes));
+            // The session assigns a fresh sequence number when it is sent again
+            pdu.removeSequenceNumber();
+            return (DeliverSm) pdu;
+        } catch (Exception e) {
+            throw new IOException("Corrupt deliver_sm in store", e);
+        }
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    // Segmented log and replay state of one system_id; the monitor guards segments and cursor
+    private final class SystemLog {
+        private final String systemId;
+        private final Path dir;
+        private final ArrayDeque<Segment> segments = new ArrayDeque<>(); // oldest first, tail last
+        private final FileChannel cursorChannel;
+        private final MappedByteBuffer cursor; // [segment index][offset]
+        private long pending;
+        private volatile DeliverSmOutbox target;
+        private Thread replayer;
+
+        SystemLog(String systemId, Path dir) throws IOException {
+            this.systemId = systemId;
+            this.dir = dir;
+            Files.createDirectories(dir);
+            cursorChannel = FileChannel.open(dir.resolve(CURSOR_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            cursor = cursorChannel.map(FileChannel.MapMode.READ_WRITE, 0, 16);
+
+            List<Long> indexes = new ArrayList<>();
+            try (Stream<Path> files = Files.list(dir)) {
+                files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                        .forEach(name -> indexes.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+            }
+            indexes.sort(null);
+            long readIndex = cursor.getLong(0);
+            for (long index : indexes) {
+                if (index < readIndex) {
+                    Files.deleteIfExists(segmentPath(index)); // consumed before a crash, not yet deleted
+                } else {
+                    Segment segment = new Segment(index, segmentPath(index));
+                    pending += segment.recover(index == readIndex ? cursor.getInt(8) : 0);
+                    segments.add(segment);
+                }
+            }
+            if (segments.isEmpty()) {
+                segments.add(new Segment(readIndex, segmentPath(readIndex)));
+                setCursor(readIndex, 0);
+            } else if (segments.getFirst().index != readIndex) {
+                setCursor(segments.getFirst().index, 0);
+            }
+            if (pending > 0) {
+                logger.info("DeliverSm store of {} holds {} undelivered", systemId, pending);
+            }
+        }
+
+        synchronized void append(byte[] pdu) throws IOException {
+            int length = HEADER_LENGTH + pdu.length;
+            if (length > segmentSize - 4) {
+                throw new IOException("deliver_sm of " + pdu.length + " bytes exceeds the segment size");
+            }
+            Segment tail = segments.getLast();
+            if (tail.writePosition + length + 4 > segmentSize) {
+                tail.buffer.force();
+                tail = new Segment(tail.index + 1, segmentPath(tail.index + 1));
+                segments.add(tail);
+            }
+            tail.write(pdu);
+            pending++;
+        }
+
+        // Oldest undelivered record, or null; drops segments that have been read to the end
+        synchronized byte[] peek() throws IOException {
+            while (true) {
+                Segment head = segments.getFirst();
+                int offset = cursor.getInt(8);
+                byte[] pdu = head.read(offset);
+                if (pdu != null) {
+                    return pdu;
+                }
+                if (segments.size() == 1) {
+                    return null;
+                }
+                segments.removeFirst().delete();
+                setCursor(segments.getFirst().index, 0);
+            }
+        }
+
+        // Moves the cursor past the record returned by peek()
+        synchronized void commit(byte[] pdu) {
+            setCursor(cursor.getLong(0), cursor.getInt(8) + HEADER_LENGTH + pdu.length);
+            pending--;
+        }
+
+        synchronized long pending() {
+            return pending;
+        }
+
+        synchronized void resumeReplay() {
+            DeliverSmOutbox outbox = target;
+            if (closed || outbox == null || outbox.isClosed() || pending == 0 || (replayer != null && replayer.isAlive())) {
+                return;
+            }
+            replayer = Thread.ofVirtual().name("replay-" + systemId).start(() -> replayTo(outbox));
+        }
+
+        private void replayTo(DeliverSmOutbox outbox) {
+            AimdRateLimiter rateLimiter = AimdRateLimiter.fixed(replayTps, 1);
+            long replayed = 0;
+            try {
+                while (!closed && !outbox.isClosed() && target == outbox) {
+                    if (outbox.getQueued() * 2 >= outbox.getCapacity()) {
+                        Thread.sleep(BUSY_PAUSE);
+                        continue;
+                    }
+                    byte[] pdu = peek();
+                    if (pdu == null) {
+                        break;
+                    }
+                    DeliverSm deliver;
+                    try {
+                        deliver = decode(pdu);
+                    } catch (IOException e) {
+                        logger.error("Skipping unreadable deliver_sm stored for {}", systemId, e);
+                        commit(pdu);
+                        continue;
+                    }
+                    rateLimiter.acquire();
+                    if (outbox.tryOffer(deliver)) {
+                        commit(pdu);
+                        replayed++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                logger.error("Replay of {} stopped", systemId, e);
+            }
+            logger.info("Replayed {} stored deliver_sm to {}, {} left", replayed, systemId, pending());
+            // An append or a new bind may have come while this replay was finishing; pick them up
+            synchronized (this) {
+                replayer = null;
+            }
+            resumeReplay();
+        }
+
+        synchronized void close() {
+            if (replayer != null) {
+                replayer.interrupt();
+            }
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            cursor.force();
+            try {
+                cursorChannel.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close deliver_sm store cursor of {}", systemId, e);
+            }
+        }
+
+        private void setCursor(long index, int offset) {
+            cursor.putLong(0, index);
+            cursor.putInt(8, offset);
+        }
+
+        private Path segmentPath(long index) {
+            return dir.resolve(String.format("%016d%s", index, SEGMENT_SUFFIX));
+        }
+    }
+
+    // One mapped segment file
+    private final class Segment {
+        private final long index;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        Segment(long index, Path path) throws IOException {
+            this.index = index;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+
+        // Finds the end of the valid records, zeroing a torn tail; returns the records from readOffset on
+        int recover(int readOffset) {
+            int position = 0;
+            int count = 0;
+            boolean torn = false;
+            while (position + HEADER_LENGTH <= segmentSize) {
+                int length = buffer.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || position + HEADER_LENGTH + length > segmentSize) {
+                    torn = true;
+                    break;
+                }
+                byte[] pdu = new byte[length];
+                buffer.get(position + HEADER_LENGTH, pdu);
+                if (crc(pdu) != buffer.getInt(position + 4)) {
+                    torn = true;
+                    break;
+                }
+                if (position >= readOffset) {
+                    count++;
+                }
+                position += HEADER_LENGTH + length;
+            }
+            writePosition = position;
+            if (torn) {
+                logger.warn("Cutting torn record at {} of {}", position, path);
+                buffer.put(position, new byte[segmentSize - position]);
+            }
+            return count;
+        }
+
+        // The length goes in last, so a reader never sees a record before its bytes
+        void write(byte[] pdu) {
+            buffer.putInt(writePosition + 4, crc(pdu));
+            buffer.put(writePosition + HEADER_LENGTH, pdu);
+            buffer.putInt(writePosition, pdu.length);
+            writePosition += HEADER_LENGTH + pdu.length;
+        }
+
+        byte[] read(int offset) {
+            if (offset + HEADER_LENGTH > segmentSize) {
+                return null;
+            }
+            int length = buffer.getInt(offset);
+            if (length <= 0) {
+                return null;
+            }
+            byte[] pdu = new byte[length];
+            buffer.get(offset + HEADER_LENGTH, pdu);
+            return pdu;
+        }
+
+        void close() {
+            buffer.force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close segment {}", path, e);
+            }
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.alpha.server;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.type.Address;
+import org.alpha.utils.DeliveryReport;
+import org.alpha.utils.DlrCodec;
+import org.alpha.utils.MessageIdGenerator;
+import org.alpha.utils.SmppEvents;
+import org.alpha.utils.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Sends simulated delivery receipts after a random delay, the way a real SMSC reports final states
+ * seconds to hours after the submit.
+ * <p>
+ * Pending receipts live in a {@link TimingWheel} as primitive records (message id, submit time, system_id
+ * and status), 32 bytes each, so millions can wait at once. Delays follow a configurable distribution
+ * around a median, capped at a maximum; final states are drawn from a weighted mix such as
+ * {@code DELIVRD:90,UNDELIV:7,EXPIRED:3}. Due receipts are encoded with {@link DlrCodec} and handed to a
+ * router with the system_id that submitted the message, which sends them on a bound session of that
+ * system_id or stores them until one binds.
+ */
+public class ReceiptScheduler implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ReceiptScheduler.class);
+    private static final long TICK = 10; // Wheel resolution (in milliseconds)
+    private static final int WHEEL_SIZE = 8192; // Buckets: one rotation covers 82 seconds
+    private static final int STATUS_BITS = 8; // Low bits of the target word holding the status ordinal
+    private static final int ERROR_UNDELIVERED = 1; // err: value of every non-delivered final state
+
+    /**
+     * Shape of the delay between submit and receipt; all are parameterized by their median.
+     */
+    public enum Distribution {
+        FIXED, UNIFORM, EXPONENTIAL, LOGNORMAL
+    }
+
+    private final TimingWheel wheel = new TimingWheel(TICK, WHEEL_SIZE, System.currentTimeMillis());
+    private final MessageIdGenerator messageIds;
+    private final BiConsumer<String, DeliverSm> router;
+    // system_id strings are interned to an index so records stay primitive
+    private final Map<String, Integer> systemIndexes = new ConcurrentHashMap<>();
+    private final List<String> systemIds = new ArrayList<>();
+    private final Distribution distribution;
+    private final long medianDelay;
+    private final double sigma;
+    private final long maxDelay;
+    private final DeliveryReport.DeliveryStatus[] statuses;
+    private final int[] cumulativeWeights;
+    private final byte[] buffer = new byte[DlrCodec.MAX_LENGTH]; // used by the ticker thread only
+    private final LongAdder fired = new LongAdder();
+    private volatile boolean closed;
+    private Thread ticker;
+
+    /**
+     * @param messageIds   formats the message ids carried by receipts
+     * @param router       sends a due receipt to the given system_id, or stores it while that ESME is away
+     * @param distribution shape of the delay
+     * @param medianDelay  median delay (ms)
+     * @param sigma        spread of a LOGNORMAL delay (standard deviation of its logarithm)
+     * @param maxDelay     longest delay (ms)
+     * @param statusMix    weighted final states, e.g. {@code DELIVRD:90,UNDELIV:7,EXPIRED:3}
+     */
+    public ReceiptScheduler(MessageIdGenerator messageIds, BiConsumer<String, DeliverSm> router,
+                            Distribution distribution, long medianDelay, double sigma, long maxDelay, String statusMix) {
+        this.messageIds = messageIds;
+        this.router = router;
+        this.distribution = distribution;
+        this.medianDelay = medianDelay;
+        this.sigma = sigma;
+        this.maxDelay = maxDelay;
+
+        String[] entries = statusMix.split(",");
+        this.statuses = new DeliveryReport.DeliveryStatus[entries.length];
+        this.cumulativeWeights = new int[entries.length];
+        int total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            String[] entry = entries[i].trim().split(":");
+            statuses[i] = DeliveryReport.DeliveryStatus.valueOf(entry[0].trim());
+            total += Integer.parseInt(entry[1].trim());
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Status mix has no weight: " + statusMix);
+        }
+    }
+
+    /**
+     * Starts the thread that fires due receipts.
+     */
+    public void start() {
+        ticker = Thread.ofVirtual().name("receipt-scheduler").start(() -> {
+            while (!closed) {
+                int count = wheel.advance(System.currentTimeMillis(), this::fire);
+                fired.add(count);
+                try {
+                    Thread.sleep(TICK);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedules the receipt of a submitted message.
+     *
+     * @param systemId   system_id that submitted the message, which receives the receipt
+     * @param messageId  id returned in the submit_sm_resp, from {@link MessageIdGenerator#nextLong()}
+     * @param submitTime submit time (epoch ms)
+     */
+    public void schedule(String systemId, long messageId, long submitTime) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int status = pickStatus(rnd);
+        wheel.schedule(submitTime + sampleDelay(rnd), messageId, submitTime,
+                (long) systemIndex(systemId) << STATUS_BITS | status);
+    }
+
+    /**
+     * @return Receipts waiting for their time
+     */
+    public long getPending() {
+        return wheel.size();
+    }
+
+    public long getFired() {
+        return fired.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (ticker != null) {
+            ticker.interrupt();
+        }
+        logger.info("Receipt scheduler closed: pending={} fired={}", getPending(), getFired());
+    }
+
+    private int systemIndex(String systemId) {
+        Integer index = systemIndexes.get(systemId);
+        if (index != null) {
+            return index;
+        }
+        synchronized (systemIds) {
+            return systemIndexes.computeIfAbsent(systemId, id -> {
+                systemIds.add(id);
+                return systemIds.size() - 1;
+            });
+        }
+    }
+
+    private String systemId(int index) {
+        synchronized (systemIds) {
+            return systemIds.get(index);
+        }
+    }
+
+    private void fire(long messageId, long submitTime, long targetWord) {
+        SmppEvents.Receipt event = new SmppEvents.Receipt();
+        event.begin();
+        String systemId = systemId((int) (targetWord >>> STATUS_BITS));
+        DeliveryReport.DeliveryStatus status = statuses[(int) (targetWord & ((1 << STATUS_BITS) - 1))];
+        int error = status == DeliveryReport.DeliveryStatus.DELIVRD ? 0 : ERROR_UNDELIVERED;
+        int delivered = status == DeliveryReport.DeliveryStatus.DELIVRD ? 1 : 0;
+        int length = DlrCodec.encode(buffer, 0, messageIds.format(messageId), 1, delivered, submitTime,
+                System.currentTimeMillis(), status, error, null);
+
+        DeliverSm receipt = new DeliverSm();
+        receipt.setSourceAddress(new Address((byte) 0x03, (byte) 0x00, "40404"));
+        receipt.setDestAddress(new Address((byte) 0x01, (byte) 0x01, "44555519205"));
+        receipt.setEsmClass(SmppConstants.ESM_CLASS_MT_SMSC_DELIVERY_RECEIPT);
+        try {
+            receipt.setShortMessage(Arrays.copyOf(buffer, length));
+        } catch (Exception e) {
+            logger.error("Unable to build receipt for message {}", messageIds.format(messageId), e);
+            return;
+        }
+        router.accept(systemId, receipt);
+        event.end();
+        if (event.shouldCommit()) {
+            event.messageId = messageIds.format(messageId);
+            event.systemId = systemId;
+            event.status = status.name();
+            event.commit();
+        }
+    }
+
+    private int pickStatus(ThreadLocalRandom rnd) {
+        int pick = rnd.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return i;
+            }
+        }
+        return cumulativeWeights.length - 1;
+    }
+
+    private long sampleDelay(ThreadLocalRandom rnd) {
+        double delay;
+        switch (distribution) {
+            case UNIFORM:
+                delay = rnd.nextDouble() * 2 * medianDelay;
+                break;
+            case EXPONENTIAL:
+                // Mean median/ln 2 puts the median where configured
+                delay = -Math.log(1 - rnd.nextDouble()) * medianDelay / Math.log(2);
+                break;
+            case LOGNORMAL:
+                delay = medianDelay * Math.exp(sigma * rnd.nextGaussian());
+                break;
+            default:
+                delay = medianDelay;
+        }
+        return Math.min(maxDelay, (long) delay);
+    }
+}
@@ -0,0 +1,178 @@
+package org.alpha.server;
+
+import com.cloudhopper.smpp.SmppBindType;
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bound sessions of the server, by system_id and bind type, used to route deliver_sm (MO messages and
+ * receipts) to any receiving bind of a customer rather than only the session a submit_sm came in on.
+ * <p>
+ * Each system_id has one array of outboxes per bind type, replaced copy-on-write when a session binds or
+ * unbinds. Binds are rare and lookups constant, so routing reads a volatile array and walks it without
+ * locking or allocating. A deliver_sm goes to one of the customer's RECEIVER or TRANSCEIVER binds, chosen
+ * {@link Strategy#ROUND_ROBIN round-robin} or {@link Strategy#LEAST_LOADED least-loaded}; with no such
+ * bind it is kept in the {@link DeliverSmStore} until one binds.
+ */
+public class SessionRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(SessionRegistry.class);
+    private static final DeliverSmOutbox[] EMPTY = new DeliverSmOutbox[0];
+    private static final SmppBindType[] BIND_TYPES = SmppBindType.values();
+
+    /**
+     * How a deliver_sm picks among the receiving binds of a system_id.
+     */
+    public enum Strategy {
+        /** Binds take turns */
+        ROUND_ROBIN,
+        /** The bind with the fewest queued and in-flight deliver_sm */
+        LEAST_LOADED
+    }
+
+    private final Strategy strategy;
+    private final DeliverSmStore store;
+    private final Map<String, Customer> customers = new ConcurrentHashMap<>();
+
+    /**
+     * @param strategy choice among the receiving binds of a system_id
+     * @param store    keeps deliver_sm of a system_id without receiving binds
+     */
+    public SessionRegistry(Strategy strategy, DeliverSmStore store) {
+        this.strategy = strategy;
+        this.store = store;
+    }
+
+    public DeliverSmStore getStore() {
+        return store;
+    }
+
+    /**
+     * Adds the outbox of a newly bound session.
+     */
+    public void register(DeliverSmOutbox outbox) {
+        customers.computeIfAbsent(outbox.getSystemId(), id -> new Customer()).add(outbox);
+    }
+
+    /**
+     * Removes the outbox of a session that is going away.
+     */
+    public void unregister(DeliverSmOutbox outbox) {
+        Customer customer = customers.get(outbox.getSystemId());
+        if (customer != null) {
+            customer.remove(outbox);
+        }
+    }
+
+    /**
+     * @return Live sessions of a system_id with the given bind type; the array must not be modified
+     */
+    public DeliverSmOutbox[] sessions(String systemId, SmppBindType bindType) {
+        Customer customer = customers.get(systemId);
+        return customer != null ? customer.sessions(bindType) : EMPTY;
+    }
+
+    /**
+     * @return A receiving bind of the system_id, or null if it has none
+     */
+    public DeliverSmOutbox route(String systemId) {
+        Customer customer = customers.get(systemId);
+        if (customer == null) {
+            return null;
+        }
+        DeliverSmOutbox[] receivers = customer.receivers;
+        int count = receivers.length;
+        if (count == 0) {
+            return null;
+        }
+        if (strategy == Strategy.LEAST_LOADED) {
+            DeliverSmOutbox best = null;
+            long bestLoad = Long.MAX_VALUE;
+            for (DeliverSmOutbox outbox : receivers) {
+                long load = (long) outbox.getQueued() + outbox.getInFlight();
+                if (!outbox.isClosed() && load < bestLoad) {
+                    best = outbox;
+                    bestLoad = load;
+                }
+            }
+            return best;
+        }
+        int start = customer.cursor.getAndIncrement();
+        for (int i = 0; i < count; i++) {
+            DeliverSmOutbox outbox = receivers[Math.floorMod(start + i, count)];
+            if (!outbox.isClosed()) {
+                return outbox;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends a deliver_sm to a receiving bind of the system_id, or stores it while there is none.
+     */
+    public void deliver(String systemId, DeliverSm deliver) {
+        DeliverSmOutbox outbox = route(systemId);
+        if (outbox != null) {
+            // A full outbox hands it to its overflow handler, the store
+            outbox.offer(deliver);
+            return;
+        }
+        try {
+            store.append(systemId, deliver);
+        } catch (IOException e) {
+            logger.error("Unable to store deliver_sm for {}, dropped", systemId, e);
+        }
+    }
+
+    // Sessions of one system_id; arrays are never modified once published
+    private static final class Customer {
+        private final DeliverSmOutbox[][] byType = new DeliverSmOutbox[BIND_TYPES.length][];
+        private volatile DeliverSmOutbox[] receivers = EMPTY;
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        Customer() {
+            Arrays.fill(byType, EMPTY);
+        }
+
+        synchronized DeliverSmOutbox[] sessions(SmppBindType bindType) {
+            return byType[bindType.ordinal()];
+        }
+
+        synchronized void add(DeliverSmOutbox outbox) {
+            int type = outbox.getBindType().ordinal();
+            DeliverSmOutbox[] sessions = Arrays.copyOf(byType[type], byType[type].length + 1);
+            sessions[sessions.length - 1] = outbox;
+            publish(type, sessions);
+        }
+
+        synchronized void remove(DeliverSmOutbox outbox) {
+            int type = outbox.getBindType().ordinal();
+            DeliverSmOutbox[] sessions = byType[type];
+            for (int i = 0; i < sessions.length; i++) {
+                if (sessions[i] == outbox) {
+                    DeliverSmOutbox[] next = new DeliverSmOutbox[sessions.length - 1];
+                    System.arraycopy(sessions, 0, next, 0, i);
+                    System.arraycopy(sessions, i + 1, next, i, next.length - i);
+                    publish(type, next);
+                    return;
+                }
+            }
+        }
+
+        private void publish(int type, DeliverSmOutbox[] sessions) {
+            byType[type] = sessions;
+            DeliverSmOutbox[] transceivers = byType[SmppBindType.TRANSCEIVER.ordinal()];
+            DeliverSmOutbox[] receiversOnly = byType[SmppBindType.RECEIVER.ordinal()];
+            DeliverSmOutbox[] all = Arrays.copyOf(transceivers, transceivers.length + receiversOnly.length);
+            System.arraycopy(receiversOnly, 0, all, transceivers.length, receiversOnly.length);
+            // Volatile write last: readers of receivers see every array written before it
+            receivers = all;
+        }
+    }
+}
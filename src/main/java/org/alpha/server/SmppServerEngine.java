@@ -0,0 +1,329 @@
+package org.alpha.server;
+
+import com.cloudhopper.smpp.PduAsyncResponse;
+import com.cloudhopper.smpp.SmppServerConfiguration;
+import com.cloudhopper.smpp.SmppServerHandler;
+import com.cloudhopper.smpp.SmppServerSession;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.impl.DefaultSmppServer;
+import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
+import com.cloudhopper.smpp.pdu.BaseBind;
+import com.cloudhopper.smpp.pdu.BaseBindResp;
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.type.SmppProcessingException;
+import org.alpha.utils.LatencyRecorder;
+import org.alpha.utils.MessageIdGenerator;
+import org.alpha.utils.MetricsHttpServer;
+import org.alpha.utils.PduEventLog;
+import org.alpha.utils.PropertiesLoader;
+import org.alpha.utils.SmppEvents;
+import org.alpha.utils.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * SMPP server of the simulator: binds, per-session deliver_sm outboxes, the deliver_sm store, session
+ * routing and submit_sm limits, with every submit_sm handled by a configurable {@link SubmitPipeline}.
+ * <p>
+ * An instance is configured by a properties file and its pipeline; the server apps only pick both and
+ * run it.
+ */
+public class SmppServerEngine implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SmppServerEngine.class);
+    private static final long STAGE_DRAIN_TIMEOUT = 10000; // Max wait for running offloaded stages at close (in milliseconds)
+
+    private final String name;
+    private final ExecutorService executor;
+    private final ExecutorService stageExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final MessageIdGenerator messageIds;
+    private final DeliverSmStore store;
+    private final SessionRegistry registry;
+    private final SubmitLimiter limiter;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final PduEventLog events;
+    private final SubmitPipeline pipeline;
+    // Outbound deliver_sm queue of each bound session, by session ID
+    private final Map<Long, DeliverSmOutbox> outboxes = new ConcurrentHashMap<>();
+    private ReceiptScheduler receipts;
+    private DefaultSmppServer smppServer;
+    private MetricsHttpServer metrics;
+    private Consumer<SmppServerConfiguration> overrides = configuration -> { };
+
+    /**
+     * Loads the instance's properties and sets up everything but the listening socket.
+     *
+     * @param name           instance name, used in logs and JMX names
+     * @param propertiesFile properties file in the classpath, e.g. {@code application0.properties}
+     * @throws IOException If the PDU event log cannot be created
+     */
+    public SmppServerEngine(String name, String propertiesFile) throws IOException {
+        this(name, propertiesFile, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Same as {@link #SmppServerEngine(String, String)}, with the executor of the server's sessions.
+     *
+     * @param executor runs session I/O and handlers; it is not shut down by {@link #close()}
+     * @throws IOException If the PDU event log cannot be created
+     */
+    public SmppServerEngine(String name, String propertiesFile, ExecutorService executor) throws IOException {
+        this.name = name;
+        this.executor = executor;
+        PropertiesLoader.init(propertiesFile);
+        // Node id keeps message ids unique across server instances
+        this.messageIds = new SnowflakeIdGenerator(PropertiesLoader.properties.nodeId,
+                SnowflakeIdGenerator.Format.valueOf(PropertiesLoader.properties.messageIdFormat));
+        // deliver_sm that cannot reach their ESME wait here until it binds again
+        this.store = new DeliverSmStore(Path.of(PropertiesLoader.properties.storeDirectory),
+                PropertiesLoader.properties.storeSegmentSize, PropertiesLoader.properties.storeReplayTps);
+        // Bound sessions by system_id; deliver_sm go to any receiving bind of the customer
+        this.registry = new SessionRegistry(SessionRegistry.Strategy.valueOf(PropertiesLoader.properties.routing), store);
+        // Per system_id and per bind TPS limits and daily quotas, adjustable over JMX
+        this.limiter = new SubmitLimiter(PropertiesLoader.properties.systemTps, PropertiesLoader.properties.bindTps,
+                PropertiesLoader.properties.dailyQuota, PropertiesLoader.properties.limits);
+        this.pipeline = new SubmitPipeline(recorder, stageExecutor);
+        // PDU traffic is recorded here instead of being logged line by line
+        this.events = PduEventLog.open(name);
+    }
+
+    /**
+     * @return The stages of every submit_sm, to be set up before {@link #start()}
+     */
+    public SubmitPipeline pipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Adjusts the server configuration built from the properties, e.g. the port or window size of a
+     * benchmark; applied by {@link #start()}.
+     */
+    public SmppServerEngine configure(Consumer<SmppServerConfiguration> overrides) {
+        this.overrides = overrides;
+        return this;
+    }
+
+    public MessageIdGenerator getMessageIds() {
+        return messageIds;
+    }
+
+    public SessionRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return The scheduler of simulated delivery receipts, created on first use and started with the server
+     */
+    public synchronized ReceiptScheduler getReceipts() {
+        if (receipts == null) {
+            receipts = new ReceiptScheduler(messageIds, registry::deliver,
+                    ReceiptScheduler.Distribution.valueOf(PropertiesLoader.properties.dlrDelayDistribution),
+                    PropertiesLoader.properties.dlrDelayMedian, PropertiesLoader.properties.dlrDelaySigma,
+                    PropertiesLoader.properties.dlrDelayMax, PropertiesLoader.properties.dlrStatusMix);
+        }
+        return receipts;
+    }
+
+    /**
+     * Registers the MBeans and starts listening.
+     */
+    public void start() throws Exception {
+        SmppServerConfiguration configuration = new SmppServerConfiguration();
+        configuration.setPort(PropertiesLoader.properties.port);  // Port to listen on
+        configuration.setMaxConnectionSize(PropertiesLoader.properties.maxConnectionSize);  // Max concurrent connections
+        configuration.setDefaultRequestExpiryTimeout(PropertiesLoader.properties.defaultRequestExpiryTimeout);  // Timeout for requests
+        configuration.setDefaultWindowMonitorInterval(PropertiesLoader.properties.defaultWindowMonitorInterval);  // Monitor window interval
+        configuration.setDefaultWindowSize(PropertiesLoader.properties.defaultWindowSize);  // Window size for connections
+        configuration.setDefaultWindowWaitTimeout(PropertiesLoader.properties.defaultWindowWaitTimeout);  // Wait time for window operations
+        configuration.setNonBlockingSocketsEnabled(PropertiesLoader.properties.nonBlockingSocketsEnabled);  // Enable non-blocking sockets
+        configuration.setDefaultSessionCountersEnabled(PropertiesLoader.properties.sessionCountersEnabled);  // Enable session counters
+        configuration.setJmxEnabled(PropertiesLoader.properties.jmxEnabled);  // Enable JMX monitoring
+        overrides.accept(configuration);
+
+        limiter.register("org.alpha:type=SubmitLimiter,name=" + name);
+        try {
+            recorder.register("org.alpha:type=LatencyRecorder,name=" + name);
+        } catch (Exception e) {
+            logger.warn("Unable to register latency recorder {} with JMX", name, e);
+        }
+
+        smppServer = new DefaultSmppServer(configuration, new ServerHandler(), executor);
+        if (PropertiesLoader.properties.metricsPort > 0) {
+            // Session and server counters for Prometheus, read at each scrape
+            metrics = new MetricsHttpServer(PropertiesLoader.properties.metricsPort, this::sessions);
+            metrics.setServerCounters(smppServer::getCounters);
+        }
+        logger.info("Starting SMPP {} ... on port {}, pipeline {}", name, PropertiesLoader.properties.port, pipeline);
+        synchronized (this) {
+            if (receipts != null) {
+                receipts.start();
+            }
+        }
+        smppServer.start();
+        logger.info("SMPP server started");
+    }
+
+    /**
+     * Stops listening, lets the offloaded stages still running finish, then closes the receipt scheduler,
+     * the store and the event log.
+     */
+    @Override
+    public void close() {
+        logger.info("Stopping SMPP server...");
+        if (smppServer != null) {
+            smppServer.stop();
+        }
+        if (metrics != null) {
+            metrics.close();
+        }
+        // Offloaded reply and receipt stages still route into the store and the event log
+        stageExecutor.shutdown();
+        try {
+            if (!stageExecutor.awaitTermination(STAGE_DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("Offloaded stages still running after {} ms", STAGE_DRAIN_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (receipts != null) {
+                receipts.close();
+            }
+        }
+        store.close();
+        events.close();
+        logger.info("SMPP server stopped");
+        if (smppServer != null) {
+            logger.info("Server counters: {}", smppServer.getCounters());
+        }
+        logger.info("Stage timings:{}{}", System.lineSeparator(), recorder.getReport());
+    }
+
+    // Bound sessions by outbox name, which is unique per bind
+    private Map<String, SmppSession> sessions() {
+        Map<String, SmppSession> sessions = new HashMap<>();
+        for (DeliverSmOutbox outbox : outboxes.values()) {
+            SmppSession session = outbox.getSession();
+            if (session != null) {
+                sessions.put(outbox.getName(), session);
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Handler for SMPP server events like session creation, binding, and destruction.
+     */
+    private class ServerHandler implements SmppServerHandler {
+        @Override
+        public void sessionBindRequested(Long sessionId, SmppSessionConfiguration sessionConfiguration, final BaseBind bindRequest) throws SmppProcessingException {
+            // Set the session name based on the system ID
+            sessionConfiguration.setName("Application.SMPP." + sessionConfiguration.getSystemId());
+        }
+
+        @Override
+        public void sessionCreated(Long sessionId, SmppServerSession session, BaseBindResp preparedBindResponse) throws SmppProcessingException {
+            logger.info("Session created: {}", session);
+            // deliver_sm are queued and sent by the outbox, off the submit_sm path
+            DeliverSmOutbox outbox = new DeliverSmOutbox(session.getConfiguration().getName() + "." + sessionId, session,
+                    PropertiesLoader.properties.outboxCapacity, PropertiesLoader.properties.outboxWindowWaitTimeout,
+                    PropertiesLoader.properties.outboxMaxTps);
+            String systemId = session.getConfiguration().getSystemId();
+            outbox.setOverflowHandler(store.overflowTo(systemId));
+            outbox.start();
+            outboxes.put(sessionId, outbox);
+            registry.register(outbox);
+            // Send what was stored for this ESME while it was away
+            if (outbox.isReceiver()) {
+                store.replay(systemId, outbox);
+            }
+            session.serverReady(new SessionHandler(session, outbox, limiter.bind(systemId)));
+        }
+
+        @Override
+        public void sessionDestroyed(Long sessionId, SmppServerSession session) {
+            logger.info("Session destroyed: {}", session);
+            // Stop sending; deliver_sm still queued go to the store
+            DeliverSmOutbox outbox = outboxes.remove(sessionId);
+            if (outbox != null) {
+                registry.unregister(outbox);
+                outbox.close();
+            }
+            // Log final session statistics
+            if (session.hasCounters()) {
+                logger.info("Final session rx-submitSM: {}", session.getCounters().getRxSubmitSM());
+            }
+            session.destroy();
+        }
+    }
+
+    /**
+     * Runs each submit_sm of a session through the pipeline; other requests get a plain response.
+     */
+    private class SessionHandler extends DefaultSmppSessionHandler {
+        private final WeakReference<SmppSession> sessionRef;
+        private final DeliverSmOutbox outbox;
+        private final SubmitLimiter.Bind limits;
+
+        SessionHandler(SmppSession session, DeliverSmOutbox outbox, SubmitLimiter.Bind limits) {
+            this.sessionRef = new WeakReference<>(session);
+            this.outbox = outbox;
+            this.limits = limits;
+        }
+
+        @Override
+        public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+            SmppSession session = sessionRef.get();
+            SmppEvents.Handler event = new SmppEvents.Handler();
+            event.begin();
+            PduResponse response;
+            if (pduRequest instanceof SubmitSm submitSm && session != null) {
+                response = pipeline.run(new SubmitContext(session, outbox, limits, events, submitSm));
+            } else {
+                response = pduRequest.createResponse();
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.sequenceNumber = pduRequest.getSequenceNumber();
+                event.systemId = outbox.getSystemId();
+                event.commandStatus = response != null ? response.getCommandStatus() : -1;
+                event.commit();
+            }
+            return response;
+        }
+
+        @Override
+        public void fireExpectedPduResponseReceived(PduAsyncResponse pduAsyncResponse) {
+            // deliver_sm_resp drive the outbox's pacing
+            PduResponse response = pduAsyncResponse.getResponse();
+            outbox.onResponse(pduAsyncResponse.getRequest(), response);
+            events.record(PduEventLog.Category.DELIVER_RESP, PduEventLog.Direction.IN, outbox.getName(),
+                    response.getCommandStatus(), response.getSequenceNumber(), null);
+        }
+
+        @Override
+        public void firePduRequestExpired(PduRequest pduRequest) {
+            // Back to the store rather than lost
+            if (pduRequest instanceof DeliverSm deliverSm) {
+                outbox.onExpired(deliverSm);
+            } else {
+                super.firePduRequestExpired(pduRequest);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.alpha.server;
+
+import com.cloudhopper.smpp.SmppBindType;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import org.alpha.utils.PduEventLog;
+import org.alpha.utils.SmppEvents;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A submit_sm on its way through the {@link SubmitPipeline}: the request, the session it came in on and
+ * the response the stages fill in.
+ * <p>
+ * The response is sent once, by {@link #respond()} or at the end of the pipeline. While the pipeline runs
+ * on the session's thread it is returned to the session; once a stage has been offloaded it is sent with
+ * {@link SmppSession#sendResponsePdu}.
+ */
+public class SubmitContext {
+    private static final Logger logger = LoggerFactory.getLogger(SubmitContext.class);
+
+    private final SmppSession session;
+    private final DeliverSmOutbox outbox;
+    private final SubmitLimiter.Bind limits;
+    private final PduEventLog events;
+    private final SubmitSm submit;
+    private final SubmitSmResp response;
+    private final long receivedMillis = System.currentTimeMillis();
+    private final long receivedNanos = System.nanoTime();
+    private long messageId;
+    private boolean responded;
+    private boolean offloaded;
+
+    SubmitContext(SmppSession session, DeliverSmOutbox outbox, SubmitLimiter.Bind limits, PduEventLog events,
+                  SubmitSm submit) {
+        this.session = session;
+        this.outbox = outbox;
+        this.limits = limits;
+        this.events = events;
+        this.submit = submit;
+        this.response = submit.createResponse();
+    }
+
+    public SubmitSm getSubmit() {
+        return submit;
+    }
+
+    public SubmitSmResp getResponse() {
+        return response;
+    }
+
+    /**
+     * @return system_id of the session the submit_sm came in on
+     */
+    public String getSystemId() {
+        return outbox.getSystemId();
+    }
+
+    public SmppBindType getBindType() {
+        return outbox.getBindType();
+    }
+
+    /**
+     * @return Name of the session the submit_sm came in on
+     */
+    public String getSessionName() {
+        return outbox.getName();
+    }
+
+    /**
+     * @return Outbox of the session the submit_sm came in on
+     */
+    public DeliverSmOutbox getOutbox() {
+        return outbox;
+    }
+
+    /**
+     * @return TPS and quota state of the session and its system_id
+     */
+    public SubmitLimiter.Bind getLimits() {
+        return limits;
+    }
+
+    /**
+     * @return PDU event log of the server
+     */
+    public PduEventLog getEvents() {
+        return events;
+    }
+
+    /**
+     * @return Arrival time of the submit_sm (epoch ms)
+     */
+    public long getReceivedMillis() {
+        return receivedMillis;
+    }
+
+    /**
+     * @return Message id assigned by the persist stage, from {@link org.alpha.utils.MessageIdGenerator#nextLong()}
+     */
+    public long getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(long messageId) {
+        this.messageId = messageId;
+    }
+
+    /**
+     * Sets an error status on the response; the stage then returns false to end the pipeline.
+     */
+    public void reject(int status) {
+        response.setCommandStatus(status);
+    }
+
+    /**
+     * Marks the submit_sm answered; later calls do nothing. Once the pipeline has been offloaded the response
+     * is sent right away, so the stages after this one run after the ESME has it. While the pipeline is
+     * still on the session's thread the response goes out when the session gets it back, after the inline
+     * stages; the offloaded ones may then run before or after the ESME has it.
+     */
+    public void respond() {
+        if (responded) {
+            return;
+        }
+        responded = true;
+        events.record(PduEventLog.Category.SUBMIT_RESP, PduEventLog.Direction.OUT, getSessionName(),
+                response.getCommandStatus(), submit.getSequenceNumber(), null);
+        SmppEvents.Response event = new SmppEvents.Response();
+        if (event.shouldCommit()) {
+            event.sequenceNumber = submit.getSequenceNumber();
+            event.systemId = getSystemId();
+            event.commandStatus = response.getCommandStatus();
+            event.latency = System.nanoTime() - receivedNanos;
+            event.commit();
+        }
+        if (offloaded) {
+            try {
+                session.sendResponsePdu(response);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.warn("Unable to send submit_sm_resp to {}: {}", getSystemId(), e.toString());
+            }
+        }
+    }
+
+    boolean isResponded() {
+        return responded;
+    }
+
+    // From here on the pipeline runs off the session's thread
+    void offload() {
+        offloaded = true;
+    }
+}
@@ -0,0 +1,291 @@
+package org.alpha.server;
+
+import com.cloudhopper.smpp.SmppConstants;
+import org.alpha.utils.AimdRateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control of submit_sm: a TPS limit per system_id, a TPS limit per bound session and a daily
+ * quota per system_id, so one noisy ESME cannot saturate the node. A submit_sm over any limit is answered
+ * with ESME_RTHROTTLED.
+ * <p>
+ * Rates are enforced with fixed-rate {@link AimdRateLimiter}s, whose GCRA takes a permit with a single CAS,
+ * and quotas with one atomic counter per system_id, so a check adds no lock to the submit_sm path. Limits
+ * are read on every check: changing them over JMX takes effect on the next submit_sm. Quotas reset at
+ * midnight UTC.
+ * <p>
+ * A check looks at the session's rate without taking a permit, then takes the system_id's permit and only
+ * then the session's, so a session over its own rate never drains the rate its system_id shares with other
+ * sessions, and a submit_sm the system_id refuses costs its session nothing. A quota unit is given back when
+ * a rate refuses the submit_sm. Only two submit_sm of one session racing for its last permit can spend a
+ * system_id permit for nothing.
+ */
+public final class SubmitLimiter implements SubmitLimiterMBean {
+    private static final Logger logger = LoggerFactory.getLogger(SubmitLimiter.class);
+    private static final double BURST_SECONDS = 0.1; // Back-to-back submit_sm allowed, as a share of a second's rate
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    /**
+     * Limits of one system_id replacing the defaults.
+     */
+    private record Limit(double tps, long dailyQuota) {
+    }
+
+    private volatile double systemTps;
+    private volatile double bindTps;
+    private volatile long dailyQuota;
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder quotaExceeded = new LongAdder();
+
+    /**
+     * @param systemTps  default submit_sm per second of a system_id, 0 for unlimited
+     * @param bindTps    submit_sm per second of a bound session, 0 for unlimited
+     * @param dailyQuota default submit_sm per day of a system_id, 0 for unlimited
+     * @param limits     per system_id limits, {@code systemId:tps:dailyQuota,...}, may be empty
+     */
+    public SubmitLimiter(double systemTps, double bindTps, long dailyQuota, String limits) {
+        this(systemTps, bindTps, dailyQuota, limits, System::currentTimeMillis);
+    }
+
+    // clock: epoch ms deciding the quota day
+    SubmitLimiter(double systemTps, double bindTps, long dailyQuota, String limits, LongSupplier clock) {
+        this.clock = clock;
+        this.systemTps = systemTps;
+        this.bindTps = bindTps;
+        this.dailyQuota = dailyQuota;
+        for (String entry : limits.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] fields = entry.trim().split(":");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Invalid limit, expected systemId:tps:dailyQuota: " + entry);
+            }
+            setLimit(fields[0], Double.parseDouble(fields[1]), Long.parseLong(fields[2]));
+        }
+    }
+
+    /**
+     * Registers the limiter with the platform MBean server.
+     *
+     * @param name JMX object name
+     */
+    public void register(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        } catch (Exception e) {
+            logger.warn("Unable to register submit limiter {} with JMX", name, e);
+        }
+    }
+
+    /**
+     * Limit state of a new bound session; the session handler keeps it and calls {@link Bind#check()} for
+     * every submit_sm.
+     *
+     * @param systemId system_id the session is bound with
+     */
+    public Bind bind(String systemId) {
+        return new Bind(accounts.computeIfAbsent(systemId, id -> new Account(id, clock)));
+    }
+
+    @Override
+    public double getSystemTps() {
+        return systemTps;
+    }
+
+    @Override
+    public void setSystemTps(double tps) {
+        this.systemTps = tps;
+        logger.info("Default system_id limit set to {} TPS", tps);
+    }
+
+    @Override
+    public double getBindTps() {
+        return bindTps;
+    }
+
+    @Override
+    public void setBindTps(double tps) {
+        this.bindTps = tps;
+        logger.info("Bind limit set to {} TPS", tps);
+    }
+
+    @Override
+    public long getDailyQuota() {
+        return dailyQuota;
+    }
+
+    @Override
+    public void setDailyQuota(long quota) {
+        this.dailyQuota = quota;
+        logger.info("Default daily quota set to {}", quota);
+    }
+
+    @Override
+    public void setLimit(String systemId, double tps, long dailyQuota) {
+        limits.put(systemId, new Limit(tps, dailyQuota));
+        logger.info("Limit of {} set to {} TPS and {} per day", systemId, tps, dailyQuota);
+    }
+
+    @Override
+    public void clearLimit(String systemId) {
+        limits.remove(systemId);
+        logger.info("Limit of {} back to defaults", systemId);
+    }
+
+    @Override
+    public String getLimits() {
+        StringJoiner joiner = new StringJoiner(",");
+        limits.forEach((systemId, limit) -> joiner.add(systemId + ":" + limit.tps() + ":" + limit.dailyQuota()));
+        return joiner.toString();
+    }
+
+    @Override
+    public long getUsedToday(String systemId) {
+        Account account = accounts.get(systemId);
+        return account != null ? account.usedToday() : 0;
+    }
+
+    @Override
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    @Override
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    @Override
+    public long getQuotaExceeded() {
+        return quotaExceeded.sum();
+    }
+
+    /**
+     * Limit state of one bound session.
+     */
+    public final class Bind {
+        private final Account account;
+        private final Rate rate = new Rate();
+
+        private Bind(Account account) {
+            this.account = account;
+        }
+
+        /**
+         * Admits or rejects one submit_sm of the session.
+         *
+         * @return {@link SmppConstants#STATUS_OK}, or {@link SmppConstants#STATUS_THROTTLED} if a limit is exceeded
+         */
+        public int check() {
+            Limit limit = limits.get(account.systemId);
+            if (!account.consume(limit != null ? limit.dailyQuota() : dailyQuota)) {
+                quotaExceeded.increment();
+                return SmppConstants.STATUS_THROTTLED;
+            }
+            if (!rate.canAcquire(bindTps) || !account.rate.tryAcquire(limit != null ? limit.tps() : systemTps)
+                    || !rate.tryAcquire(bindTps)) {
+                account.refund();
+                throttled.increment();
+                return SmppConstants.STATUS_THROTTLED;
+            }
+            accepted.increment();
+            return SmppConstants.STATUS_OK;
+        }
+    }
+
+    // Rate and quota usage of one system_id, shared by all its sessions
+    private static final class Account {
+        private final String systemId;
+        private final Rate rate = new Rate();
+        private final AtomicLong used = new AtomicLong();
+        private final LongSupplier clock;
+        private volatile long day;
+
+        Account(String systemId, LongSupplier clock) {
+            this.systemId = systemId;
+            this.clock = clock;
+            this.day = today();
+        }
+
+        boolean consume(long quota) {
+            rollOver();
+            if (quota <= 0) {
+                used.incrementAndGet();
+                return true;
+            }
+            if (used.incrementAndGet() > quota) {
+                used.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        // Gives back a unit taken by consume() for a submit_sm rejected afterwards
+        void refund() {
+            used.decrementAndGet();
+        }
+
+        long usedToday() {
+            rollOver();
+            return used.get();
+        }
+
+        private void rollOver() {
+            long today = today();
+            if (day != today) {
+                // Once a day; the lock keeps two threads from both resetting
+                synchronized (this) {
+                    if (day != today) {
+                        used.set(0);
+                        day = today;
+                    }
+                }
+            }
+        }
+
+        private long today() {
+            return clock.getAsLong() / MILLIS_PER_DAY;
+        }
+    }
+
+    // Fixed-rate bucket following a TPS that may change at runtime
+    private static final class Rate {
+        private volatile AimdRateLimiter limiter;
+        private volatile double tps;
+
+        boolean tryAcquire(double configured) {
+            return configured <= 0 || limiter(configured).tryAcquire();
+        }
+
+        // Whether tryAcquire would succeed now, without taking the permit
+        boolean canAcquire(double configured) {
+            return configured <= 0 || limiter(configured).canAcquire();
+        }
+
+        private AimdRateLimiter limiter(double configured) {
+            AimdRateLimiter current = limiter;
+            if (current == null || tps != configured) {
+                // A new limit starts from a full burst; racing threads may each build one, the last one stays
+                current = AimdRateLimiter.fixed(configured, (int) Math.max(1, configured * BURST_SECONDS));
+                limiter = current;
+                tps = configured;
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.alpha.server;
+
+/**
+ * JMX view and controls of a {@link SubmitLimiter}. A TPS or quota of 0 means unlimited.
+ */
+public interface SubmitLimiterMBean {
+    /**
+     * @return submit_sm per second allowed to each system_id without its own limit
+     */
+    double getSystemTps();
+
+    void setSystemTps(double tps);
+
+    /**
+     * @return submit_sm per second allowed to each bound session
+     */
+    double getBindTps();
+
+    void setBindTps(double tps);
+
+    /**
+     * @return submit_sm per UTC day allowed to each system_id without its own limit
+     */
+    long getDailyQuota();
+
+    void setDailyQuota(long quota);
+
+    /**
+     * Gives a system_id its own limits, replacing the defaults for it.
+     */
+    void setLimit(String systemId, double tps, long dailyQuota);
+
+    /**
+     * Puts a system_id back on the default limits.
+     */
+    void clearLimit(String systemId);
+
+    /**
+     * @return Per system_id limits, as {@code systemId:tps:dailyQuota,...}
+     */
+    String getLimits();
+
+    /**
+     * @return submit_sm accepted today from the system_id
+     */
+    long getUsedToday(String systemId);
+
+    long getAccepted();
+
+    /**
+     * @return submit_sm rejected for exceeding a system_id or bind TPS
+     */
+    long getThrottled();
+
+    /**
+     * @return submit_sm rejected for exceeding a daily quota
+     */
+    long getQuotaExceeded();
+}
@@ -0,0 +1,144 @@
+package org.alpha.server;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import org.alpha.utils.LatencyHistogram;
+import org.alpha.utils.LatencyRecorder;
+import org.alpha.utils.SmppEvents;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Ordered {@link SubmitStage}s every submit_sm of a server goes through, typically
+ * auth &rarr; throttle &rarr; persist &rarr; respond &rarr; deliver.
+ * <p>
+ * Stages run inline, on the session's thread, until the first stage added with {@link #offload}; that
+ * stage and every one after it run on a virtual thread, so slow work does not hold up the session's reads.
+ * If the submit_sm has not been answered by then, the session gets no response from the handler and the
+ * response is sent by the offloaded part. The duration of each stage, and the wait between offloading and
+ * running, are recorded as {@code stage=<name>} histograms, and each stage is a {@link SmppEvents.Stage}
+ * event when those are enabled.
+ * <p>
+ * Stages are added while the engine is configured, before it starts.
+ */
+public class SubmitPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(SubmitPipeline.class);
+
+    private final LatencyRecorder recorder;
+    private final Executor executor;
+    private final LatencyHistogram offloadWait;
+    private final List<SubmitStage> stageList = new ArrayList<>();
+    private final List<Boolean> offloadList = new ArrayList<>();
+    private SubmitStage[] stages = new SubmitStage[0];
+    private boolean[] offloads = new boolean[0];
+    private LatencyHistogram[] timings = new LatencyHistogram[0];
+
+    /**
+     * @param recorder receives the stage timings
+     * @param executor runs offloaded stages
+     */
+    public SubmitPipeline(LatencyRecorder recorder, Executor executor) {
+        this.recorder = recorder;
+        this.executor = executor;
+        this.offloadWait = recorder.histogram("stage=offload-wait");
+    }
+
+    /**
+     * Adds a stage run on the session's thread, unless an earlier stage was offloaded.
+     */
+    public SubmitPipeline inline(SubmitStage stage) {
+        return add(stage, false);
+    }
+
+    /**
+     * Adds a stage run on a virtual thread, together with all the stages after it.
+     */
+    public SubmitPipeline offload(SubmitStage stage) {
+        return add(stage, true);
+    }
+
+    /**
+     * Runs a submit_sm through the stages.
+     *
+     * @return The response to send now, or null if the offloaded stages will send it
+     */
+    PduResponse run(SubmitContext context) {
+        return proceed(context, 0, 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < stages.length; i++) {
+            sb.append(i == 0 ? "" : " -> ").append(stages[i].getName()).append(offloads[i] ? " (offloaded)" : "");
+        }
+        return sb.toString();
+    }
+
+    private synchronized SubmitPipeline add(SubmitStage stage, boolean offload) {
+        stageList.add(stage);
+        offloadList.add(offload);
+        // Published as arrays so running a submit_sm reads no collection
+        SubmitStage[] newStages = stageList.toArray(new SubmitStage[0]);
+        boolean[] newOffloads = new boolean[newStages.length];
+        LatencyHistogram[] newTimings = new LatencyHistogram[newStages.length];
+        for (int i = 0; i < newStages.length; i++) {
+            newOffloads[i] = offloadList.get(i);
+            newTimings[i] = recorder.histogram("stage=" + newStages[i].getName());
+        }
+        stages = newStages;
+        offloads = newOffloads;
+        timings = newTimings;
+        return this;
+    }
+
+    private PduResponse proceed(SubmitContext context, int from, long offloadedAt) {
+        if (offloadedAt != 0) {
+            offloadWait.record(System.nanoTime() - offloadedAt);
+        }
+        for (int i = from; i < stages.length; i++) {
+            if (offloads[i] && offloadedAt == 0) {
+                // Decide what the session returns before another thread can touch the context
+                PduResponse response = context.isResponded() ? context.getResponse() : null;
+                context.offload();
+                int next = i;
+                long now = System.nanoTime();
+                executor.execute(() -> proceed(context, next, now));
+                return response;
+            }
+            long start = System.nanoTime();
+            SmppEvents.Stage event = new SmppEvents.Stage();
+            event.begin();
+            boolean proceed;
+            try {
+                proceed = stages[i].process(context);
+            } catch (Exception e) {
+                logger.error("Stage {} failed for a submit_sm of {}", stages[i].getName(), context.getSystemId(), e);
+                if (!context.isResponded()) {
+                    context.reject(SmppConstants.STATUS_SYSERR);
+                }
+                proceed = false;
+            }
+            timings[i].record(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stages[i].getName();
+                event.offloaded = offloadedAt != 0;
+                event.sequenceNumber = context.getSubmit().getSequenceNumber();
+                event.systemId = context.getSystemId();
+                event.commandStatus = context.getResponse().getCommandStatus();
+                event.commit();
+            }
+            if (!proceed) {
+                break;
+            }
+        }
+        // Sent here if offloaded, otherwise returned to the session
+        context.respond();
+        return offloadedAt == 0 ? context.getResponse() : null;
+    }
+}
@@ -0,0 +1,21 @@
+package org.alpha.server;
+
+/**
+ * One step of the {@link SubmitPipeline} a submit_sm goes through, e.g. authorization, throttling or
+ * sending the deliver_sm that answers it. Stages are shared by all sessions and must be thread-safe.
+ */
+public interface SubmitStage {
+    /**
+     * @return Short name, used for the stage's timing histogram
+     */
+    String getName();
+
+    /**
+     * Processes a submit_sm.
+     *
+     * @param context the submit_sm, its session and its pending response
+     * @return false to end the pipeline here; the response is then sent with whatever status it holds
+     * @throws Exception If the stage fails; the submit_sm is answered with ESME_RSYSERR unless already answered
+     */
+    boolean process(SubmitContext context) throws Exception;
+}
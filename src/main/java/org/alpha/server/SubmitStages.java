@@ -0,0 +1,143 @@
+package org.alpha.server;
+
+import com.cloudhopper.commons.charset.CharsetUtil;
+import com.cloudhopper.smpp.SmppBindType;
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.type.Address;
+import org.alpha.utils.MessageIdGenerator;
+import org.alpha.utils.PduEventLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The standard {@link SubmitStage}s of the simulator's servers.
+ */
+public final class SubmitStages {
+    private static final Logger logger = LoggerFactory.getLogger(SubmitStages.class);
+
+    private SubmitStages() {
+    }
+
+    /**
+     * Rejects submit_sm from RECEIVER binds with ESME_RINVBNDSTS.
+     */
+    public static SubmitStage auth() {
+        return stage("auth", context -> {
+            if (context.getBindType() == SmppBindType.RECEIVER) {
+                context.reject(SmppConstants.STATUS_INVBNDSTS);
+                return false;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Rejects submit_sm over the TPS or daily quota of the session or its system_id with ESME_RTHROTTLED,
+     * before any work is done for them.
+     */
+    public static SubmitStage throttle() {
+        return stage("throttle", context -> {
+            int status = context.getLimits().check();
+            if (status != SmppConstants.STATUS_OK) {
+                context.reject(status);
+                return false;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Records each submit_sm, text included, in the server's PDU event log.
+     */
+    public static SubmitStage log() {
+        return stage("log", context -> {
+            SubmitSm submit = context.getSubmit();
+            context.getEvents().record(PduEventLog.Category.SUBMIT, PduEventLog.Direction.IN, context.getSessionName(),
+                    submit.getCommandStatus(), submit.getSequenceNumber(), submit.getShortMessage());
+            return true;
+        });
+    }
+
+    /**
+     * Accepts the message under a message_id unique across server instances and never reused, which the
+     * response carries and receipts refer to. The simulator keeps no message store: the id is all that is
+     * kept.
+     */
+    public static SubmitStage persist(MessageIdGenerator messageIds) {
+        return stage("persist", context -> {
+            long messageId = messageIds.nextLong();
+            context.setMessageId(messageId);
+            context.getResponse().setMessageId(messageIds.format(messageId));
+            return true;
+        });
+    }
+
+    /**
+     * Sends the submit_sm_resp; stages after it do not delay the ESME.
+     */
+    public static SubmitStage respond() {
+        return stage("respond", context -> {
+            context.respond();
+            return true;
+        });
+    }
+
+    /**
+     * Answers each submit_sm with a deliver_sm carrying the given text, sent to a receiving bind of the
+     * client's system_id.
+     */
+    public static SubmitStage reply(SessionRegistry registry, String text) {
+        byte[] shortMessage = CharsetUtil.encode(text, CharsetUtil.CHARSET_ISO_8859_1);
+        return stage("deliver", context -> {
+            DeliverSm deliver = new DeliverSm();
+            deliver.setSourceAddress(new Address((byte) 0x03, (byte) 0x00, "40404"));
+            deliver.setDestAddress(new Address((byte) 0x01, (byte) 0x01, "44555519205"));
+            deliver.setShortMessage(shortMessage);
+            // The outbox sends it when the client's window allows; without a receiving bind it is stored
+            registry.deliver(context.getSystemId(), deliver);
+            context.getEvents().record(PduEventLog.Category.DELIVER, PduEventLog.Direction.OUT, context.getSessionName(),
+                    0, 0, shortMessage);
+            return true;
+        });
+    }
+
+    /**
+     * Schedules the delivery receipt of each accepted message, after a simulated network delay.
+     */
+    public static SubmitStage receipt(ReceiptScheduler receipts, MessageIdGenerator messageIds) {
+        return stage("receipt", context -> {
+            receipts.schedule(context.getSystemId(), context.getMessageId(), context.getReceivedMillis());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Delivery Report scheduled for message {}", messageIds.format(context.getMessageId()));
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Names a stage given as a lambda.
+     */
+    public static SubmitStage stage(String name, Body body) {
+        return new SubmitStage() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public boolean process(SubmitContext context) throws Exception {
+                return body.process(context);
+            }
+        };
+    }
+
+    /**
+     * Work of a stage, see {@link SubmitStage#process(SubmitContext)}.
+     */
+    @FunctionalInterface
+    public interface Body {
+        boolean process(SubmitContext context) throws Exception;
+    }
+}
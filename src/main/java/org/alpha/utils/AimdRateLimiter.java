@@ -0,0 +1,200 @@
+package org.alpha.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free token bucket whose rate adapts with AIMD (additive increase, multiplicative decrease).
+ * <p>
+ * The bucket is implemented as a GCRA: a single {@link AtomicLong} holds the theoretical arrival time
+ * of the next permit, so acquiring is one CAS and never takes a lock. The current rate is kept as the
+ * raw bits of a double in another {@link AtomicLong}. {@link #onThrottled()} multiplies the rate by
+ * the decrease factor (at most once per cooldown period, so one burst of throttled responses counts
+ * as a single congestion signal) and {@link #onSuccess()} grows it back by {@code increasePerSecond}
+ * TPS for every second of successful traffic, up to the configured ceiling.
+ */
+public class AimdRateLimiter {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private volatile double maxRate;
+    private volatile double minRate;
+    private final double increasePerSecond;
+    private final double decreaseFactor;
+    private final long cooldownNanos;
+    private final int burst;
+
+    private final AtomicLong rateBits;
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+    private final AtomicLong lastDecrease;
+
+    /**
+     * @param maxRate           Ceiling in permits per second, e.g. the contracted TPS
+     * @param minRate           Floor the rate never drops below
+     * @param increasePerSecond TPS regained per second of non-throttled traffic
+     * @param decreaseFactor    Multiplier applied on throttling, between 0 and 1
+     * @param cooldownMillis    Minimum time between two decreases
+     * @param burst             Number of permits that may be taken back to back after an idle period
+     */
+    public AimdRateLimiter(double maxRate, double minRate, double increasePerSecond, double decreaseFactor,
+                           long cooldownMillis, int burst) {
+        if (maxRate <= 0 || minRate <= 0 || minRate > maxRate) {
+            throw new IllegalArgumentException("Invalid rate bounds: min " + minRate + ", max " + maxRate);
+        }
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("Decrease factor must be between 0 and 1: " + decreaseFactor);
+        }
+        this.maxRate = maxRate;
+        this.minRate = minRate;
+        this.increasePerSecond = increasePerSecond;
+        this.decreaseFactor = decreaseFactor;
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMillis);
+        this.burst = Math.max(1, burst);
+        this.rateBits = new AtomicLong(Double.doubleToRawLongBits(maxRate));
+        this.lastDecrease = new AtomicLong(System.nanoTime() - cooldownNanos); // the first throttle always counts
+    }
+
+    /**
+     * Fixed-rate bucket that never adapts, useful for replay and pacing.
+     *
+     * @param rate  Permits per second
+     * @param burst Number of permits that may be taken back to back
+     * @return A limiter whose rate only changes through {@link #setMaxRate(double)}
+     */
+    public static AimdRateLimiter fixed(double rate, int burst) {
+        return new AimdRateLimiter(rate, rate, 0, 0.5, Long.MAX_VALUE / 1_000_000, burst);
+    }
+
+    /**
+     * Takes a permit, parking the calling thread until one is available.
+     *
+     * @return Nanoseconds spent waiting for the permit
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public long acquire() throws InterruptedException {
+        while (true) {
+            long now = System.nanoTime();
+            long interval = intervalNanos();
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + interval;
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                long wait = next - now - interval * burst;
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                    // parkNanos may return early; finish the remaining wait
+                    while (System.nanoTime() - now < wait) {
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException();
+                        }
+                        LockSupport.parkNanos(this, wait - (System.nanoTime() - now));
+                    }
+                    return wait;
+                }
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Takes a permit only if one is available right now.
+     *
+     * @return true if the permit was granted
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long interval = intervalNanos();
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + interval;
+            if (next - now > interval * burst) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if {@link #tryAcquire()} would grant a permit right now; nothing is taken
+     */
+    public boolean canAcquire() {
+        long now = System.nanoTime();
+        long interval = intervalNanos();
+        return Math.max(theoreticalArrival.get(), now) + interval - now <= interval * burst;
+    }
+
+    /**
+     * Congestion signal (ESME_RTHROTTLED, ESME_RMSGQFUL): cut the rate multiplicatively.
+     */
+    public void onThrottled() {
+        long now = System.nanoTime();
+        long last = lastDecrease.get();
+        if (now - last < cooldownNanos || !lastDecrease.compareAndSet(last, now)) {
+            return; // another thread already reacted to this congestion episode
+        }
+        while (true) {
+            long bits = rateBits.get();
+            double next = Math.max(minRate, Double.longBitsToDouble(bits) * decreaseFactor);
+            if (rateBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Successful response: grow the rate so that it regains {@code increasePerSecond} TPS per second.
+     */
+    public void onSuccess() {
+        while (true) {
+            long bits = rateBits.get();
+            double rate = Double.longBitsToDouble(bits);
+            double ceiling = maxRate;
+            if (rate >= ceiling) {
+                return; // the common case at full speed: no write, no contention
+            }
+            double next = Math.min(ceiling, rate + increasePerSecond / rate);
+            if (rateBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Current permitted rate in permits per second
+     */
+    public double getRate() {
+        return Double.longBitsToDouble(rateBits.get());
+    }
+
+    public double getMaxRate() {
+        return maxRate;
+    }
+
+    /**
+     * Adjusts the ceiling at runtime. Lowering it takes effect immediately.
+     *
+     * @param maxRate New ceiling in permits per second
+     */
+    public void setMaxRate(double maxRate) {
+        if (maxRate <= 0) {
+            throw new IllegalArgumentException("Invalid max rate: " + maxRate);
+        }
+        this.maxRate = maxRate;
+        if (minRate > maxRate) {
+            minRate = maxRate;
+        }
+        while (true) {
+            long bits = rateBits.get();
+            double rate = Double.longBitsToDouble(bits);
+            double next = increasePerSecond > 0 ? Math.min(rate, maxRate) : maxRate;
+            if (rateBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    private long intervalNanos() {
+        return (long) (NANOS_PER_SECOND / Double.longBitsToDouble(rateBits.get()));
+    }
+}
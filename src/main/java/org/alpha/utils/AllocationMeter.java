@@ -0,0 +1,67 @@
+package org.alpha.utils;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures heap bytes allocated by the calling thread, or by the whole JVM, using the HotSpot per-thread
+ * allocation counters.
+ */
+public final class AllocationMeter {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private AllocationMeter() {
+    }
+
+    /**
+     * @return Bytes allocated so far by the calling thread, or -1 if the JVM does not support it
+     */
+    public static long allocatedBytes() {
+        if (!THREADS.isThreadAllocatedMemorySupported() || !THREADS.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+
+    /**
+     * @return Bytes allocated so far by all threads, or -1 if the JVM does not support it
+     */
+    public static long totalAllocatedBytes() {
+        if (!THREADS.isThreadAllocatedMemorySupported() || !THREADS.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return THREADS.getTotalThreadAllocatedBytes();
+    }
+
+    /**
+     * Runs the operation {@code warmup} times to let the JIT settle, then returns the average number of
+     * bytes allocated per call over {@code iterations} calls.
+     *
+     * @param operation  code under measurement
+     * @param warmup     calls before measuring
+     * @param iterations measured calls
+     * @return Average bytes per call, or -1 if allocation counting is unsupported
+     * @throws Exception If the operation fails
+     */
+    public static double bytesPerOperation(Operation operation, int warmup, int iterations) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            operation.run(i);
+        }
+        long before = allocatedBytes();
+        if (before < 0) {
+            return -1;
+        }
+        for (int i = 0; i < iterations; i++) {
+            operation.run(i);
+        }
+        return (double) (allocatedBytes() - before) / iterations;
+    }
+
+    /**
+     * Operation measured by {@link #bytesPerOperation(Operation, int, int)}.
+     */
+    @FunctionalInterface
+    public interface Operation {
+        void run(int iteration) throws Exception;
+    }
+}
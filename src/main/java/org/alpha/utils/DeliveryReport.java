@@ -2,7 +2,6 @@ package org.alpha.utils;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 public class DeliveryReport implements Serializable {
     private final String messageId;  // Immutable
@@ -92,40 +91,32 @@ public class DeliveryReport implements Serializable {
         return status.getDescription();
     }
 
-    // Enum for DeliveryStatus with descriptions
+    // Enum for DeliveryStatus with the 7-character receipt code and a description
     public enum DeliveryStatus {
-        DELIVRD("Delivered"),
-        EXPIRED("Message Expired"),
-        DELETED("Message Deleted"),
-        UNDELIV("Undeliverable"),
-        ACCEPTED("Accepted"),
-        UNKNOWN("Unknown Status");
-
+        DELIVRD("DELIVRD", "Delivered"),
+        EXPIRED("EXPIRED", "Message Expired"),
+        DELETED("DELETED", "Message Deleted"),
+        UNDELIV("UNDELIV", "Undeliverable"),
+        ACCEPTED("ACCEPTD", "Accepted"),
+        UNKNOWN("UNKNOWN", "Unknown Status"),
+        REJECTED("REJECTD", "Rejected");
+
+        private final String code;
         private final String description;
 
-        DeliveryStatus(String description) {
+        DeliveryStatus(String code, String description) {
+            this.code = code;
             this.description = description;
         }
 
+        // Value of the stat: field in a delivery receipt
+        public String getCode() {
+            return code;
+        }
+
         public String getDescription() {
             return description;
         }
     }
 
-    // Override toString to provide formatted date output
-    // Convert DLR object to a serializable string format
-    private String convertDlrToString(DeliveryReport dlr) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd HHmmss");
-
-        return String.format("id:%s sub:%03d dlvrd:%03d submit date:%s done date:%s stat:%s err:%03d",
-                dlr.getMessageId(),
-                dlr.getSubmittedParts(),
-                dlr.getDeliveredParts(),
-                dlr.getSubmitDate().format(formatter),
-                dlr.getDoneDate().format(formatter),
-                dlr.getStatus().getDescription(),
-                dlr.getErrorCode()
-        );
-    }
-
 }
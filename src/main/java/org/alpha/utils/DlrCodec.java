@@ -0,0 +1,367 @@
+package org.alpha.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Delivery receipt text in the de-facto SMPP format
+ * {@code id:<id> sub:<nnn> dlvrd:<nnn> submit date:<YYMMDDhhmm> done date:<YYMMDDhhmm> stat:<7 chars> err:<nnn> text:<20 chars>}.
+ * <p>
+ * {@link #encode} writes a receipt straight into a byte array and {@link Receipt#wrap(byte[], int, int)}
+ * parses one in place: the receipt keeps offsets into the PDU bytes instead of copying fields out, so
+ * neither direction creates strings, maps or date objects. Keys are matched case-insensitively, unknown
+ * keys are skipped and {@code text:} runs to the end, as SMSCs differ in casing and field sets. Dates are
+ * written and read in UTC.
+ */
+public final class DlrCodec {
+    /**
+     * Upper bound of an encoded receipt: a 65-byte id, counts and error code of up to 10 digits each and
+     * 20 bytes of text take 198 bytes.
+     */
+    public static final int MAX_LENGTH = 200;
+
+    private static final int MAX_ID_LENGTH = 65; // message_id is a C-Octet String of up to 65 bytes
+
+    private static final int TEXT_LENGTH = 20; // Leading bytes of the original message carried in text:
+    private static final long MILLIS_PER_MINUTE = 60000;
+    private static final long MILLIS_PER_DAY = 86400000;
+
+    private static final byte[] ID = ascii("id:");
+    private static final byte[] SUB = ascii(" sub:");
+    private static final byte[] DLVRD = ascii(" dlvrd:");
+    private static final byte[] SUBMIT_DATE = ascii(" submit date:");
+    private static final byte[] DONE_DATE = ascii(" done date:");
+    private static final byte[] STAT = ascii(" stat:");
+    private static final byte[] ERR = ascii(" err:");
+    private static final byte[] TEXT = ascii(" text:");
+
+    // Field keys in parsing order, without the leading space
+    private static final int F_ID = 0;
+    private static final int F_SUB = 1;
+    private static final int F_DLVRD = 2;
+    private static final int F_SUBMIT_DATE = 3;
+    private static final int F_DONE_DATE = 4;
+    private static final int F_STAT = 5;
+    private static final int F_ERR = 6;
+    private static final int F_TEXT = 7;
+    private static final byte[][] KEYS = {ID, strip(SUB), strip(DLVRD), strip(SUBMIT_DATE), strip(DONE_DATE),
+            strip(STAT), strip(ERR), strip(TEXT)};
+
+    private static final DeliveryReport.DeliveryStatus[] STATUSES = DeliveryReport.DeliveryStatus.values();
+    private static final byte[][] STATUS_CODES = new byte[STATUSES.length][];
+
+    static {
+        for (int i = 0; i < STATUSES.length; i++) {
+            STATUS_CODES[i] = ascii(STATUSES[i].getCode());
+        }
+    }
+
+    private DlrCodec() {
+    }
+
+    /**
+     * Writes a receipt.
+     *
+     * @param dest       target array, at least {@link #MAX_LENGTH} bytes from {@code offset}
+     * @param offset     where to start writing
+     * @param messageId  SMSC message id as returned in submit_sm_resp (ASCII, at most 65 characters)
+     * @param submitted  number of parts submitted, not negative
+     * @param delivered  number of parts delivered, not negative
+     * @param submitDate submit time (epoch ms)
+     * @param doneDate   final state time (epoch ms)
+     * @param status     final state
+     * @param error      network specific error code, not negative
+     * @param text       original short_message, or null; its first 20 bytes are carried
+     * @return Number of bytes written
+     * @throws IndexOutOfBoundsException If {@code dest} has less than {@link #MAX_LENGTH} bytes from {@code offset}
+     * @throws IllegalArgumentException  If the id is too long or a count or the error code is negative
+     */
+    public static int encode(byte[] dest, int offset, CharSequence messageId, int submitted, int delivered,
+                             long submitDate, long doneDate, DeliveryReport.DeliveryStatus status, int error,
+                             byte[] text) {
+        Objects.checkFromIndexSize(offset, MAX_LENGTH, dest.length);
+        if (messageId.length() > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Message id longer than " + MAX_ID_LENGTH + " characters: " + messageId);
+        }
+        if ((submitted | delivered | error) < 0) {
+            throw new IllegalArgumentException("Negative receipt field: sub " + submitted + ", dlvrd " + delivered
+                    + ", err " + error);
+        }
+        int p = put(dest, offset, ID);
+        for (int i = 0; i < messageId.length(); i++) {
+            dest[p++] = (byte) messageId.charAt(i);
+        }
+        p = putDigits(dest, put(dest, p, SUB), submitted, 3);
+        p = putDigits(dest, put(dest, p, DLVRD), delivered, 3);
+        p = putDate(dest, put(dest, p, SUBMIT_DATE), submitDate);
+        p = putDate(dest, put(dest, p, DONE_DATE), doneDate);
+        p = put(dest, put(dest, p, STAT), STATUS_CODES[status.ordinal()]);
+        p = putDigits(dest, put(dest, p, ERR), error, 3);
+        p = put(dest, p, TEXT);
+        if (text != null) {
+            int length = Math.min(TEXT_LENGTH, text.length);
+            System.arraycopy(text, 0, dest, p, length);
+            p += length;
+        }
+        return p - offset;
+    }
+
+    /**
+     * Flyweight over the bytes of one receipt; reuse it across receipts.
+     */
+    public static final class Receipt {
+        private final int[] starts = new int[KEYS.length];
+        private final int[] ends = new int[KEYS.length];
+        private byte[] buffer;
+
+        /**
+         * Parses the receipt in place; the array must not change while the receipt is in use.
+         *
+         * @return true if at least the id was found
+         */
+        public boolean wrap(byte[] bytes, int offset, int length) {
+            buffer = bytes;
+            Arrays.fill(starts, -1);
+            int end = offset + length;
+            int p = offset;
+            while (p < end) {
+                while (p < end && bytes[p] == ' ') {
+                    p++;
+                }
+                int field = keyAt(bytes, p, end);
+                if (field < 0) {
+                    // Unknown token: skip it
+                    while (p < end && bytes[p] != ' ') {
+                        p++;
+                    }
+                    continue;
+                }
+                p += KEYS[field].length;
+                int valueEnd = p;
+                if (field == F_TEXT) {
+                    valueEnd = end;
+                } else {
+                    while (valueEnd < end && bytes[valueEnd] != ' ') {
+                        valueEnd++;
+                    }
+                }
+                starts[field] = p;
+                ends[field] = valueEnd;
+                p = valueEnd;
+            }
+            return starts[F_ID] >= 0;
+        }
+
+        /**
+         * @return Hash of the id for {@link DlrCorrelationIndex#remove(long, DlrCorrelationIndex.Correlation)}
+         */
+        public long idHash() {
+            return DlrCorrelationIndex.hash(buffer, starts[F_ID], ends[F_ID] - starts[F_ID]);
+        }
+
+        /**
+         * @return The id as a String; allocates, meant for logging
+         */
+        public String getId() {
+            return field(F_ID);
+        }
+
+        public int getSubmitted() {
+            return number(F_SUB);
+        }
+
+        public int getDelivered() {
+            return number(F_DLVRD);
+        }
+
+        public int getError() {
+            return number(F_ERR);
+        }
+
+        /**
+         * @return Submit date (epoch ms, UTC), or -1 if missing or malformed
+         */
+        public long getSubmitDate() {
+            return date(F_SUBMIT_DATE);
+        }
+
+        /**
+         * @return Done date (epoch ms, UTC), or -1 if missing or malformed
+         */
+        public long getDoneDate() {
+            return date(F_DONE_DATE);
+        }
+
+        /**
+         * @return The final state, UNKNOWN if missing or not recognised
+         */
+        public DeliveryReport.DeliveryStatus getStatus() {
+            if (starts[F_STAT] >= 0) {
+                for (int i = 0; i < STATUS_CODES.length; i++) {
+                    if (regionMatches(buffer, starts[F_STAT], ends[F_STAT], STATUS_CODES[i])) {
+                        return STATUSES[i];
+                    }
+                }
+            }
+            return DeliveryReport.DeliveryStatus.UNKNOWN;
+        }
+
+        /**
+         * @return Offset of the text value in the wrapped array, or -1 if missing
+         */
+        public int getTextOffset() {
+            return starts[F_TEXT];
+        }
+
+        public int getTextLength() {
+            return starts[F_TEXT] < 0 ? 0 : ends[F_TEXT] - starts[F_TEXT];
+        }
+
+        @Override
+        public String toString() {
+            return "id:" + getId() + " sub:" + getSubmitted() + " dlvrd:" + getDelivered()
+                    + " submit date:" + getSubmitDate() + " done date:" + getDoneDate()
+                    + " stat:" + getStatus() + " err:" + getError() + " text:" + field(F_TEXT);
+        }
+
+        private String field(int field) {
+            return starts[field] < 0 ? null
+                    : new String(buffer, starts[field], ends[field] - starts[field], StandardCharsets.ISO_8859_1);
+        }
+
+        // Decimal value, or -1 if missing or not a number
+        private int number(int field) {
+            int start = starts[field];
+            if (start < 0 || start == ends[field]) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = start; i < ends[field]; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        // YYMMDDhhmm, optionally followed by ss
+        private long date(int field) {
+            int start = starts[field];
+            int length = start < 0 ? 0 : ends[field] - start;
+            if (length != 10 && length != 12) {
+                return -1;
+            }
+            int year = 2000 + digits(start, 2);
+            int month = digits(start + 2, 2);
+            int day = digits(start + 4, 2);
+            int hour = digits(start + 6, 2);
+            int minute = digits(start + 8, 2);
+            int second = length == 12 ? digits(start + 10, 2) : 0;
+            if ((year | month | day | hour | minute | second) < 0 || month < 1 || month > 12 || day < 1) {
+                return -1;
+            }
+            return daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                    + (hour * 60L + minute) * MILLIS_PER_MINUTE + second * 1000L;
+        }
+
+        private int digits(int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return Integer.MIN_VALUE;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+    }
+
+    private static int keyAt(byte[] bytes, int p, int end) {
+        for (int field = 0; field < KEYS.length; field++) {
+            byte[] key = KEYS[field];
+            if (p + key.length <= end) {
+                int i = 0;
+                while (i < key.length && (bytes[p + i] | 0x20) == (key[i] | 0x20)) {
+                    i++;
+                }
+                if (i == key.length) {
+                    return field;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(byte[] bytes, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((bytes[start + i] | 0x20) != (expected[i] | 0x20)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int put(byte[] dest, int p, byte[] bytes) {
+        System.arraycopy(bytes, 0, dest, p, bytes.length);
+        return p + bytes.length;
+    }
+
+    // Zero-padded to at least width digits; value must not be negative
+    private static int putDigits(byte[] dest, int p, int value, int width) {
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int length = Math.max(width, digits);
+        for (int i = p + length - 1; i >= p; i--) {
+            dest[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return p + length;
+    }
+
+    // YYMMDDhhmm in UTC
+    private static int putDate(byte[] dest, int p, long epochMillis) {
+        long days = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+        int minuteOfDay = (int) (Math.floorMod(epochMillis, MILLIS_PER_DAY) / MILLIS_PER_MINUTE);
+        // Civil date from day count (proleptic Gregorian)
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+        p = putDigits(dest, p, year % 100, 2);
+        p = putDigits(dest, p, month, 2);
+        p = putDigits(dest, p, day, 2);
+        p = putDigits(dest, p, minuteOfDay / 60, 2);
+        return putDigits(dest, p, minuteOfDay % 60, 2);
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] strip(byte[] key) {
+        return Arrays.copyOfRange(key, 1, key.length);
+    }
+}
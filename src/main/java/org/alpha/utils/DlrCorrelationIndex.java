@@ -0,0 +1,266 @@
+package org.alpha.utils;
+
+/**
+ * Maps SMSC message ids (from submit_sm_resp) to our internal message id and submit time, so delivery
+ * receipts can be linked back to the message that produced them.
+ * <p>
+ * Built for tens of millions of pending entries: the message id string is not stored, only a 64-bit
+ * hash of it, and entries live in striped open-addressing tables made of one {@code long[]} per stripe
+ * (key, internal id, submit time side by side). That is 24 bytes per entry before load factor, and the
+ * arrays hold no references, so the garbage collector never traces them however large the pending set
+ * grows. Lookups are O(1) with linear probing; removals use backward-shift deletion, so no tombstones
+ * accumulate. Two distinct ids colliding on 64 bits is negligible at this scale (about 1e-5 at 30M
+ * pending entries).
+ * <p>
+ * Entries older than the TTL are never returned and are purged by {@link #expire(long)}, which is meant
+ * to be called periodically.
+ */
+public class DlrCorrelationIndex {
+    private static final int STRIPES = 64; // power of two
+    private static final int SLOT = 3; // longs per entry: key, internal id, submit time
+    private static final long EMPTY = 0;
+    private static final double MAX_LOAD = 0.7;
+
+    private final long ttlMillis;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * Result holder filled by {@link #remove(CharSequence, Correlation)}; reusable.
+     */
+    public static final class Correlation {
+        private long internalId;
+        private long submitTime;
+
+        public long getInternalId() {
+            return internalId;
+        }
+
+        /**
+         * @return Submit time (epoch ms)
+         */
+        public long getSubmitTime() {
+            return submitTime;
+        }
+    }
+
+    /**
+     * @param expectedEntries pending entries to size the tables for; they grow beyond it if needed
+     * @param ttlMillis       how long an entry waits for its receipt
+     */
+    public DlrCorrelationIndex(int expectedEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        int perStripe = (int) Math.min(1 << 28, (long) (expectedEntries / STRIPES / MAX_LOAD) + 1);
+        int capacity = Integer.highestOneBit(Math.max(16, perStripe - 1)) << 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    /**
+     * Records a submitted message; an existing entry for the same SMSC id is replaced.
+     *
+     * @param smscMessageId message_id from the submit_sm_resp
+     * @param internalId    our id of the message
+     * @param submitTime    submit time (epoch ms)
+     */
+    public void put(CharSequence smscMessageId, long internalId, long submitTime) {
+        long key = hash(smscMessageId);
+        stripeOf(key).put(key, internalId, submitTime);
+    }
+
+    /**
+     * Looks up and removes the entry for a delivery receipt.
+     *
+     * @param smscMessageId id carried by the receipt
+     * @param out           filled with the entry when found
+     * @return true if a live entry was found
+     */
+    public boolean remove(CharSequence smscMessageId, Correlation out) {
+        return remove(hash(smscMessageId), out);
+    }
+
+    /**
+     * Same as {@link #remove(CharSequence, Correlation)} for an id already hashed with one of the
+     * {@code hash} methods, e.g. straight from the receipt bytes.
+     */
+    public boolean remove(long key, Correlation out) {
+        Stripe stripe = stripeOf(key);
+        boolean found = stripe.remove(key, out);
+        return found && out.submitTime >= System.currentTimeMillis() - ttlMillis;
+    }
+
+    /**
+     * Purges entries older than the TTL.
+     *
+     * @param now current time (epoch ms)
+     * @return Number of entries removed
+     */
+    public int expire(long now) {
+        long cutoff = now - ttlMillis;
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            removed += stripe.expire(cutoff);
+        }
+        return removed;
+    }
+
+    /**
+     * @return Number of pending entries (expired ones included until purged)
+     */
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * 64-bit hash of a message id; ids are ASCII, so each char is hashed as one byte and the result
+     * matches {@link #hash(byte[], int, int)} over the encoded id.
+     */
+    public static long hash(CharSequence id) {
+        long h = 0xcbf29ce484222325L; // FNV-1a 64 offset basis
+        for (int i = 0; i < id.length(); i++) {
+            h = (h ^ (id.charAt(i) & 0xFF)) * 0x100000001b3L;
+        }
+        return finish(h);
+    }
+
+    /**
+     * 64-bit hash of a message id held as ASCII bytes.
+     */
+    public static long hash(byte[] id, int offset, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ (id[i] & 0xFF)) * 0x100000001b3L;
+        }
+        return finish(h);
+    }
+
+    // Murmur3 finalizer spreads FNV's weak low bits; 0 is reserved for empty slots
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1 : h;
+    }
+
+    private Stripe stripeOf(long key) {
+        return stripes[(int) (key >>> 58) & (STRIPES - 1)];
+    }
+
+    // Open-addressing table with linear probing; slots are [key, internal id, submit time]
+    private static final class Stripe {
+        private long[] table;
+        private int mask; // capacity - 1, in entries
+        private int size;
+
+        Stripe(int capacity) {
+            this.table = new long[capacity * SLOT];
+            this.mask = capacity - 1;
+        }
+
+        synchronized void put(long key, long internalId, long submitTime) {
+            if (size + 1 > (mask + 1) * MAX_LOAD) {
+                resize();
+            }
+            int index = (int) key & mask;
+            while (true) {
+                int base = index * SLOT;
+                long current = table[base];
+                if (current == EMPTY || current == key) {
+                    if (current == EMPTY) {
+                        size++;
+                    }
+                    table[base] = key;
+                    table[base + 1] = internalId;
+                    table[base + 2] = submitTime;
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        synchronized boolean remove(long key, Correlation out) {
+            int index = (int) key & mask;
+            while (true) {
+                int base = index * SLOT;
+                long current = table[base];
+                if (current == EMPTY) {
+                    return false;
+                }
+                if (current == key) {
+                    out.internalId = table[base + 1];
+                    out.submitTime = table[base + 2];
+                    delete(index);
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        synchronized int expire(long cutoff) {
+            int removed = 0;
+            int index = 0;
+            while (index <= mask) {
+                int base = index * SLOT;
+                if (table[base] != EMPTY && table[base + 2] < cutoff) {
+                    // The shift may move a later entry into this slot, so look at it again
+                    delete(index);
+                    removed++;
+                } else {
+                    index++;
+                }
+            }
+            return removed;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        // Backward-shift deletion: pull later entries of the probe chain into the hole
+        private void delete(int hole) {
+            size--;
+            int index = hole;
+            while (true) {
+                index = (index + 1) & mask;
+                int base = index * SLOT;
+                long key = table[base];
+                if (key == EMPTY) {
+                    break;
+                }
+                int home = (int) key & mask;
+                // Move the entry if its home slot is not within (hole, index] cyclically
+                boolean movable = hole <= index ? (home <= hole || home > index) : (home <= hole && home > index);
+                if (movable) {
+                    System.arraycopy(table, base, table, hole * SLOT, SLOT);
+                    hole = index;
+                }
+            }
+            int base = hole * SLOT;
+            table[base] = EMPTY;
+            table[base + 1] = 0;
+            table[base + 2] = 0;
+        }
+
+        private void resize() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            mask = (mask << 1) | 1;
+            for (int base = 0; base < old.length; base += SLOT) {
+                long key = old[base];
+                if (key != EMPTY) {
+                    int index = (int) key & mask;
+                    while (table[index * SLOT] != EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    System.arraycopy(old, base, table, index * SLOT, SLOT);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.alpha.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of durations in nanoseconds, in the style of HdrHistogram.
+ * <p>
+ * Values are bucketed by magnitude (power of two) and, within a magnitude, into 64 linear sub-buckets, so
+ * every recorded value is kept with a relative error below 1.6% from 1 ns up to {@code Long.MAX_VALUE} in
+ * a fixed array of counters (about 30 KB). Recording is a single {@code AtomicLongArray} increment plus a
+ * max update, safe from any number of threads; {@link #snapshot()} copies the counters for reporting.
+ * <p>
+ * Callers correct for coordinated omission by measuring from the time a request was meant to be issued
+ * rather than from the time it was actually sent.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7; // 128 values at magnitude 0, then 64 per magnitude
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos duration; negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return A consistent-enough copy of the counters for reporting; recording continues meanwhile
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, max.get());
+    }
+
+    /**
+     * Clears all counters.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    static int indexOf(long value) {
+        int magnitude = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        int sub = (int) (value >>> magnitude);
+        return magnitude == 0 ? sub : magnitude * SUB_BUCKET_HALF + sub;
+    }
+
+    // Highest value that falls into the bucket
+    static long highestOf(int index) {
+        int magnitude = index < SUB_BUCKET_COUNT ? 0 : index / SUB_BUCKET_HALF - 1;
+        long sub = index - (long) magnitude * SUB_BUCKET_HALF;
+        return ((sub + 1) << magnitude) - 1;
+    }
+
+    /**
+     * Point-in-time copy of a histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return Largest recorded value (ns)
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile 0 to 100
+         * @return Value (ns) at or below which the given share of samples fall, 0 when empty
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Adds another snapshot's samples to this one's, e.g. to aggregate sessions.
+         */
+        public Snapshot merge(Snapshot other) {
+            long[] merged = counts.clone();
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] += other.counts[i];
+            }
+            return new Snapshot(merged, count + other.count, Math.max(max, other.max));
+        }
+
+        /**
+         * @return count, p50, p99, p99.9 and max in milliseconds
+         */
+        @Override
+        public String toString() {
+            return String.format("count=%d p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms", count,
+                    getValueAtPercentile(50) / 1e6, getValueAtPercentile(99) / 1e6,
+                    getValueAtPercentile(99.9) / 1e6, max / 1e6);
+        }
+    }
+}
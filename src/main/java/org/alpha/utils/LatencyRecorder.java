@@ -0,0 +1,111 @@
+package org.alpha.utils;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named set of {@link LatencyHistogram}s, one per metric and per session or destination host.
+ * <p>
+ * Hot paths resolve a {@link Scope} once per session and record through it, so recording never looks
+ * anything up; a scope writes each sample to both the session and the host histogram. The report can be
+ * read over JMX at any time and is written to a file at the end of a run.
+ */
+public class LatencyRecorder implements LatencyRecorderMBean {
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Measured durations.
+     */
+    public enum Metric {
+        SUBMIT_RESP("submit->resp"),
+        SUBMIT_DLR("submit->dlr"),
+        WINDOW_WAIT("window-wait");
+
+        private final String label;
+
+        Metric(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Histograms of one session, paired with those of its host.
+     */
+    public static final class Scope {
+        private final LatencyHistogram[] session;
+        private final LatencyHistogram[] host;
+
+        private Scope(LatencyHistogram[] session, LatencyHistogram[] host) {
+            this.session = session;
+            this.host = host;
+        }
+
+        public void record(Metric metric, long nanos) {
+            session[metric.ordinal()].record(nanos);
+            host[metric.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * @param session session name
+     * @param host    destination host, e.g. host:port
+     * @return The histograms to record into for this session
+     */
+    public Scope scope(String session, String host) {
+        return new Scope(histograms("session=" + session), histograms("host=" + host));
+    }
+
+    /**
+     * @return The histogram for a free-form name, created on first use
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers the recorder with the platform MBean server.
+     *
+     * @param name JMX object name, e.g. {@code org.alpha:type=LatencyRecorder}
+     */
+    public void register(String name) throws Exception {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(histograms).forEach((name, histogram) ->
+                sb.append(name).append(' ').append(histogram.snapshot()).append(System.lineSeparator()));
+        return sb.toString();
+    }
+
+    @Override
+    public void dump(String path) throws IOException {
+        Files.writeString(Path.of(path), getReport(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    private LatencyHistogram[] histograms(String prefix) {
+        Metric[] metrics = Metric.values();
+        LatencyHistogram[] result = new LatencyHistogram[metrics.length];
+        for (Metric metric : metrics) {
+            result[metric.ordinal()] = histogram(metric.getLabel() + " " + prefix);
+        }
+        return result;
+    }
+}
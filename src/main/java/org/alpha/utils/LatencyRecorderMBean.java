@@ -0,0 +1,23 @@
+package org.alpha.utils;
+
+/**
+ * JMX view of a {@link LatencyRecorder}.
+ */
+public interface LatencyRecorderMBean {
+    /**
+     * @return p50/p99/p99.9/max of every histogram, one line each
+     */
+    String getReport();
+
+    /**
+     * Writes the report to a file.
+     *
+     * @param path target file
+     */
+    void dump(String path) throws java.io.IOException;
+
+    /**
+     * Clears every histogram.
+     */
+    void reset();
+}
@@ -0,0 +1,26 @@
+package org.alpha.utils;
+
+/**
+ * Source of the message_id returned in submit_sm_resp and carried by delivery receipts.
+ * <p>
+ * Ids must be unique across every server instance answering the same ESMEs, since they are what the
+ * ESME correlates receipts on, and must fit SMPP's 65-octet message_id.
+ */
+public interface MessageIdGenerator {
+    /**
+     * @return A new id as a number, safe to call from any thread
+     */
+    long nextLong();
+
+    /**
+     * @return The message_id text of an id from {@link #nextLong()}
+     */
+    String format(long id);
+
+    /**
+     * @return A new id, safe to call from any thread
+     */
+    default String next() {
+        return format(nextLong());
+    }
+}
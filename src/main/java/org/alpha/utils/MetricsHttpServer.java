@@ -0,0 +1,371 @@
+package org.alpha.utils;
+
+import com.cloudhopper.commons.util.windowing.Window;
+import com.cloudhopper.smpp.SmppServerCounters;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionCounters;
+import com.cloudhopper.smpp.util.ConcurrentCommandCounter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Serves the session counters of a client or server in the Prometheus text format on
+ * {@code http://<host>:<port>/metrics}: PDU requests, responses and expiries by PDU type and direction,
+ * responses by command_status, send window occupancy and request rates over the last 1, 10 and 60 s, per
+ * session and per system_id, plus the server counters when there are any.
+ * <p>
+ * Nothing is done on the PDU path beyond what the session counters already do. A scrape reads a few
+ * dozen counters per session; once a second a ticker copies the request counts of every session into a
+ * ring, from which the rates are taken. Counts of sessions that are gone are kept in their system_id's
+ * totals, so those never go backwards.
+ */
+public final class MetricsHttpServer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHttpServer.class);
+    private static final String[] PDUS = {"submit_sm", "deliver_sm", "enquire_link", "data_sm"};
+    private static final String[] DIRECTIONS = {"tx", "rx"};
+    private static final int SERIES = PDUS.length * DIRECTIONS.length; // request counts kept per session
+    private static final int[] RATE_WINDOWS = {1, 10, 60}; // seconds
+    private static final int HISTORY = 61; // one snapshot per second, enough for the longest window
+    private static final long TICK = 1000; // snapshot interval (in milliseconds)
+
+    private final Supplier<? extends Map<String, SmppSession>> sessions;
+    private final HttpServer http;
+    private final ScheduledExecutorService ticker;
+    // Request count history of each live session, by session name
+    private final Map<String, History> histories = new ConcurrentHashMap<>();
+    // Request, response and expired counts of sessions that are gone, by system_id
+    private final Map<String, long[]> retired = new HashMap<>();
+    private volatile Supplier<SmppServerCounters> serverCounters;
+
+    /**
+     * Starts serving and sampling.
+     *
+     * @param port     port to listen on
+     * @param sessions live sessions by unique name, asked for at every scrape and tick
+     * @throws IOException If the port cannot be bound
+     */
+    public MetricsHttpServer(int port, Supplier<? extends Map<String, SmppSession>> sessions) throws IOException {
+        this.sessions = sessions;
+        this.http = HttpServer.create(new InetSocketAddress(port), 0);
+        http.createContext("/metrics", this::handle);
+        // One scrape at a time, on the dispatcher thread: nothing to share or lock between scrapes
+        http.setExecutor(null);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("metrics-ticker").factory());
+        ticker.scheduleAtFixedRate(this::tick, TICK, TICK, TimeUnit.MILLISECONDS);
+        http.start();
+        logger.info("Metrics served on http://{}:{}/metrics", http.getAddress().getHostString(), getPort());
+    }
+
+    /**
+     * Adds the server counters (sessions by bind type, binds, connects) to the output.
+     */
+    public void setServerCounters(Supplier<SmppServerCounters> serverCounters) {
+        this.serverCounters = serverCounters;
+    }
+
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        http.stop(0);
+    }
+
+    /**
+     * @return The current metrics in the Prometheus text format
+     */
+    public String scrape() {
+        Map<String, SmppSession> live = sessions.get();
+        Families out = new Families();
+        // system_id -> [kind][series] totals over live and retired sessions
+        Map<String, long[]> systems = new TreeMap<>();
+        synchronized (retired) {
+            retired.forEach((systemId, counts) -> systems.put(systemId, counts.clone()));
+            // Closed since the last tick: counted here until the ticker retires them
+            histories.forEach((name, history) -> {
+                if (!live.containsKey(name)) {
+                    history.retire(systems.computeIfAbsent(history.systemId, k -> new long[3 * SERIES]));
+                }
+            });
+        }
+        Map<String, double[]> systemRates = new TreeMap<>();
+
+        out.header("smpp_pdu_requests_total", "counter", "PDU requests sent (tx) or received (rx)");
+        out.header("smpp_pdu_responses_total", "counter", "Responses to those requests");
+        out.header("smpp_pdu_expired_total", "counter", "Requests sent that got no response in time");
+        out.header("smpp_pdu_status_total", "counter", "Responses by command_status");
+        out.header("smpp_pdu_rate", "gauge", "Requests per second over the window");
+        out.header("smpp_window_size", "gauge", "Requests in the send window awaiting a response");
+        out.header("smpp_window_max_size", "gauge", "Send window capacity");
+        out.header("smpp_window_pending_offers", "gauge", "Callers waiting for a send window slot");
+        for (Map.Entry<String, SmppSession> entry : new TreeMap<>(live).entrySet()) {
+            SmppSession session = entry.getValue();
+            String systemId = session.getConfiguration().getSystemId();
+            String labels = "system_id=\"" + escape(systemId) + "\",session=\"" + escape(entry.getKey()) + "\"";
+            long[] system = systems.computeIfAbsent(systemId, k -> new long[3 * SERIES]);
+            if (session.hasCounters()) {
+                SmppSessionCounters counters = session.getCounters();
+                for (int s = 0; s < SERIES; s++) {
+                    ConcurrentCommandCounter counter = counter(counters, s);
+                    String seriesLabels = labels + series(s);
+                    int requests = counter.getRequest();
+                    int responses = counter.getResponse();
+                    int expired = counter.getRequestExpired();
+                    out.sample("smpp_pdu_requests_total", seriesLabels, requests);
+                    out.sample("smpp_pdu_responses_total", seriesLabels, responses);
+                    out.sample("smpp_pdu_expired_total", seriesLabels, expired);
+                    system[s] += requests;
+                    system[SERIES + s] += responses;
+                    system[2 * SERIES + s] += expired;
+                    SortedMap<Integer, Integer> statuses = counter.getResponseCommandStatusCounter().createSortedMapSnapshot();
+                    for (Map.Entry<Integer, Integer> status : statuses.entrySet()) {
+                        out.sample("smpp_pdu_status_total",
+                                seriesLabels + ",status=\"" + String.format("0x%08x", status.getKey()) + "\"",
+                                status.getValue());
+                    }
+                }
+            }
+            History history = histories.get(entry.getKey());
+            if (history != null) {
+                double[] totalRates = systemRates.computeIfAbsent(systemId, k -> new double[SERIES * RATE_WINDOWS.length]);
+                double[] rates = history.rates();
+                for (int s = 0; s < SERIES; s++) {
+                    for (int w = 0; w < RATE_WINDOWS.length; w++) {
+                        double rate = rates[s * RATE_WINDOWS.length + w];
+                        out.sample("smpp_pdu_rate", labels + series(s) + ",window=\"" + RATE_WINDOWS[w] + "s\"", rate);
+                        totalRates[s * RATE_WINDOWS.length + w] += rate;
+                    }
+                }
+            }
+            Window<?, ?, ?> window = session.getSendWindow();
+            if (window != null) {
+                out.sample("smpp_window_size", labels, window.getSize());
+                out.sample("smpp_window_max_size", labels, window.getMaxSize());
+                out.sample("smpp_window_pending_offers", labels, window.getPendingOfferCount());
+            }
+        }
+
+        out.header("smpp_system_pdu_requests_total", "counter", "PDU requests of all sessions of the system_id, past ones included");
+        out.header("smpp_system_pdu_responses_total", "counter", "Responses to those requests");
+        out.header("smpp_system_pdu_expired_total", "counter", "Requests sent that got no response in time");
+        out.header("smpp_system_pdu_rate", "gauge", "Requests per second over the window, all live sessions of the system_id");
+        out.header("smpp_system_sessions", "gauge", "Live sessions of the system_id");
+        Map<String, Integer> sessionCounts = new HashMap<>();
+        for (SmppSession session : live.values()) {
+            sessionCounts.merge(session.getConfiguration().getSystemId(), 1, Integer::sum);
+        }
+        for (Map.Entry<String, long[]> entry : systems.entrySet()) {
+            String labels = "system_id=\"" + escape(entry.getKey()) + "\"";
+            long[] totals = entry.getValue();
+            for (int s = 0; s < SERIES; s++) {
+                out.sample("smpp_system_pdu_requests_total", labels + series(s), totals[s]);
+                out.sample("smpp_system_pdu_responses_total", labels + series(s), totals[SERIES + s]);
+                out.sample("smpp_system_pdu_expired_total", labels + series(s), totals[2 * SERIES + s]);
+            }
+            double[] rates = systemRates.get(entry.getKey());
+            if (rates != null) {
+                for (int s = 0; s < SERIES; s++) {
+                    for (int w = 0; w < RATE_WINDOWS.length; w++) {
+                        out.sample("smpp_system_pdu_rate", labels + series(s) + ",window=\"" + RATE_WINDOWS[w] + "s\"",
+                                rates[s * RATE_WINDOWS.length + w]);
+                    }
+                }
+            }
+            out.sample("smpp_system_sessions", labels, sessionCounts.getOrDefault(entry.getKey(), 0));
+        }
+
+        Supplier<SmppServerCounters> server = serverCounters;
+        SmppServerCounters counters = server != null ? server.get() : null;
+        if (counters != null) {
+            out.header("smpp_server_sessions", "gauge", "Bound sessions by bind type");
+            out.sample("smpp_server_sessions", "bind_type=\"transmitter\"", counters.getTransmitterSessionSize());
+            out.sample("smpp_server_sessions", "bind_type=\"receiver\"", counters.getReceiverSessionSize());
+            out.sample("smpp_server_sessions", "bind_type=\"transceiver\"", counters.getTransceiverSessionSize());
+            out.header("smpp_server_events_total", "counter", "Server session and connection events");
+            out.sample("smpp_server_events_total", "event=\"session_created\"", counters.getSessionCreated());
+            out.sample("smpp_server_events_total", "event=\"session_destroyed\"", counters.getSessionDestroyed());
+            out.sample("smpp_server_events_total", "event=\"bind_requested\"", counters.getBindRequested());
+            out.sample("smpp_server_events_total", "event=\"bind_timeout\"", counters.getBindTimeouts());
+            out.sample("smpp_server_events_total", "event=\"channel_connect\"", counters.getChannelConnects());
+            out.sample("smpp_server_events_total", "event=\"channel_disconnect\"", counters.getChannelDisconnects());
+        }
+        return out.toString();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body;
+            try {
+                body = scrape().getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException e) {
+                logger.warn("Unable to collect metrics", e);
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    // Ticker: snapshot of the request counts of every live session; sessions gone move to their system_id
+    private void tick() {
+        try {
+            Map<String, SmppSession> live = sessions.get();
+            long now = System.nanoTime();
+            for (Map.Entry<String, SmppSession> entry : live.entrySet()) {
+                SmppSession session = entry.getValue();
+                if (session.hasCounters()) {
+                    histories.computeIfAbsent(entry.getKey(), k -> new History(session)).record(now);
+                }
+            }
+            synchronized (retired) {
+                histories.entrySet().removeIf(entry -> {
+                    if (live.containsKey(entry.getKey())) {
+                        return false;
+                    }
+                    History history = entry.getValue();
+                    history.retire(retired.computeIfAbsent(history.systemId, k -> new long[3 * SERIES]));
+                    return true;
+                });
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Unable to sample session counters", e);
+        }
+    }
+
+    // Series index: PDU type within direction, tx first
+    private static ConcurrentCommandCounter counter(SmppSessionCounters counters, int series) {
+        return switch (series) {
+            case 0 -> counters.getTxSubmitSM();
+            case 1 -> counters.getTxDeliverSM();
+            case 2 -> counters.getTxEnquireLink();
+            case 3 -> counters.getTxDataSM();
+            case 4 -> counters.getRxSubmitSM();
+            case 5 -> counters.getRxDeliverSM();
+            case 6 -> counters.getRxEnquireLink();
+            default -> counters.getRxDataSM();
+        };
+    }
+
+    private static String series(int series) {
+        return ",direction=\"" + DIRECTIONS[series / PDUS.length] + "\",pdu=\"" + PDUS[series % PDUS.length] + "\"";
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Output grouped by metric family, as the text format requires, whatever order samples come in.
+     */
+    private static final class Families {
+        private final Map<String, StringBuilder> families = new LinkedHashMap<>();
+
+        void header(String name, String type, String help) {
+            families.put(name, new StringBuilder(1024)
+                    .append("# HELP ").append(name).append(' ').append(help).append('\n')
+                    .append("# TYPE ").append(name).append(' ').append(type).append('\n'));
+        }
+
+        void sample(String name, String labels, long value) {
+            families.get(name).append(name).append('{').append(labels).append("} ").append(value).append('\n');
+        }
+
+        void sample(String name, String labels, double value) {
+            families.get(name).append(name).append('{').append(labels).append("} ")
+                    .append(String.format("%.3f", value)).append('\n');
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder(families.values().stream().mapToInt(StringBuilder::length).sum());
+            families.values().forEach(out::append);
+            return out.toString();
+        }
+    }
+
+    /**
+     * Request counts of one session at each of the last {@link #HISTORY} ticks.
+     */
+    private static final class History {
+        private final SmppSession session;
+        private final String systemId;
+        private final long[][] counts = new long[HISTORY][SERIES];
+        private final long[] times = new long[HISTORY];
+        private int ticks; // snapshots taken so far
+
+        History(SmppSession session) {
+            this.session = session;
+            this.systemId = session.getConfiguration().getSystemId();
+        }
+
+        synchronized void record(long now) {
+            int slot = ticks % HISTORY;
+            SmppSessionCounters counters = session.getCounters();
+            for (int s = 0; s < SERIES; s++) {
+                counts[slot][s] = counter(counters, s).getRequest();
+            }
+            times[slot] = now;
+            ticks++;
+        }
+
+        /**
+         * @return Requests per second of each series over each window, [series * windows + window]; a
+         * window longer than the history so far uses all of it
+         */
+        synchronized double[] rates() {
+            double[] rates = new double[SERIES * RATE_WINDOWS.length];
+            if (ticks < 2) {
+                return rates;
+            }
+            int last = (ticks - 1) % HISTORY;
+            for (int w = 0; w < RATE_WINDOWS.length; w++) {
+                int back = Math.min(RATE_WINDOWS[w], ticks - 1);
+                int first = (ticks - 1 - back) % HISTORY;
+                double seconds = (times[last] - times[first]) / 1e9;
+                for (int s = 0; s < SERIES; s++) {
+                    rates[s * RATE_WINDOWS.length + w] = (counts[last][s] - counts[first][s]) / seconds;
+                }
+            }
+            return rates;
+        }
+
+        // Adds the final counts of the session to its system_id's totals
+        void retire(long[] totals) {
+            SmppSessionCounters counters = session.getCounters();
+            for (int s = 0; s < SERIES; s++) {
+                ConcurrentCommandCounter counter = counter(counters, s);
+                totals[s] += counter.getRequest();
+                totals[SERIES + s] += counter.getResponse();
+                totals[2 * SERIES + s] += counter.getRequestExpired();
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package org.alpha.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Binary log of PDU traffic for the hot path, replacing per-PDU console logging.
+ * <p>
+ * Recording copies the event into a slot of a preallocated ring and returns: a slot is claimed with one
+ * CAS and published with one ordered write, nothing is allocated and nothing is formatted. A background
+ * thread drains published slots in order to the file. When the writer falls behind and the ring is full,
+ * events are dropped and counted rather than blocking the caller. Each {@link Category} can be sampled
+ * (one event in N) and capped at a number of events per second, e.g. {@code SUBMIT:10:1000,DELIVER:1:500};
+ * categories not listed are all recorded.
+ * <p>
+ * The file starts with the 8-byte magic {@code PDUEVT01}, followed by records of
+ * {@code [int length][long epochMillis][byte category][byte direction][int commandStatus]
+ * [int sequenceNumber][byte sessionLength][session][short dataLength][data]}, all big-endian, with session
+ * names and data truncated to fit a slot. {@link #read(Path, Consumer)} reads it back and
+ * {@link PduEventLogPrinter} prints it.
+ */
+public final class PduEventLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(PduEventLog.class);
+    private static final byte[] MAGIC = "PDUEVT01".getBytes(StandardCharsets.US_ASCII);
+    private static final int SLOT = 256; // bytes per event, length prefix included
+    private static final int MAX_SESSION = 64;
+    private static final int BATCH = 64 * 1024; // bytes written to the file at once
+    private static final long IDLE_PARK = 1_000_000; // writer pause when the ring is empty (ns)
+    private static final long CLOSED = Long.MIN_VALUE; // set in head by close(): no slot can be claimed any more
+
+    /**
+     * Kinds of events, each with its own sampling and cap.
+     */
+    public enum Category {
+        SUBMIT, SUBMIT_RESP, DELIVER, DELIVER_RESP, RECEIPT, ERROR
+    }
+
+    /**
+     * Whether the PDU was received or sent.
+     */
+    public enum Direction {
+        IN, OUT
+    }
+
+    /**
+     * One event read back from a file.
+     */
+    public record Event(long timestamp, Category category, Direction direction, int commandStatus,
+                        int sequenceNumber, String session, byte[] data) {
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int mask;
+    private final ByteBuffer ring;
+    private final AtomicLongArray published; // sequence + 1 of the event in each slot, once written
+    private final AtomicLong head = new AtomicLong(); // next sequence to claim, with CLOSED once closed
+    private volatile long tail; // next sequence to write out
+    private volatile long end; // head when it was closed: the writer stops once it has written up to there
+    private final int[] sampleEvery = new int[Category.values().length];
+    private final AimdRateLimiter[] caps = new AimdRateLimiter[Category.values().length];
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private volatile boolean closed;
+    private final Thread writer;
+
+    /**
+     * Opens the file, truncating it, and starts the writer.
+     *
+     * @param file     file to write
+     * @param slots    events the ring holds, rounded up to a power of two
+     * @param sampling per category {@code CATEGORY:sampleEvery:maxPerSecond}, comma separated; a sampleEvery
+     *                 of 0 disables the category and a maxPerSecond of 0 leaves it uncapped
+     * @throws IOException If the file cannot be created
+     */
+    public PduEventLog(Path file, int slots, String sampling) throws IOException {
+        this.file = file;
+        int size = Integer.highestOneBit(Math.max(2, slots) - 1) << 1;
+        this.mask = size - 1;
+        this.ring = ByteBuffer.allocateDirect(size * SLOT);
+        this.published = new AtomicLongArray(size);
+        Arrays.fill(sampleEvery, 1);
+        for (String entry : sampling.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] fields = entry.trim().split(":");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Invalid sampling, expected category:sampleEvery:maxPerSecond: " + entry);
+            }
+            int category = Category.valueOf(fields[0]).ordinal();
+            sampleEvery[category] = Integer.parseInt(fields[1]);
+            double cap = Double.parseDouble(fields[2]);
+            caps[category] = cap > 0 ? AimdRateLimiter.fixed(cap, (int) Math.max(1, cap / 10)) : null;
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.write(ByteBuffer.wrap(MAGIC));
+        this.writer = Thread.ofVirtual().name("pdu-event-writer").start(this::drain);
+    }
+
+    /**
+     * Opens the event log of a client or server from the smpp.eventLog properties.
+     *
+     * @param name instance name; the file is {@code <directory>/<name>.pdulog}
+     * @throws IOException If the file cannot be created
+     */
+    public static PduEventLog open(String name) throws IOException {
+        return new PduEventLog(Path.of(PropertiesLoader.properties.eventLogDirectory, name + ".pdulog"),
+                PropertiesLoader.properties.eventLogSlots, PropertiesLoader.properties.eventLogSampling);
+    }
+
+    /**
+     * Records an event unless sampling, its cap or a full ring leaves it out. Never blocks.
+     *
+     * @param session        session name, truncated to 64 characters
+     * @param sequenceNumber sequence number of the PDU
+     * @param data           short message or other payload, may be null; truncated to what fits a slot
+     * @return true if the event was recorded
+     */
+    public boolean record(Category category, Direction direction, String session, int commandStatus,
+                          int sequenceNumber, byte[] data) {
+        int c = category.ordinal();
+        int every = sampleEvery[c];
+        if (closed || every <= 0 || (every > 1 && ThreadLocalRandom.current().nextInt(every) != 0)) {
+            sampledOut.increment();
+            return false;
+        }
+        AimdRateLimiter cap = caps[c];
+        if (cap != null && !cap.tryAcquire()) {
+            sampledOut.increment();
+            return false;
+        }
+
+        long sequence;
+        do {
+            sequence = head.get();
+            if ((sequence & CLOSED) != 0) {
+                // close() ran since the check above
+                sampledOut.increment();
+                return false;
+            }
+            if (sequence - tail > mask) {
+                dropped.increment();
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        int base = (int) (sequence & mask) * SLOT;
+        int position = base + 4;
+        ring.putLong(position, System.currentTimeMillis());
+        ring.put(position + 8, (byte) c);
+        ring.put(position + 9, (byte) direction.ordinal());
+        ring.putInt(position + 10, commandStatus);
+        ring.putInt(position + 14, sequenceNumber);
+        position += 18;
+        int sessionLength = session != null ? Math.min(session.length(), MAX_SESSION) : 0;
+        ring.put(position++, (byte) sessionLength);
+        for (int i = 0; i < sessionLength; i++) {
+            char ch = session.charAt(i);
+            ring.put(position++, ch < 0x80 ? (byte) ch : (byte) '?');
+        }
+        int dataLength = data != null ? Math.min(data.length, base + SLOT - position - 2) : 0;
+        ring.putShort(position, (short) dataLength);
+        position += 2;
+        if (dataLength > 0) {
+            ring.put(position, data, 0, dataLength);
+            position += dataLength;
+        }
+        ring.putInt(base, position - base - 4);
+        // Ordered write: the writer sees the slot's bytes once it sees this
+        published.lazySet((int) (sequence & mask), sequence + 1);
+        return true;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return Events lost because the ring was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Events left out by sampling or a category cap
+     */
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    /**
+     * Writes out what was recorded and closes the file.
+     */
+    @Override
+    public void close() {
+        // Claims and close are ordered on head, so every claimed slot is written out before the writer stops
+        long sequence;
+        do {
+            sequence = head.get();
+        } while ((sequence & CLOSED) == 0 && !head.compareAndSet(sequence, sequence | CLOSED));
+        end = sequence & ~CLOSED;
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close PDU event log {}", file, e);
+        }
+        logger.info("PDU event log {} closed: written={} dropped={} sampledOut={}", file, getWritten(),
+                getDropped(), getSampledOut());
+    }
+
+    /**
+     * Reads an event log file.
+     *
+     * @param events receives each event in order; a truncated last record is ignored
+     * @throws IOException If the file cannot be read or is not an event log
+     */
+    public static void read(Path path, Consumer<Event> events) throws IOException {
+        Category[] categories = Category.values();
+        Direction[] directions = Direction.values();
+        try (InputStream input = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(input))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a PDU event log: " + path);
+            }
+            while (true) {
+                byte[] record;
+                try {
+                    record = new byte[in.readInt()];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    return;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                long timestamp = buffer.getLong();
+                Category category = categories[buffer.get()];
+                Direction direction = directions[buffer.get()];
+                int commandStatus = buffer.getInt();
+                int sequenceNumber = buffer.getInt();
+                byte[] session = new byte[buffer.get()];
+                buffer.get(session);
+                byte[] data = new byte[buffer.getShort()];
+                buffer.get(data);
+                events.accept(new Event(timestamp, category, direction, commandStatus, sequenceNumber,
+                        new String(session, StandardCharsets.US_ASCII), data));
+            }
+        }
+    }
+
+    // Writer thread: copies published slots, in order, into batches for the file
+    private void drain() {
+        ByteBuffer batch = ByteBuffer.allocateDirect(BATCH);
+        ByteBuffer view = ring.duplicate();
+        long next = tail;
+        while (true) {
+            boolean finishing = closed;
+            int count = 0;
+            while (published.get((int) (next & mask)) == next + 1 && batch.remaining() >= SLOT) {
+                int base = (int) (next & mask) * SLOT;
+                int length = view.getInt(base) + 4;
+                view.limit(base + length).position(base);
+                batch.put(view);
+                view.clear();
+                next++;
+                count++;
+            }
+            // Frees the copied slots for producers
+            tail = next;
+            if (batch.position() > 0 && (count == 0 || batch.remaining() < SLOT)) {
+                write(batch);
+            }
+            if (count == 0) {
+                if (finishing && next == end) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK);
+            } else {
+                written.add(count);
+            }
+        }
+    }
+
+    private void write(ByteBuffer batch) {
+        batch.flip();
+        try {
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+        } catch (IOException e) {
+            logger.error("Unable to write PDU event log {}", file, e);
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,73 @@
+package org.alpha.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Prints a {@link PduEventLog} file as text, one event per line, with the payload as ISO-8859-1 and
+ * non-printable bytes escaped.
+ * <p>
+ * Usage: {@code PduEventLogPrinter <file> [CATEGORY,...]}
+ */
+public class PduEventLogPrinter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: PduEventLogPrinter <file> [CATEGORY,...]");
+            System.exit(1);
+        }
+        Set<PduEventLog.Category> categories = EnumSet.allOf(PduEventLog.Category.class);
+        if (args.length > 1) {
+            categories.clear();
+            for (String name : args[1].split(",")) {
+                categories.add(PduEventLog.Category.valueOf(name.trim()));
+            }
+        }
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        long[] count = new long[1];
+        PduEventLog.read(Path.of(args[0]), event -> {
+            if (categories.contains(event.category())) {
+                out.println(format(event));
+                count[0]++;
+            }
+        });
+        out.flush();
+        System.err.println(count[0] + " events");
+    }
+
+    /**
+     * @return e.g. {@code 2026-01-01T10:00:00.123Z IN  SUBMIT session=client.alpha.000 seq=7 status=0x00000000 "Hello"}
+     */
+    static String format(PduEventLog.Event event) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(Instant.ofEpochMilli(event.timestamp())).append(' ')
+                .append(String.format("%-3s", event.direction())).append(' ')
+                .append(event.category())
+                .append(" session=").append(event.session())
+                .append(" seq=").append(event.sequenceNumber())
+                .append(" status=0x").append(String.format("%08x", event.commandStatus()));
+        if (event.data().length > 0) {
+            sb.append(" \"");
+            for (byte b : event.data()) {
+                int c = b & 0xFF;
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append((char) c);
+                } else if (c >= 0x20 && c != 0x7F) {
+                    sb.append((char) c);
+                } else {
+                    sb.append(String.format("\\x%02x", c));
+                }
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+}
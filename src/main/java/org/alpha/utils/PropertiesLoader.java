@@ -46,6 +46,25 @@ public class PropertiesLoader {
         public static final boolean nonBlockingSocketsEnabled = get("smpp.server.nonBlockingSocketsEnabled", Boolean.class);
         public static final boolean sessionCountersEnabled = get("smpp.server.sessionCountersEnabled", Boolean.class);
         public static final boolean jmxEnabled = get("smpp.server.jmxEnabled", Boolean.class);
+        public static final int nodeId = get("smpp.server.nodeId", Integer.class);
+        public static final String messageIdFormat = get("smpp.server.messageIdFormat", String.class);
+        public static final String dlrDelayDistribution = get("smpp.server.dlrDelayDistribution", String.class);
+        public static final long dlrDelayMedian = get("smpp.server.dlrDelayMedian", Long.class);
+        public static final double dlrDelaySigma = get("smpp.server.dlrDelaySigma", Double.class);
+        public static final long dlrDelayMax = get("smpp.server.dlrDelayMax", Long.class);
+        public static final String dlrStatusMix = get("smpp.server.dlrStatusMix", String.class);
+        public static final int outboxCapacity = get("smpp.server.outboxCapacity", Integer.class);
+        public static final long outboxWindowWaitTimeout = get("smpp.server.outboxWindowWaitTimeout", Long.class);
+        public static final double outboxMaxTps = get("smpp.server.outboxMaxTps", Double.class);
+        public static final String storeDirectory = get("smpp.server.storeDirectory", String.class);
+        public static final int storeSegmentSize = get("smpp.server.storeSegmentSize", Integer.class);
+        public static final double storeReplayTps = get("smpp.server.storeReplayTps", Double.class);
+        public static final double systemTps = get("smpp.server.systemTps", Double.class);
+        public static final double bindTps = get("smpp.server.bindTps", Double.class);
+        public static final long dailyQuota = get("smpp.server.dailyQuota", Long.class);
+        public static final String limits = get("smpp.server.limits", String.class);
+        public static final String routing = get("smpp.server.routing", String.class);
+        public static final int metricsPort = get("smpp.server.metricsPort", Integer.class);
         public static final String clientHost = get("smpp.client.host", String.class);
         public static final int clientPort = get("smpp.client.port", Integer.class);
         public static final String clientSystemId = get("smpp.client.systemId", String.class);
@@ -54,8 +73,36 @@ public class PropertiesLoader {
         public static final long clientRequestExpiryTimeout = get("smpp.client.requestExpiryTimeout", Long.class);
         public static final long clientWindowMonitorInterval = get("smpp.client.windowMonitorInterval", Long.class);
         public static final long clientEnquireLinkTimeout = get("smpp.client.enquireLinkTimeout", Long.class);
+        public static final long clientEnquireLinkInterval = get("smpp.client.enquireLinkInterval", Long.class);
+        public static final boolean clientWarmStandby = get("smpp.client.warmStandby", Boolean.class);
         public static final int clientSubmitTimeout = get("smpp.client.submitTimeout", Integer.class);
         public static final int clientUnbindTimeout = get("smpp.client.unbindTimeout", Integer.class);
+        public static final int clientBindCount = get("smpp.client.bindCount", Integer.class);
+        public static final double clientMaxTps = get("smpp.client.maxTps", Double.class);
+        public static final double clientMinTps = get("smpp.client.minTps", Double.class);
+        public static final double clientTpsIncreasePerSecond = get("smpp.client.tpsIncreasePerSecond", Double.class);
+        public static final boolean clientLatin1Allowed = get("smpp.client.latin1Allowed", Boolean.class);
+        public static final String clientConcatenation = get("smpp.client.concatenation", String.class);
+        public static final int clientRetryMaxAttempts = get("smpp.client.retryMaxAttempts", Integer.class);
+        public static final long clientRetryInitialBackoff = get("smpp.client.retryInitialBackoff", Long.class);
+        public static final long clientRetryMaxBackoff = get("smpp.client.retryMaxBackoff", Long.class);
+        public static final double clientRetryTps = get("smpp.client.retryTps", Double.class);
+        public static final int clientDlrExpectedPending = get("smpp.client.dlrExpectedPending", Integer.class);
+        public static final long clientDlrTtl = get("smpp.client.dlrTtl", Long.class);
+        public static final int clientMetricsPort = get("smpp.client.metricsPort", Integer.class);
+        public static final String loadMode = get("smpp.load.mode", String.class);
+        public static final String loadProfile = get("smpp.load.profile", String.class);
+        public static final double loadStartTps = get("smpp.load.startTps", Double.class);
+        public static final double loadTargetTps = get("smpp.load.targetTps", Double.class);
+        public static final long loadDuration = get("smpp.load.duration", Long.class);
+        public static final long loadWarmup = get("smpp.load.warmup", Long.class);
+        public static final int loadSteps = get("smpp.load.steps", Integer.class);
+        public static final long loadSpikeDuration = get("smpp.load.spikeDuration", Long.class);
+        public static final int loadConcurrency = get("smpp.load.concurrency", Integer.class);
+        public static final int loadBindCount = get("smpp.load.bindCount", Integer.class);
+        public static final String eventLogDirectory = get("smpp.eventLog.directory", String.class);
+        public static final int eventLogSlots = get("smpp.eventLog.slots", Integer.class);
+        public static final String eventLogSampling = get("smpp.eventLog.sampling", String.class);
     }
 
     /**
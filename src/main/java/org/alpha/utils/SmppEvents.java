@@ -0,0 +1,144 @@
+package org.alpha.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events of the PDU lifecycle, to line SMPP latency up with GC, safepoints and
+ * thread activity in the same recording.
+ * <p>
+ * All are disabled by default: when they are, {@code begin()}, {@code end()} and {@code shouldCommit()}
+ * cost next to nothing once JIT-compiled and fields are only filled in for events that will be written.
+ * Enable them with the {@code smpp.jfc} settings shipped in the resources, e.g.
+ * {@code -XX:StartFlightRecording:settings=default,settings=smpp.jfc,filename=smpp.jfr}, or one by one
+ * with {@code +org.alpha.smpp.WindowAcquire#enabled=true}.
+ */
+public final class SmppEvents {
+
+    private SmppEvents() {
+    }
+
+    /**
+     * Wait for a free slot of the send window, writing the PDU included.
+     */
+    @Name("org.alpha.smpp.WindowAcquire")
+    @Label("Window Acquire")
+    @Category("SMPP")
+    @Description("Wait for a send window slot and write of a request PDU")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class WindowAcquire extends Event {
+        @Label("PDU")
+        public String pdu;
+        @Label("Sequence Number")
+        public int sequenceNumber;
+        @Label("System ID")
+        public String systemId;
+        @Label("Command Status")
+        @Description("0, or -1 if the PDU could not be written")
+        public int commandStatus;
+    }
+
+    /**
+     * Building the submit_sm of one message, its concatenated parts included.
+     */
+    @Name("org.alpha.smpp.Encode")
+    @Label("Encode")
+    @Category("SMPP")
+    @Description("Encoding of a message text into submit_sm parts")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Encode extends Event {
+        @Label("Characters")
+        public int length;
+        @Label("Parts")
+        public int parts;
+    }
+
+    /**
+     * Handling of a request by the server, up to the response returned to the session.
+     */
+    @Name("org.alpha.smpp.Handler")
+    @Label("Handler")
+    @Category("SMPP")
+    @Description("Request handling on the session's thread")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Handler extends Event {
+        @Label("Sequence Number")
+        public int sequenceNumber;
+        @Label("System ID")
+        public String systemId;
+        @Label("Command Status")
+        @Description("Status of the response, or -1 if it is sent later by an offloaded stage")
+        public int commandStatus;
+    }
+
+    /**
+     * One stage of the server's submit_sm pipeline.
+     */
+    @Name("org.alpha.smpp.Stage")
+    @Label("Submit Stage")
+    @Category("SMPP")
+    @Description("One stage of the submit_sm pipeline")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Stage extends Event {
+        @Label("Stage")
+        public String stage;
+        @Label("Offloaded")
+        public boolean offloaded;
+        @Label("Sequence Number")
+        public int sequenceNumber;
+        @Label("System ID")
+        public String systemId;
+        @Label("Command Status")
+        public int commandStatus;
+    }
+
+    /**
+     * A response sent (server) or received (client), with the time since the request.
+     */
+    @Name("org.alpha.smpp.Response")
+    @Label("Response")
+    @Category("SMPP")
+    @Description("submit_sm_resp sent or received")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Response extends Event {
+        @Label("Sequence Number")
+        public int sequenceNumber;
+        @Label("System ID")
+        public String systemId;
+        @Label("Command Status")
+        public int commandStatus;
+        @Label("Latency")
+        @Description("From the request being sent (client) or received (server)")
+        @Timespan(Timespan.NANOSECONDS)
+        public long latency;
+    }
+
+    /**
+     * Building and routing of a simulated delivery receipt.
+     */
+    @Name("org.alpha.smpp.Receipt")
+    @Label("Delivery Receipt")
+    @Category("SMPP")
+    @Description("Delivery receipt built and handed to a session or the store")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class Receipt extends Event {
+        @Label("Message ID")
+        public String messageId;
+        @Label("System ID")
+        public String systemId;
+        @Label("Status")
+        public String status;
+    }
+}
@@ -0,0 +1,338 @@
+package org.alpha.utils;
+
+import java.util.Arrays;
+
+/**
+ * Table-driven text encoder for short messages: GSM 03.38 default alphabet (with the extension table),
+ * Latin-1 and UCS-2. Encoding writes straight into a caller supplied array and never allocates.
+ * <p>
+ * {@link #select(CharSequence, boolean)} picks the encoding that needs the fewest segments among those
+ * able to carry every character: GSM7 when all are in the default alphabet or extension table, Latin-1
+ * when all are below 0x100 and the SMSC accepts data_coding 0x03, UCS-2 otherwise; GSM7 wins a tie.
+ * GSM7 is written unpacked (one septet per octet), which is how SMPP carries data_coding 0x00; segment
+ * sizes are counted in septets as they will be on the air interface.
+ */
+public final class SmsEncoder {
+    private static final char ESCAPE = 0x1B;
+    private static final int UNSUPPORTED = -1;
+    private static final int EXTENDED = 0x100; // flag: escape + code from the extension table
+
+    // GSM 03.38 default alphabet, indexed by septet value (0x1B is the escape to the extension table)
+    private static final String GSM_BASIC =
+            "@£$¥èéùìòÇ\nØø\rÅå"
+            + "Δ_ΦΓΛΩΠΨΣΘΞ\u001BÆæßÉ"
+            + " !\"#¤%&'()*+,-./"
+            + "0123456789:;<=>?"
+            + "¡ABCDEFGHIJKLMNO"
+            + "PQRSTUVWXYZÄÖÑÜ§"
+            + "¿abcdefghijklmno"
+            + "pqrstuvwxyzäöñüà";
+
+    // GSM 03.38 extension table: character, septet value after the escape
+    private static final char[][] GSM_EXTENSION = {
+            {'\f', 0x0A}, {'^', 0x14}, {'{', 0x28}, {'}', 0x29}, {'\\', 0x2F},
+            {'[', 0x3C}, {'~', 0x3D}, {']', 0x3E}, {'|', 0x40}, {'€', 0x65}
+    };
+
+    // char -> septet for the Latin and Greek ranges the alphabet uses; the euro sign is handled apart
+    private static final short[] GSM_TABLE = new short[0x400];
+    private static final short GSM_EURO = (short) (EXTENDED | 0x65);
+
+    static {
+        Arrays.fill(GSM_TABLE, (short) UNSUPPORTED);
+        for (int septet = 0; septet < GSM_BASIC.length(); septet++) {
+            char c = GSM_BASIC.charAt(septet);
+            if (c != ESCAPE) {
+                GSM_TABLE[c] = (short) septet;
+            }
+        }
+        for (char[] entry : GSM_EXTENSION) {
+            if (entry[0] < GSM_TABLE.length) {
+                GSM_TABLE[entry[0]] = (short) (EXTENDED | entry[1]);
+            }
+        }
+    }
+
+    /**
+     * Encodings with their data_coding value and segment capacities in characters (septets for GSM7).
+     */
+    public enum Encoding {
+        GSM7((byte) 0x00, 160, 153),
+        LATIN1((byte) 0x03, 140, 134),
+        UCS2((byte) 0x08, 70, 67);
+
+        private final byte dataCoding;
+        private final int singleCapacity;
+        private final int concatenatedCapacity;
+
+        Encoding(byte dataCoding, int singleCapacity, int concatenatedCapacity) {
+            this.dataCoding = dataCoding;
+            this.singleCapacity = singleCapacity;
+            this.concatenatedCapacity = concatenatedCapacity;
+        }
+
+        public byte getDataCoding() {
+            return dataCoding;
+        }
+
+        /**
+         * @return Characters (septets for GSM7) that fit in a single unsegmented message
+         */
+        public int getSingleCapacity() {
+            return singleCapacity;
+        }
+
+        /**
+         * @return Characters (septets for GSM7) per part once a 6-byte concatenation UDH is present
+         */
+        public int getConcatenatedCapacity() {
+            return concatenatedCapacity;
+        }
+
+        /**
+         * @param dataCoding data_coding value of a PDU
+         * @return The matching encoding; unknown values are treated as GSM7, the SMSC default
+         */
+        public static Encoding fromDataCoding(byte dataCoding) {
+            return switch (dataCoding) {
+                case 0x03 -> LATIN1;
+                case 0x08 -> UCS2;
+                default -> GSM7;
+            };
+        }
+    }
+
+    private SmsEncoder() {
+    }
+
+    /**
+     * Chooses the encoding that yields the fewest segments for the text.
+     *
+     * @param text          message text
+     * @param latin1Allowed whether the SMSC accepts data_coding 0x03
+     * @return GSM7, LATIN1 or UCS2
+     */
+    public static Encoding select(CharSequence text, boolean latin1Allowed) {
+        boolean gsm = true;
+        boolean latin1 = latin1Allowed;
+        for (int i = 0; i < text.length() && (gsm || latin1); i++) {
+            char c = text.charAt(i);
+            gsm &= gsmCode(c) != UNSUPPORTED;
+            latin1 &= c <= 0xFF;
+        }
+        if (gsm && latin1) {
+            // Escape sequences can make GSM7 the longer of the two
+            return countSegments(text, Encoding.GSM7) <= countSegments(text, Encoding.LATIN1)
+                    ? Encoding.GSM7 : Encoding.LATIN1;
+        }
+        return gsm ? Encoding.GSM7 : latin1 ? Encoding.LATIN1 : Encoding.UCS2;
+    }
+
+    /**
+     * @return true if every character is in the GSM 03.38 default alphabet or extension table
+     */
+    public static boolean isGsm7(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (gsmCode(text.charAt(i)) == UNSUPPORTED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param c        character
+     * @param encoding target encoding
+     * @return Octets the character takes in short_message (2 for GSM7 extension characters), or -1 if
+     * the encoding cannot represent it
+     */
+    public static int encodedLength(char c, Encoding encoding) {
+        return switch (encoding) {
+            case GSM7 -> {
+                int code = gsmCode(c);
+                yield code == UNSUPPORTED ? UNSUPPORTED : (code & EXTENDED) != 0 ? 2 : 1;
+            }
+            case LATIN1 -> c <= 0xFF ? 1 : UNSUPPORTED;
+            case UCS2 -> 2;
+        };
+    }
+
+    /**
+     * @return Octets the text takes in short_message with the given encoding
+     * @throws IllegalArgumentException If a character cannot be represented
+     */
+    public static int encodedLength(CharSequence text, Encoding encoding) {
+        return encodedLength(text, 0, text.length(), encoding);
+    }
+
+    /**
+     * @return Octets {@code text[start, end)} takes in short_message with the given encoding
+     * @throws IllegalArgumentException If a character cannot be represented
+     */
+    public static int encodedLength(CharSequence text, int start, int end, Encoding encoding) {
+        if (encoding == Encoding.UCS2) {
+            return (end - start) * 2;
+        }
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            int octets = encodedLength(text.charAt(i), encoding);
+            if (octets == UNSUPPORTED) {
+                throw unsupported(text.charAt(i), encoding);
+            }
+            length += octets;
+        }
+        return length;
+    }
+
+    /**
+     * Encodes the text into {@code dest} starting at {@code offset}.
+     *
+     * @return Number of octets written
+     * @throws IllegalArgumentException       If a character cannot be represented
+     * @throws ArrayIndexOutOfBoundsException If {@code dest} is too small
+     */
+    public static int encode(CharSequence text, Encoding encoding, byte[] dest, int offset) {
+        return encode(text, 0, text.length(), encoding, dest, offset);
+    }
+
+    /**
+     * Encodes {@code text[start, end)} into {@code dest} starting at {@code offset}.
+     *
+     * @return Number of octets written
+     */
+    public static int encode(CharSequence text, int start, int end, Encoding encoding, byte[] dest, int offset) {
+        int position = offset;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            switch (encoding) {
+                case GSM7 -> {
+                    int code = gsmCode(c);
+                    if (code == UNSUPPORTED) {
+                        throw unsupported(c, encoding);
+                    }
+                    if ((code & EXTENDED) != 0) {
+                        dest[position++] = ESCAPE;
+                    }
+                    dest[position++] = (byte) (code & 0x7F);
+                }
+                case LATIN1 -> {
+                    if (c > 0xFF) {
+                        throw unsupported(c, encoding);
+                    }
+                    dest[position++] = (byte) c;
+                }
+                case UCS2 -> {
+                    dest[position++] = (byte) (c >>> 8);
+                    dest[position++] = (byte) c;
+                }
+            }
+        }
+        return position - offset;
+    }
+
+    /**
+     * Counts the segments the text needs, never splitting a GSM7 escape sequence or a UTF-16 surrogate
+     * pair across two parts.
+     *
+     * @return 1 for a single message, otherwise the number of concatenated parts
+     */
+    public static int countSegments(CharSequence text, Encoding encoding) {
+        int units = units(text, 0, text.length(), encoding);
+        if (units <= encoding.getSingleCapacity()) {
+            return 1;
+        }
+        int segments = 0;
+        int i = 0;
+        while (i < text.length()) {
+            i = segmentEnd(text, i, encoding, encoding.getConcatenatedCapacity());
+            segments++;
+        }
+        return segments;
+    }
+
+    /**
+     * Finds where a part starting at {@code start} ends.
+     *
+     * @param capacity units (septets or characters) available in the part
+     * @return Exclusive end index of the part
+     */
+    public static int segmentEnd(CharSequence text, int start, Encoding encoding, int capacity) {
+        int used = 0;
+        int i = start;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int cost = encoding == Encoding.GSM7 ? encodedLength(c, encoding) : 1;
+            int chars = 1;
+            if (encoding == Encoding.UCS2 && Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                cost = 2;
+                chars = 2;
+            }
+            if (used + cost > capacity) {
+                break;
+            }
+            used += cost;
+            i += chars;
+        }
+        return i;
+    }
+
+    /**
+     * Decodes short_message bytes according to a data_coding value; used for logging and inspection.
+     */
+    public static String decode(byte[] data, byte dataCoding) {
+        Encoding encoding = Encoding.fromDataCoding(dataCoding);
+        StringBuilder text = new StringBuilder(data.length);
+        for (int i = 0; i < data.length; i++) {
+            switch (encoding) {
+                case GSM7 -> {
+                    int septet = data[i] & 0x7F;
+                    if (septet == ESCAPE && i + 1 < data.length) {
+                        text.append(gsmExtensionChar(data[++i] & 0x7F));
+                    } else {
+                        text.append(GSM_BASIC.charAt(septet));
+                    }
+                }
+                case LATIN1 -> text.append((char) (data[i] & 0xFF));
+                case UCS2 -> {
+                    if (i + 1 < data.length) {
+                        text.append((char) (((data[i] & 0xFF) << 8) | (data[++i] & 0xFF)));
+                    }
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    // Units counted against segment capacity: septets for GSM7, characters otherwise
+    private static int units(CharSequence text, int start, int end, Encoding encoding) {
+        if (encoding != Encoding.GSM7) {
+            return end - start;
+        }
+        int units = 0;
+        for (int i = start; i < end; i++) {
+            units += encodedLength(text.charAt(i), encoding);
+        }
+        return units;
+    }
+
+    private static int gsmCode(char c) {
+        if (c < GSM_TABLE.length) {
+            return GSM_TABLE[c];
+        }
+        return c == '€' ? GSM_EURO : UNSUPPORTED;
+    }
+
+    private static char gsmExtensionChar(int septet) {
+        for (char[] entry : GSM_EXTENSION) {
+            if (entry[1] == septet) {
+                return entry[0];
+            }
+        }
+        return ' ';
+    }
+
+    private static IllegalArgumentException unsupported(char c, Encoding encoding) {
+        return new IllegalArgumentException(String.format("Character U+%04X cannot be encoded as %s", (int) c, encoding));
+    }
+}
@@ -0,0 +1,161 @@
+package org.alpha.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel holding millions of timers without an object per timer.
+ * <p>
+ * Time is cut into ticks; a timer goes into bucket {@code deadlineTick % wheelSize}, and timers further
+ * away than one rotation simply wait in their bucket until their round comes. Each bucket is one growable
+ * {@code long[]} of fixed-width records (deadline plus three payload longs, 32 bytes per timer), so
+ * scheduling is O(1), memory per pending timer is constant and the garbage collector has nothing to trace.
+ * <p>
+ * Timers may be scheduled from any thread; {@link #advance(long, Expiry)} is driven by a single thread
+ * and fires expired timers on it, at most one tick late. Expired timers are taken out of their bucket under
+ * its lock and fired after it is released, so a slow {@link Expiry} never holds up {@code schedule()}.
+ */
+public class TimingWheel {
+    private static final int RECORD = 4; // longs per timer: deadline, a, b, c
+    private static final int INITIAL_CAPACITY = 16; // timers per bucket before the first growth
+
+    /**
+     * Receives the payload of each expired timer.
+     */
+    public interface Expiry {
+        void expired(long a, long b, long c);
+    }
+
+    private final long tickMillis;
+    private final int mask;
+    private final Bucket[] buckets;
+    private final AtomicLong size = new AtomicLong();
+    private final Due due = new Due(); // payloads of the tick being fired; used by the advancing thread only
+    private volatile long currentTick; // last tick processed
+
+    /**
+     * @param tickMillis  resolution of the wheel
+     * @param wheelSize   number of buckets, rounded up to a power of two
+     * @param startMillis current time (epoch ms)
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.tickMillis = tickMillis;
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.mask = size - 1;
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Schedules a timer; a deadline already past fires on the next tick.
+     *
+     * @param deadline expiry time (epoch ms)
+     */
+    public void schedule(long deadline, long a, long b, long c) {
+        while (true) {
+            long tick = Math.max(deadline / tickMillis, currentTick + 1);
+            Bucket bucket = buckets[(int) tick & mask];
+            synchronized (bucket) {
+                // The ticker claims a tick under its bucket's lock, so this tick is still ahead of it
+                if (tick > currentTick) {
+                    bucket.add(deadline, a, b, c);
+                    size.incrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes every tick up to {@code now}, firing the timers that expired.
+     *
+     * @param now     current time (epoch ms)
+     * @param expiry  receives expired timers, on the calling thread
+     * @return Number of timers fired
+     */
+    public int advance(long now, Expiry expiry) {
+        long target = now / tickMillis;
+        int fired = 0;
+        while (currentTick < target) {
+            long tick = currentTick + 1;
+            Bucket bucket = buckets[(int) tick & mask];
+            due.count = 0;
+            synchronized (bucket) {
+                currentTick = tick;
+                bucket.expire((tick + 1) * tickMillis, due);
+            }
+            size.addAndGet(-due.count);
+            long[] payloads = due.payloads;
+            for (int i = 0; i < due.count; i++) {
+                int base = i * 3;
+                expiry.expired(payloads[base], payloads[base + 1], payloads[base + 2]);
+            }
+            fired += due.count;
+        }
+        return fired;
+    }
+
+    /**
+     * @return Number of pending timers
+     */
+    public long size() {
+        return size.get();
+    }
+
+    // Records [deadline, a, b, c], guarded by the bucket's monitor
+    private static final class Bucket {
+        private long[] records = new long[INITIAL_CAPACITY * RECORD];
+        private int count;
+
+        void add(long deadline, long a, long b, long c) {
+            if ((count + 1) * RECORD > records.length) {
+                records = Arrays.copyOf(records, records.length * 2);
+            }
+            int base = count++ * RECORD;
+            records[base] = deadline;
+            records[base + 1] = a;
+            records[base + 2] = b;
+            records[base + 3] = c;
+        }
+
+        // Moves records due before the end of the tick to due and compacts the others in place
+        void expire(long tickEnd, Due due) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int base = i * RECORD;
+                if (records[base] < tickEnd) {
+                    due.add(records[base + 1], records[base + 2], records[base + 3]);
+                } else {
+                    if (kept != i) {
+                        System.arraycopy(records, base, records, kept * RECORD, RECORD);
+                    }
+                    kept++;
+                }
+            }
+            count = kept;
+            // Give memory back after a burst
+            if (records.length > INITIAL_CAPACITY * RECORD && count * RECORD * 4 < records.length) {
+                records = Arrays.copyOf(records, Math.max(INITIAL_CAPACITY * RECORD, records.length / 2));
+            }
+        }
+    }
+
+    // Payloads [a, b, c] of the timers expiring in one tick; grows to the largest tick seen
+    private static final class Due {
+        private long[] payloads = new long[INITIAL_CAPACITY * 3];
+        private int count;
+
+        void add(long a, long b, long c) {
+            if ((count + 1) * 3 > payloads.length) {
+                payloads = Arrays.copyOf(payloads, payloads.length * 2);
+            }
+            int base = count++ * 3;
+            payloads[base] = a;
+            payloads[base + 1] = b;
+            payloads[base + 2] = c;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.PduAsyncResponse;
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.pdu.GenericNack;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import org.alpha.utils.LatencyHistogram;
+import org.alpha.utils.LatencyRecorder;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncSubmitEngineTest {
+    private static final long DELAY = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final List<PduRequest> sent = new ArrayList<>();
+    private final AsyncSubmitEngine.CompletionHandler handler = new AsyncSubmitEngine.CompletionHandler();
+    private final AsyncSubmitEngine engine = new AsyncSubmitEngine(session(), handler, 1000);
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    @Test
+    void latencyRunsFromTheIntendedStart() {
+        engine.setLatencyScope(recorder.scope("s1", "h:1"));
+        SubmitSm submit = new SubmitSm();
+
+        engine.submit(submit, System.nanoTime() - DELAY);
+        respond(submit, submit.createResponse());
+
+        // The 50 ms the submit spent behind schedule count as latency
+        assertTrue(submitResp().getValueAtPercentile(100) >= DELAY);
+    }
+
+    @Test
+    void latencyRunsFromTheSendWithoutAnIntendedStart() {
+        engine.setLatencyScope(recorder.scope("s1", "h:1"));
+        SubmitSm submit = new SubmitSm();
+
+        engine.submit(submit);
+        respond(submit, submit.createResponse());
+
+        assertEquals(1, submitResp().getCount());
+        assertTrue(submitResp().getValueAtPercentile(100) < DELAY);
+    }
+
+    @Test
+    void responseCallbackRunsBeforeTheFutureCompletes() {
+        SubmitSm submit = new SubmitSm();
+        boolean[] doneInCallback = new boolean[1];
+        CompletableFuture<?>[] future = new CompletableFuture<?>[1];
+
+        future[0] = engine.submit(submit, 0, resp -> doneInCallback[0] = future[0].isDone());
+        SubmitSmResp resp = submit.createResponse();
+        respond(submit, resp);
+
+        assertFalse(doneInCallback[0]);
+        assertSame(resp, future[0].join());
+    }
+
+    @Test
+    void genericNackCompletesWithItsStatus() {
+        SubmitSm submit = new SubmitSm();
+        CompletableFuture<SubmitSmResp> future = engine.submit(submit);
+        GenericNack nack = new GenericNack();
+        nack.setCommandStatus(SmppConstants.STATUS_INVCMDID);
+
+        respond(submit, nack);
+
+        assertEquals(SmppConstants.STATUS_INVCMDID, future.join().getCommandStatus());
+    }
+
+    private LatencyHistogram.Snapshot submitResp() {
+        return recorder.histogram("submit->resp session=s1").snapshot();
+    }
+
+    // What the session's I/O thread does when the response arrives
+    private void respond(PduRequest request, PduResponse response) {
+        assertSame(request, sent.get(sent.size() - 1));
+        handler.fireExpectedPduResponseReceived((PduAsyncResponse) Proxy.newProxyInstance(
+                PduAsyncResponse.class.getClassLoader(), new Class<?>[]{PduAsyncResponse.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getRequest" -> request;
+                    case "getResponse" -> response;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                }));
+    }
+
+    // Session accepting every submit into its window at once
+    private SmppSession session() {
+        SmppSessionConfiguration configuration = new SmppSessionConfiguration();
+        configuration.setSystemId("esme");
+        return (SmppSession) Proxy.newProxyInstance(SmppSession.class.getClassLoader(), new Class<?>[]{SmppSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getConfiguration" -> configuration;
+                    case "sendRequestPdu" -> {
+                        sent.add((PduRequest) args[0]);
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,78 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import org.alpha.utils.SmsEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessageSegmenterTest {
+    @Test
+    void gsm7PartsCarry153Septets() throws Exception {
+        List<SubmitSm> parts = new MessageSegmenter(MessageSegmenter.Mode.UDH_8BIT)
+                .split("a".repeat(200), SmsEncoder.Encoding.GSM7, SubmitSm::new);
+
+        assertEquals(2, parts.size());
+        assertEquals(6 + 153, parts.get(0).getShortMessage().length);
+        assertEquals(6 + 47, parts.get(1).getShortMessage().length);
+        byte[] header = parts.get(1).getShortMessage();
+        assertEquals(2, header[4]); // total
+        assertEquals(2, header[5]); // part number
+        assertEquals(parts.get(0).getShortMessage()[3], header[3]); // same reference
+        assertEquals(SmppConstants.ESM_CLASS_UDHI_MASK, parts.get(0).getEsmClass() & SmppConstants.ESM_CLASS_UDHI_MASK);
+    }
+
+    @Test
+    void sixteenBitReferenceCostsOneUnit() throws Exception {
+        MessageSegmenter segmenter = new MessageSegmenter(MessageSegmenter.Mode.UDH_16BIT);
+        List<SubmitSm> parts = segmenter.split("a".repeat(200), SmsEncoder.Encoding.GSM7, SubmitSm::new);
+
+        assertEquals(7 + 152, parts.get(0).getShortMessage().length);
+        assertEquals(152, segmenter.partCapacity(SmsEncoder.Encoding.GSM7));
+        assertEquals(133, segmenter.partCapacity(SmsEncoder.Encoding.LATIN1));
+        assertEquals(66, segmenter.partCapacity(SmsEncoder.Encoding.UCS2));
+    }
+
+    @Test
+    void ucs2PartsCarry67Characters() throws Exception {
+        List<SubmitSm> parts = new MessageSegmenter(MessageSegmenter.Mode.UDH_8BIT)
+                .split("я".repeat(100), SmsEncoder.Encoding.UCS2, SubmitSm::new);
+
+        assertEquals(2, parts.size());
+        assertEquals(6 + 67 * 2, parts.get(0).getShortMessage().length);
+        assertEquals(6 + 33 * 2, parts.get(1).getShortMessage().length);
+    }
+
+    @Test
+    void latin1PartsCarry134Characters() throws Exception {
+        List<SubmitSm> parts = new MessageSegmenter(MessageSegmenter.Mode.UDH_8BIT)
+                .split("é".repeat(300), SmsEncoder.Encoding.LATIN1, SubmitSm::new);
+
+        assertEquals(3, parts.size());
+        assertEquals(6 + 134, parts.get(0).getShortMessage().length);
+        assertEquals(6 + 300 - 2 * 134, parts.get(2).getShortMessage().length);
+    }
+
+    @Test
+    void sarPartsCarryTheReferenceInTlvs() throws Exception {
+        List<SubmitSm> parts = new MessageSegmenter(MessageSegmenter.Mode.SAR)
+                .split("a".repeat(200), SmsEncoder.Encoding.GSM7, SubmitSm::new);
+
+        assertEquals(153, parts.get(0).getShortMessage().length);
+        assertNotNull(parts.get(1).getOptionalParameter(SmppConstants.TAG_SAR_MSG_REF_NUM));
+        assertEquals(2, parts.get(1).getOptionalParameter(SmppConstants.TAG_SAR_SEGMENT_SEQNUM).getValue()[0]);
+    }
+
+    @Test
+    void moreThan255PartsAreRejected() {
+        MessageSegmenter segmenter = new MessageSegmenter(MessageSegmenter.Mode.UDH_8BIT);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> segmenter.split("a".repeat(153 * 255 + 1), SmsEncoder.Encoding.GSM7, SubmitSm::new));
+    }
+}
@@ -0,0 +1,155 @@
+package org.alpha.clients;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipientFileReaderTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsCsvLinesAndSkipsCommentsAndBlanks() throws Exception {
+        Path file = write("# header\n44555519205\n\n  44555519206,Hello there \r\n");
+        List<String[]> records = readAll(file, 0);
+        assertEquals(2, records.size());
+        assertEquals("44555519205", records.get(0)[0]);
+        assertNull(records.get(0)[1]);
+        assertEquals("44555519206", records.get(1)[0]);
+        assertEquals("Hello there", records.get(1)[1]);
+    }
+
+    @Test
+    void quotedCsvFieldKeepsCommasAndUnescapesQuotes() throws Exception {
+        Path file = write("44555519205,\"Hello, \"\"quoted\"\" there\"\n44555519206,\"\"\n");
+        List<String[]> records = readAll(file, 0);
+        assertEquals("Hello, \"quoted\" there", records.get(0)[1]);
+        assertEquals("", records.get(1)[1]);
+    }
+
+    @Test
+    void jsonEscapesAreDecoded() throws Exception {
+        Path file = write("{\"to\":\"44555519205\",\"text\":\"a\\\"b\\\\c\\nd\\u00e9\\t\"}\n"
+                + "{\"text\": \"no escapes\", \"to\": \"44555519206\"}\n");
+        List<String[]> records = readAll(file, 0);
+        assertEquals("44555519205", records.get(0)[0]);
+        assertEquals("a\"b\\c\ndé\t", records.get(0)[1]);
+        assertEquals("44555519206", records.get(1)[0]);
+        assertEquals("no escapes", records.get(1)[1]);
+    }
+
+    @Test
+    void unterminatedJsonStringIsRejected() throws Exception {
+        Path file = write("{\"to\":\"44555519205\",\"text\":\"Hello}\n");
+        try (RecipientFileReader reader = new RecipientFileReader(file, 0)) {
+            assertThrows(IOException.class, () -> reader.next(new RecipientFileReader.Recipient()));
+        }
+        Path trailingBackslash = write("{\"to\":\"44555519205\",\"text\":\"Hello\\\n");
+        try (RecipientFileReader reader = new RecipientFileReader(trailingBackslash, 0)) {
+            assertThrows(IOException.class, () -> reader.next(new RecipientFileReader.Recipient()));
+        }
+    }
+
+    @Test
+    void missingDestinationIsRejected() throws Exception {
+        Path file = write(",Hello\n");
+        try (RecipientFileReader reader = new RecipientFileReader(file, 0)) {
+            assertThrows(IOException.class, () -> reader.next(new RecipientFileReader.Recipient()));
+        }
+    }
+
+    @Test
+    void endOffsetsPointPastEachLine() throws Exception {
+        String first = "44555519205,one\n";
+        String second = "# skipped\n44555519206,two\n";
+        Path file = write(first + second + "44555519207");
+        try (RecipientFileReader reader = new RecipientFileReader(file, 0)) {
+            RecipientFileReader.Recipient recipient = new RecipientFileReader.Recipient();
+            assertTrue(reader.next(recipient));
+            assertEquals(first.length(), recipient.getEndOffset());
+            assertTrue(reader.next(recipient));
+            assertEquals(first.length() + second.length(), recipient.getEndOffset());
+            assertTrue(reader.next(recipient)); // last line without a newline
+            assertEquals("44555519207", recipient.getDestination());
+            assertFalse(reader.next(recipient));
+        }
+    }
+
+    @Test
+    void linesCrossingTheChunkBoundaryAreReadWhole() throws Exception {
+        StringBuilder content = new StringBuilder();
+        int index = 0;
+        while (content.length() < (1 << 20) + 4096) {
+            content.append(4455551000000L + index).append(',').append("text ").append(index).append('\n');
+            index++;
+        }
+        Path file = write(content.toString());
+        List<String[]> records = readAll(file, 0);
+        assertEquals(index, records.size());
+        for (int i = 0; i < index; i++) {
+            assertEquals(Long.toString(4455551000000L + i), records.get(i)[0]);
+            assertEquals("text " + i, records.get(i)[1]);
+        }
+    }
+
+    @Test
+    void resumesFromTheCheckpointedOffset() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            content.append(4455551000000L + i).append(",text ").append(i).append('\n');
+        }
+        Path file = write(content.toString());
+        Path checkpointFile = directory.resolve("campaign.checkpoint");
+
+        CampaignCheckpoint checkpoint = new CampaignCheckpoint(checkpointFile, 4);
+        try (RecipientFileReader reader = new RecipientFileReader(file, checkpoint.load())) {
+            RecipientFileReader.Recipient recipient = new RecipientFileReader.Recipient();
+            long[] seqs = new long[4];
+            for (int i = 0; i < 4; i++) {
+                assertTrue(reader.next(recipient));
+                seqs[i] = checkpoint.begin(recipient.getEndOffset());
+            }
+            // Out of order: the watermark only covers the first two until the third completes
+            checkpoint.complete(seqs[1]);
+            checkpoint.complete(seqs[0]);
+            checkpoint.complete(seqs[3]);
+            assertEquals(2, checkpoint.getInFlight()); // the completed fourth still waits behind the third
+            checkpoint.flush();
+        }
+
+        CampaignCheckpoint restarted = new CampaignCheckpoint(checkpointFile, 4);
+        List<String[]> rest = readAll(file, restarted.load());
+        assertEquals(8, rest.size());
+        assertEquals("4455551000002", rest.get(0)[0]);
+        assertEquals("text 9", rest.get(7)[1]);
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = Files.createTempFile(directory, "recipients", ".txt");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static List<String[]> readAll(Path file, long offset) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (RecipientFileReader reader = new RecipientFileReader(file, offset)) {
+            RecipientFileReader.Recipient recipient = new RecipientFileReader.Recipient();
+            while (reader.next(recipient)) {
+                records.add(new String[]{recipient.getDestination(), recipient.getText()});
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,44 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.type.SmppChannelException;
+import com.cloudhopper.smpp.type.SmppTimeoutException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+    private final RetryPolicy policy = new RetryPolicy(4, 1000, 10000, 2);
+
+    @Test
+    void backoffGrowsExponentiallyWithinTheJitter() {
+        for (int i = 0; i < 100; i++) {
+            assertBetween(800, 1200, policy.backoff(1));
+            assertBetween(1600, 2400, policy.backoff(2));
+            assertBetween(3200, 4800, policy.backoff(3));
+            // Capped at the maximum
+            assertBetween(8000, 12000, policy.backoff(10));
+        }
+    }
+
+    @Test
+    void attemptsAreBounded() {
+        assertTrue(policy.hasAttemptsLeft(3));
+        assertFalse(policy.hasAttemptsLeft(4));
+    }
+
+    @Test
+    void onlyTransientFailuresAreRetryable() {
+        assertTrue(policy.isRetryable(SmppConstants.STATUS_THROTTLED));
+        assertTrue(policy.isRetryable(SmppConstants.STATUS_MSGQFUL));
+        assertFalse(policy.isRetryable(SmppConstants.STATUS_INVDSTADR));
+        assertTrue(policy.isRetryable(new SmppTimeoutException("no response")));
+        assertTrue(policy.isRetryable(new SmppChannelException("closed")));
+        assertFalse(policy.isRetryable(new IllegalStateException()));
+    }
+
+    private static void assertBetween(long low, long high, long value) {
+        assertTrue(value >= low && value <= high, value + " not in [" + low + ", " + high + "]");
+    }
+}
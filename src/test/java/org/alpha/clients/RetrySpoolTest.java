@@ -0,0 +1,165 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.type.Address;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RetrySpoolTest {
+    @TempDir
+    Path directory;
+
+    private RetrySpool spool;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    @Test
+    void entriesComeBackInDueOrder() throws Exception {
+        spool = open();
+        spool.append(3, 1, 300, parts(3));
+        spool.append(1, 1, 100, parts(1));
+        spool.append(2, 1, 200, parts(2));
+        spool.append(4, 1, 200, parts(4));
+
+        assertNull(spool.poll(99));
+        assertEquals(1, spool.poll(100).getMessageId());
+        // Same due time: appended first, resent first
+        assertEquals(2, spool.poll(250).getMessageId());
+        assertEquals(4, spool.poll(250).getMessageId());
+        assertNull(spool.poll(250));
+        assertEquals(3, spool.poll(300).getMessageId());
+        assertEquals(4, spool.size());
+    }
+
+    @Test
+    void partsAreReadBackWithoutSequenceNumbers() throws Exception {
+        spool = open();
+        spool.append(7, 2, 0, parts(7, 8));
+
+        RetrySpool.Entry entry = spool.poll(0);
+        assertEquals(7, entry.getMessageId());
+        assertEquals(2, entry.getAttempt());
+        assertEquals(2, entry.getParts().size());
+        SubmitSm part = entry.getParts().get(1);
+        assertEquals("4470000008", part.getDestAddress().getAddress());
+        assertArrayEquals("part 8".getBytes(StandardCharsets.US_ASCII), part.getShortMessage());
+        assertFalse(part.hasSequenceNumberAssigned());
+    }
+
+    @Test
+    void entriesNotCompletedArePendingAfterReopen() throws Exception {
+        spool = open();
+        spool.append(1, 1, 0, parts(1));
+        spool.append(2, 1, 0, parts(2));
+        spool.append(3, 1, 0, parts(3));
+        spool.complete(spool.poll(0));
+        // Handed out but not completed when the process stopped: sent again (at least once)
+        spool.poll(0);
+        spool.close();
+
+        spool = new RetrySpool(directory.resolve("retry.spool"));
+        assertEquals(2, spool.open());
+        assertEquals(2, spool.poll(0).getMessageId());
+        assertEquals(3, spool.poll(0).getMessageId());
+    }
+
+    @Test
+    void truncatedTailIsCut() throws Exception {
+        spool = open();
+        spool.append(1, 1, 0, parts(1));
+        spool.append(2, 1, 0, parts(2));
+        spool.close();
+        Path file = directory.resolve("retry.spool");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        spool = new RetrySpool(file);
+        assertEquals(1, spool.open());
+        // The next record goes where the torn one was
+        spool.append(3, 1, 0, parts(3));
+        spool.close();
+        spool = new RetrySpool(file);
+        assertEquals(2, spool.open());
+        assertEquals(1, spool.poll(0).getMessageId());
+        assertEquals(3, spool.poll(0).getMessageId());
+    }
+
+    @Test
+    void corruptTailIsCut() throws Exception {
+        spool = open();
+        spool.append(1, 1, 0, parts(1));
+        long firstEnd = Files.size(directory.resolve("retry.spool"));
+        spool.append(2, 1, 0, parts(2));
+        spool.close();
+        Path file = directory.resolve("retry.spool");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // A byte of the second record's payload, so its crc no longer matches
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, firstEnd + 20);
+            b.put(0, (byte) ~b.get(0));
+            channel.write(b.flip(), firstEnd + 20);
+        }
+
+        spool = new RetrySpool(file);
+        assertEquals(1, spool.open());
+        assertEquals(firstEnd, Files.size(file));
+        assertNotNull(spool.poll(0));
+    }
+
+    @Test
+    void fileIsEmptiedOnceNothingIsPending() throws Exception {
+        spool = open();
+        spool.append(1, 1, 0, parts(1));
+        RetrySpool.Entry entry = spool.poll(0);
+        // A new attempt is appended before the old one is retired
+        spool.append(1, 2, 50, entry.getParts());
+        spool.complete(entry);
+        assertEquals(1, spool.size());
+
+        spool.complete(spool.poll(50));
+
+        assertEquals(0, spool.size());
+        assertEquals(0, Files.size(directory.resolve("retry.spool")));
+    }
+
+    private RetrySpool open() throws IOException {
+        RetrySpool opened = new RetrySpool(directory.resolve("retry.spool"));
+        assertEquals(0, opened.open());
+        return opened;
+    }
+
+    private static List<SubmitSm> parts(int... numbers) throws Exception {
+        SubmitSm[] parts = new SubmitSm[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            SubmitSm part = new SubmitSm();
+            part.setSourceAddress(new Address((byte) 0x03, (byte) 0x00, "40404"));
+            part.setDestAddress(new Address((byte) 0x01, (byte) 0x01, String.format("44700000%02d", numbers[i])));
+            part.setShortMessage(("part " + numbers[i]).getBytes(StandardCharsets.US_ASCII));
+            part.setSequenceNumber(numbers[i]);
+            parts[i] = part;
+        }
+        return List.of(parts);
+    }
+}
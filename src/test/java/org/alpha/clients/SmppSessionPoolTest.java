@@ -0,0 +1,166 @@
+package org.alpha.clients;
+
+import com.cloudhopper.commons.util.windowing.Window;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.SmppSessionHandler;
+import com.cloudhopper.smpp.impl.DefaultSmppClient;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmppSessionPoolTest {
+    private final List<FakeSession> sessions = new ArrayList<>();
+    private final ExecutorService redispatchExecutor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService monitorExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final FakeClient client = new FakeClient();
+    private Runnable onBind = () -> {
+    };
+    private SmppSessionPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close(0);
+        }
+        redispatchExecutor.shutdownNow();
+        monitorExecutor.shutdownNow();
+        client.destroy();
+    }
+
+    @Test
+    void submitGoesToTheBindWithTheFewestOutstanding() throws Exception {
+        start(3);
+        sessions.get(0).preload(2);
+        sessions.get(2).preload(1);
+
+        pool.submit(new SubmitSm());
+        assertEquals(1, sessions.get(1).sent.size());
+
+        // Binds 1 and 2 now tie at one outstanding; bind 0 stays the most loaded
+        pool.submit(new SubmitSm());
+        assertEquals(0, sessions.get(0).sent.size());
+        assertEquals(2, sessions.get(1).sent.size() + sessions.get(2).sent.size());
+    }
+
+    @Test
+    void equallyLoadedBindsShareTheTraffic() throws Exception {
+        start(3);
+        for (int i = 0; i < 6; i++) {
+            pool.submit(new SubmitSm());
+        }
+        for (FakeSession session : sessions) {
+            assertEquals(2, session.sent.size());
+        }
+    }
+
+    @Test
+    void unboundSessionsAreSkipped() throws Exception {
+        start(3);
+        sessions.get(1).bound = false;
+        for (int i = 0; i < 4; i++) {
+            pool.submit(new SubmitSm());
+        }
+        assertEquals(0, sessions.get(1).sent.size());
+        assertEquals(2, sessions.get(0).sent.size());
+        assertEquals(2, sessions.get(2).sent.size());
+    }
+
+    @Test
+    void sessionBoundAfterCloseIsReleased() throws Exception {
+        onBind = () -> {
+            if (sessions.size() == 2) {
+                pool.close(0); // close() runs while the second bind is in progress
+            }
+        };
+        start(3);
+        for (FakeSession session : sessions) {
+            assertTrue(session.destroyed);
+        }
+        assertEquals(0, pool.getEngines().size());
+    }
+
+    private void start(int binds) throws Exception {
+        SmppSessionConfiguration config = new SmppSessionConfiguration();
+        config.setName("smsc");
+        config.setSystemId("esme");
+        pool = new SmppSessionPool(client, List.of(config), binds, false, 100,
+                AsyncSubmitEngine.CompletionHandler::new, null,
+                new SessionSupervisor(60_000, 1000, 3, redispatchExecutor), redispatchExecutor, monitorExecutor);
+        pool.start();
+    }
+
+    // Client whose binds succeed at once with sessions that keep every submit outstanding
+    private final class FakeClient extends DefaultSmppClient {
+        @Override
+        public SmppSession bind(SmppSessionConfiguration config, SmppSessionHandler handler) {
+            FakeSession session = new FakeSession(config);
+            sessions.add(session);
+            onBind.run();
+            return session.proxy;
+        }
+    }
+
+    private static final class FakeSession {
+        private final Window<Integer, PduRequest, PduResponse> window = new Window<>(100);
+        private final List<PduRequest<?>> sent = new ArrayList<>();
+        private final SmppSession proxy;
+        private int nextSequence = 1;
+        private volatile boolean bound = true;
+        private volatile boolean destroyed;
+
+        FakeSession(SmppSessionConfiguration config) {
+            proxy = (SmppSession) Proxy.newProxyInstance(SmppSession.class.getClassLoader(),
+                    new Class<?>[]{SmppSession.class}, (p, method, args) -> switch (method.getName()) {
+                        case "getConfiguration" -> config;
+                        case "getSendWindow" -> window;
+                        case "isBound" -> bound;
+                        case "getStateName" -> bound ? "BOUND" : "CLOSED";
+                        case "hasCounters" -> false;
+                        case "sendRequestPdu" -> {
+                            PduRequest<?> request = (PduRequest<?>) args[0];
+                            sent.add(request);
+                            offer(request);
+                            yield null;
+                        }
+                        case "unbind" -> {
+                            bound = false;
+                            yield null;
+                        }
+                        case "destroy" -> {
+                            destroyed = true;
+                            yield null;
+                        }
+                        case "hashCode" -> System.identityHashCode(p);
+                        case "equals" -> p == args[0];
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        // Submits already in the window from earlier traffic
+        void preload(int count) throws Exception {
+            for (int i = 0; i < count; i++) {
+                offer(new SubmitSm());
+            }
+        }
+
+        private void offer(PduRequest<?> request) throws Exception {
+            if (!request.hasSequenceNumberAssigned()) {
+                request.setSequenceNumber(nextSequence++);
+            }
+            window.offer(request.getSequenceNumber(), request, 0);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.alpha.clients;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.type.Address;
+import org.alpha.utils.AllocationMeter;
+import org.alpha.utils.SmsEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SubmitSmTemplateTest {
+    private static final int ALLOCATION_BUDGET_PER_MESSAGE = 2048; // Max bytes allocated building one message, all parts
+
+    // Same template and suffix as BatchSmppClient's batch messages
+    private final SubmitSmTemplate template = new SubmitSmTemplate(new Address((byte) 0x03, (byte) 0x00, "40404"),
+            (byte) 0x01, (byte) 0x01, (byte) 0x00, SmppConstants.REGISTERED_DELIVERY_SMSC_RECEIPT_REQUESTED, false,
+            "This is a test message for batch processing. "
+                    + "Testing long message handling with proper payload configuration. "
+                    + "Each message will be uniquely identified. - Message #",
+            new MessageSegmenter(MessageSegmenter.Mode.UDH_8BIT));
+    private final Address destination = template.destination("44555519205");
+
+    @Test
+    void batchMessageStaysWithinAllocationBudget() throws Exception {
+        double bytes = AllocationMeter.bytesPerOperation(this::createBatchMessage, 10000, 10000);
+        assumeTrue(bytes >= 0, "allocation counting unsupported by this JVM");
+        assertTrue(bytes <= ALLOCATION_BUDGET_PER_MESSAGE,
+                "SubmitSm construction allocates " + bytes + " bytes/message");
+    }
+
+    @Test
+    void batchMessageIsSplitIntoConcatenatedParts() throws Exception {
+        List<SubmitSm> parts = template.createParts(destination,
+                template.body().appendDecimal(7).append(" - ID: ").appendHex(0x1234));
+        assertTrue(parts.size() > 1, "expected a concatenated message, got " + parts.size() + " part(s)");
+        for (SubmitSm part : parts) {
+            assertTrue((part.getEsmClass() & SmppConstants.ESM_CLASS_UDHI_MASK) != 0, "part without UDH indicator");
+        }
+    }
+
+    @Test
+    void encodingIsSelectedOverPrefixAndSuffixTogether() throws Exception {
+        // The prefix alone fits GSM7 and the suffix alone Latin-1, but only UCS-2 carries both
+        SubmitSmTemplate mixed = new SubmitSmTemplate(new Address((byte) 0x03, (byte) 0x00, "40404"),
+                (byte) 0x01, (byte) 0x01, (byte) 0x00, (byte) 0x00, true, "Ω ");
+        SubmitSm submit = mixed.create(destination, mixed.body().append("â"));
+
+        assertEquals(SmsEncoder.Encoding.UCS2.getDataCoding(), submit.getDataCoding());
+        assertEquals("Ω â", SmsEncoder.decode(submit.getShortMessage(), submit.getDataCoding()));
+    }
+
+    private void createBatchMessage(int i) throws Exception {
+        template.createParts(destination, template.body().appendDecimal(i).append(" - ID: ").appendHex(i));
+    }
+}
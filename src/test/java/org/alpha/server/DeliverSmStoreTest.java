@@ -0,0 +1,99 @@
+package org.alpha.server;
+
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.type.Address;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeliverSmStoreTest {
+    private static final String SYSTEM_ID = "esme";
+    private static final int SEGMENT_SIZE = 4096;
+    private static final Path FIRST_SEGMENT = Path.of(SYSTEM_ID, "0000000000000000.seg");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void pendingSurvivesARestart() throws IOException {
+        DeliverSmStore store = new DeliverSmStore(directory, SEGMENT_SIZE, 100);
+        // Enough to roll over to several segments
+        for (int i = 0; i < 100; i++) {
+            store.append(SYSTEM_ID, deliver(i));
+        }
+        store.close();
+
+        DeliverSmStore reopened = new DeliverSmStore(directory, SEGMENT_SIZE, 100);
+        assertEquals(100, reopened.getPending(SYSTEM_ID));
+        assertEquals(0, reopened.getPending("other"));
+        reopened.close();
+    }
+
+    @Test
+    void tornRecordIsCutOnRecovery() throws IOException {
+        DeliverSmStore store = new DeliverSmStore(directory, SEGMENT_SIZE, 100);
+        for (int i = 0; i < 3; i++) {
+            store.append(SYSTEM_ID, deliver(i));
+        }
+        store.close();
+        // A crash in the middle of the third write: its bytes no longer match its crc
+        corruptRecord(directory.resolve(FIRST_SEGMENT), 2);
+
+        DeliverSmStore recovered = new DeliverSmStore(directory, SEGMENT_SIZE, 100);
+        assertEquals(2, recovered.getPending(SYSTEM_ID));
+        // Appends go where the torn record was
+        recovered.append(SYSTEM_ID, deliver(3));
+        recovered.close();
+
+        DeliverSmStore reopened = new DeliverSmStore(directory, SEGMENT_SIZE, 100);
+        assertEquals(3, reopened.getPending(SYSTEM_ID));
+        reopened.close();
+    }
+
+    @Test
+    void appendAfterCloseFails() {
+        DeliverSmStore store = new DeliverSmStore(directory, SEGMENT_SIZE, 100);
+        store.close();
+
+        assertThrows(IOException.class, () -> store.append(SYSTEM_ID, deliver(0)));
+    }
+
+    private static DeliverSm deliver(int i) throws IOException {
+        try {
+            DeliverSm deliver = new DeliverSm();
+            deliver.setSourceAddress(new Address((byte) 0x01, (byte) 0x01, "4479000000" + i));
+            deliver.setDestAddress(new Address((byte) 0x03, (byte) 0x00, "40404"));
+            deliver.setShortMessage(("mobile originated message #" + i).getBytes(StandardCharsets.US_ASCII));
+            return deliver;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Flips a byte in the body of the n-th record of a segment, records being [length][crc32][pdu]
+    private static void corruptRecord(Path segment, int n) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            long position = 0;
+            for (int i = 0; i < n; i++) {
+                channel.read(length.clear(), position);
+                position += 8 + length.flip().getInt();
+            }
+            ByteBuffer body = ByteBuffer.allocate(1);
+            channel.read(body, position + 8 + 20);
+            body.put(0, (byte) ~body.get(0));
+            channel.write(body.flip(), position + 8 + 20);
+        }
+        assertEquals(SEGMENT_SIZE, Files.size(segment));
+    }
+}
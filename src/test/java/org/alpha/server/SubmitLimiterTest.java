@@ -0,0 +1,102 @@
+package org.alpha.server;
+
+import com.cloudhopper.smpp.SmppConstants;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SubmitLimiterTest {
+    private static final long DAY = 86_400_000L;
+
+    private final AtomicLong clock = new AtomicLong(DAY * 20000 + DAY / 2);
+
+    @Test
+    void dailyQuotaRejectsOnceUsedUp() {
+        SubmitLimiter limiter = new SubmitLimiter(0, 0, 3, "", clock::get);
+        SubmitLimiter.Bind bind = limiter.bind("esme");
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(SmppConstants.STATUS_OK, bind.check());
+        }
+        assertEquals(SmppConstants.STATUS_THROTTLED, bind.check());
+        assertEquals(3, limiter.getUsedToday("esme"));
+        assertEquals(3, limiter.getAccepted());
+        assertEquals(1, limiter.getQuotaExceeded());
+    }
+
+    @Test
+    void quotaIsSharedByTheBindsOfASystemId() {
+        SubmitLimiter limiter = new SubmitLimiter(0, 0, 2, "", clock::get);
+
+        assertEquals(SmppConstants.STATUS_OK, limiter.bind("esme").check());
+        assertEquals(SmppConstants.STATUS_OK, limiter.bind("esme").check());
+        assertEquals(SmppConstants.STATUS_THROTTLED, limiter.bind("esme").check());
+        assertEquals(SmppConstants.STATUS_OK, limiter.bind("other").check());
+    }
+
+    @Test
+    void quotaResetsAtMidnight() {
+        SubmitLimiter limiter = new SubmitLimiter(0, 0, 1, "", clock::get);
+        SubmitLimiter.Bind bind = limiter.bind("esme");
+        assertEquals(SmppConstants.STATUS_OK, bind.check());
+        assertEquals(SmppConstants.STATUS_THROTTLED, bind.check());
+
+        clock.addAndGet(DAY / 2);
+
+        assertEquals(0, limiter.getUsedToday("esme"));
+        assertEquals(SmppConstants.STATUS_OK, bind.check());
+        assertEquals(1, limiter.getUsedToday("esme"));
+    }
+
+    @Test
+    void quotaUnitIsRefundedWhenARateRejects() {
+        SubmitLimiter limiter = new SubmitLimiter(0, 1, 10, "", clock::get);
+        SubmitLimiter.Bind bind = limiter.bind("esme");
+
+        assertEquals(SmppConstants.STATUS_OK, bind.check());
+        assertEquals(SmppConstants.STATUS_THROTTLED, bind.check());
+        assertEquals(1, limiter.getUsedToday("esme"));
+        assertEquals(1, limiter.getThrottled());
+        assertEquals(0, limiter.getQuotaExceeded());
+    }
+
+    @Test
+    void systemIdLimitOverridesTheDefaults() {
+        SubmitLimiter limiter = new SubmitLimiter(0, 0, 0, "vip:0:1", clock::get);
+
+        assertEquals(SmppConstants.STATUS_OK, limiter.bind("vip").check());
+        assertEquals(SmppConstants.STATUS_THROTTLED, limiter.bind("vip").check());
+        assertEquals(SmppConstants.STATUS_OK, limiter.bind("default").check());
+        assertEquals(SmppConstants.STATUS_OK, limiter.bind("default").check());
+
+        limiter.clearLimit("vip");
+        assertEquals(SmppConstants.STATUS_OK, limiter.bind("vip").check());
+    }
+
+    @Test
+    void sessionOverItsRateDoesNotDrainTheSystemIdRate() {
+        // system_id: 100 TPS, 10 back to back; each session: 10 TPS, 1 back to back
+        SubmitLimiter limiter = new SubmitLimiter(100, 10, 0, "", clock::get);
+        SubmitLimiter.Bind noisy = limiter.bind("esme");
+        assertEquals(SmppConstants.STATUS_OK, noisy.check());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(SmppConstants.STATUS_THROTTLED, noisy.check());
+        }
+
+        // The other nine system_id permits of the burst are still there
+        for (int i = 0; i < 9; i++) {
+            assertEquals(SmppConstants.STATUS_OK, limiter.bind("esme").check(), "session " + i);
+        }
+    }
+
+    @Test
+    void systemIdRateRejectsAcrossSessions() {
+        SubmitLimiter limiter = new SubmitLimiter(1, 0, 0, "", clock::get);
+
+        assertEquals(SmppConstants.STATUS_OK, limiter.bind("esme").check());
+        assertEquals(SmppConstants.STATUS_THROTTLED, limiter.bind("esme").check());
+        assertEquals(SmppConstants.STATUS_OK, limiter.bind("other").check());
+    }
+}
@@ -0,0 +1,197 @@
+package org.alpha.server;
+
+import com.cloudhopper.smpp.SmppBindType;
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import org.alpha.utils.LatencyRecorder;
+import org.alpha.utils.PduEventLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubmitPipelineTest {
+    @TempDir
+    Path directory;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final List<String> trace = new CopyOnWriteArrayList<>(); // stage runs and responses sent, in order
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private final SmppSession session = session();
+    private PduEventLog events;
+    private SubmitPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        events = new PduEventLog(directory.resolve("events.pdulog"), 64, "");
+        pipeline = new SubmitPipeline(new LatencyRecorder(), executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        events.close();
+    }
+
+    @Test
+    void inlineStagesRunInOrderOnTheSessionThread() {
+        pipeline.inline(stage("auth", true)).inline(stage("throttle", true)).inline(stage("persist", true));
+        SubmitContext context = context();
+
+        PduResponse response = pipeline.run(context);
+
+        assertSame(context.getResponse(), response);
+        assertEquals(List.of("auth", "throttle", "persist"), trace);
+        threads.forEach(thread -> assertSame(Thread.currentThread(), thread));
+    }
+
+    @Test
+    void offloadedStagesRunAfterTheInlineOnesAndSendTheResponse() throws Exception {
+        pipeline.inline(stage("auth", true)).offload(stage("persist", true)).inline(stage("deliver", true));
+
+        assertNull(pipeline.run(context()));
+        drain();
+
+        // An inline stage added after an offloaded one runs offloaded too
+        assertEquals(List.of("auth", "persist", "deliver", "sent"), trace);
+        assertSame(Thread.currentThread(), threads.get(0));
+        assertNotSame(Thread.currentThread(), threads.get(1));
+        assertSame(threads.get(1), threads.get(2));
+    }
+
+    @Test
+    void responseGivenInlineIsReturnedToTheSession() throws Exception {
+        pipeline.inline(stage("persist", true)).inline(respond("respond")).offload(stage("deliver", true));
+        SubmitContext context = context();
+
+        assertSame(context.getResponse(), pipeline.run(context));
+        drain();
+
+        // The session sends it; the offloaded stages do not send it again
+        assertEquals(List.of("persist", "respond", "deliver"), trace);
+    }
+
+    @Test
+    void responseGivenOffloadedIsSentBeforeTheLaterStages() throws Exception {
+        pipeline.offload(stage("persist", true)).inline(respond("respond")).inline(stage("deliver", true));
+
+        assertNull(pipeline.run(context()));
+        drain();
+
+        assertEquals(List.of("persist", "respond", "sent", "deliver"), trace);
+    }
+
+    @Test
+    void stageReturningFalseEndsThePipeline() throws Exception {
+        pipeline.inline(stage("throttle", false)).offload(stage("persist", true));
+        SubmitContext context = context();
+
+        assertSame(context.getResponse(), pipeline.run(context));
+        drain();
+
+        assertEquals(List.of("throttle"), trace);
+    }
+
+    @Test
+    void failingStageIsAnsweredWithSystemError() throws Exception {
+        pipeline.offload(new SubmitStage() {
+            @Override
+            public String getName() {
+                return "persist";
+            }
+
+            @Override
+            public boolean process(SubmitContext context) throws Exception {
+                throw new Exception("disk full");
+            }
+        }).inline(stage("deliver", true));
+        SubmitContext context = context();
+
+        assertNull(pipeline.run(context));
+        drain();
+
+        assertEquals(List.of("sent"), trace);
+        assertEquals(SmppConstants.STATUS_SYSERR, context.getResponse().getCommandStatus());
+    }
+
+    private SubmitStage stage(String name, boolean proceed) {
+        return new SubmitStage() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public boolean process(SubmitContext context) {
+                trace.add(name);
+                threads.add(Thread.currentThread());
+                return proceed;
+            }
+        };
+    }
+
+    private SubmitStage respond(String name) {
+        return new SubmitStage() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public boolean process(SubmitContext context) {
+                trace.add(name);
+                context.respond();
+                return true;
+            }
+        };
+    }
+
+    private SubmitContext context() {
+        DeliverSmOutbox outbox = new DeliverSmOutbox("test", session, 16, 1000, 100);
+        SubmitLimiter.Bind limits = new SubmitLimiter(0, 0, 0, "").bind("esme");
+        SubmitSm submit = new SubmitSm();
+        submit.setSequenceNumber(1);
+        return new SubmitContext(session, outbox, limits, events, submit);
+    }
+
+    private void drain() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    // Session answering the calls the pipeline and the outbox make; sent responses go to the trace
+    private SmppSession session() {
+        SmppSessionConfiguration configuration = new SmppSessionConfiguration();
+        configuration.setSystemId("esme");
+        return (SmppSession) Proxy.newProxyInstance(SmppSession.class.getClassLoader(), new Class<?>[]{SmppSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getConfiguration" -> configuration;
+                    case "getBindType" -> SmppBindType.TRANSCEIVER;
+                    case "sendResponsePdu" -> {
+                        trace.add("sent");
+                        yield null;
+                    }
+                    case "toString" -> "session";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,104 @@
+package org.alpha.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AimdRateLimiterTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void fixedAllowsExactlyTheBurstBackToBack() {
+        AimdRateLimiter limiter = AimdRateLimiter.fixed(1, 5); // one permit per second: no refill during the test
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(), "permit " + i);
+        }
+        assertFalse(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    void burstOfOneAllowsASinglePermit() {
+        AimdRateLimiter limiter = AimdRateLimiter.fixed(1, 0);
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    void throttlingCutsTheRateOncePerCooldown() {
+        AimdRateLimiter limiter = new AimdRateLimiter(100, 10, 50, 0.5, 60_000, 1);
+        limiter.onThrottled();
+        assertEquals(50, limiter.getRate(), DELTA);
+        limiter.onThrottled(); // same congestion episode
+        limiter.onThrottled();
+        assertEquals(50, limiter.getRate(), DELTA);
+    }
+
+    @Test
+    void throttlingNeverGoesBelowTheFloor() {
+        AimdRateLimiter limiter = new AimdRateLimiter(100, 30, 50, 0.5, 0, 1);
+        limiter.onThrottled();
+        assertEquals(50, limiter.getRate(), DELTA);
+        limiter.onThrottled();
+        assertEquals(30, limiter.getRate(), DELTA);
+        limiter.onThrottled();
+        assertEquals(30, limiter.getRate(), DELTA);
+    }
+
+    @Test
+    void successGrowsTheRateAdditivelyUpToTheCeiling() {
+        AimdRateLimiter limiter = new AimdRateLimiter(20, 1, 50, 0.5, 0, 1);
+        limiter.onThrottled();
+        assertEquals(10, limiter.getRate(), DELTA);
+        // Each success adds increasePerSecond / rate, i.e. increasePerSecond TPS per second of traffic
+        limiter.onSuccess();
+        assertEquals(15, limiter.getRate(), DELTA);
+        limiter.onSuccess();
+        assertEquals(15 + 50 / 15d, limiter.getRate(), DELTA);
+        limiter.onSuccess();
+        assertEquals(20, limiter.getRate(), DELTA);
+        limiter.onSuccess();
+        assertEquals(20, limiter.getRate(), DELTA);
+    }
+
+    @Test
+    void setMaxRateCapsAnAdaptiveLimiterAndMovesAFixedOne() {
+        AimdRateLimiter adaptive = new AimdRateLimiter(100, 10, 50, 0.5, 0, 1);
+        adaptive.onThrottled();
+        adaptive.setMaxRate(200);
+        assertEquals(50, adaptive.getRate(), DELTA); // regained through onSuccess, not at once
+        adaptive.setMaxRate(40);
+        assertEquals(40, adaptive.getRate(), DELTA);
+        adaptive.setMaxRate(5);
+        assertEquals(5, adaptive.getRate(), DELTA);
+        adaptive.onThrottled();
+        assertEquals(5, adaptive.getRate(), DELTA); // the floor followed the ceiling down
+
+        AimdRateLimiter fixed = AimdRateLimiter.fixed(100, 1);
+        fixed.setMaxRate(250);
+        assertEquals(250, fixed.getRate(), DELTA);
+        assertEquals(250, fixed.getMaxRate(), DELTA);
+    }
+
+    @Test
+    void invalidBoundsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new AimdRateLimiter(10, 20, 1, 0.5, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AimdRateLimiter(10, 1, 1, 1, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> AimdRateLimiter.fixed(10, 1).setMaxRate(0));
+    }
+
+    @Test
+    void canAcquireTakesNothing() {
+        AimdRateLimiter limiter = AimdRateLimiter.fixed(1, 2);
+        assertTrue(limiter.canAcquire());
+        assertTrue(limiter.canAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.canAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.canAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+}
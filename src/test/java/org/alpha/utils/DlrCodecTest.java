@@ -0,0 +1,113 @@
+package org.alpha.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DlrCodecTest {
+    private static final long MINUTE = 60000;
+
+    private final DlrCodec.Receipt receipt = new DlrCodec.Receipt();
+
+    @Test
+    void encodedReceiptIsReadBack() {
+        long submitDate = 1718000000000L / MINUTE * MINUTE; // dates carry minutes only
+        long doneDate = submitDate + 5 * MINUTE;
+        byte[] text = "Hello from the receipt round-trip test".getBytes(StandardCharsets.US_ASCII);
+        byte[] bytes = new byte[DlrCodec.MAX_LENGTH + 10];
+
+        int length = DlrCodec.encode(bytes, 10, "0123456789abcdef", 1, 1, submitDate, doneDate,
+                DeliveryReport.DeliveryStatus.DELIVRD, 0, text);
+
+        assertTrue(receipt.wrap(bytes, 10, length));
+        assertEquals("0123456789abcdef", receipt.getId());
+        assertEquals(DlrCorrelationIndex.hash("0123456789abcdef"), receipt.idHash());
+        assertEquals(1, receipt.getSubmitted());
+        assertEquals(1, receipt.getDelivered());
+        assertEquals(submitDate, receipt.getSubmitDate());
+        assertEquals(doneDate, receipt.getDoneDate());
+        assertEquals(DeliveryReport.DeliveryStatus.DELIVRD, receipt.getStatus());
+        assertEquals(0, receipt.getError());
+        assertEquals("Hello from the recei",
+                new String(bytes, receipt.getTextOffset(), receipt.getTextLength(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void everyStatusSurvivesTheRoundTrip() {
+        byte[] bytes = new byte[DlrCodec.MAX_LENGTH];
+        for (DeliveryReport.DeliveryStatus status : DeliveryReport.DeliveryStatus.values()) {
+            int length = DlrCodec.encode(bytes, 0, "id", 1, 0, 0, 0, status, 12, null);
+
+            assertTrue(receipt.wrap(bytes, 0, length));
+            assertEquals(status, receipt.getStatus());
+            assertEquals(12, receipt.getError());
+        }
+    }
+
+    @Test
+    void otherSmscFormatsAreParsed() {
+        byte[] bytes = ("ID:abc SUB:001 DLVRD:000 foo:bar SUBMIT DATE:2406101213 DONE DATE:2406101214 "
+                + "STAT:UNDELIV ERR:034 TEXT:two words").getBytes(StandardCharsets.US_ASCII);
+
+        assertTrue(receipt.wrap(bytes, 0, bytes.length));
+        assertEquals("abc", receipt.getId());
+        assertEquals(0, receipt.getDelivered());
+        assertEquals(DeliveryReport.DeliveryStatus.UNDELIV, receipt.getStatus());
+        assertEquals(34, receipt.getError());
+        assertEquals(receipt.getSubmitDate() + MINUTE, receipt.getDoneDate());
+        assertEquals("two words",
+                new String(bytes, receipt.getTextOffset(), receipt.getTextLength(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void textWithoutIdIsNotAReceipt() {
+        byte[] bytes = "hello there".getBytes(StandardCharsets.US_ASCII);
+
+        assertFalse(receipt.wrap(bytes, 0, bytes.length));
+    }
+
+    @Test
+    void largestReceiptFitsMaxLength() {
+        String id = "x".repeat(65);
+        byte[] text = new byte[40];
+        byte[] bytes = new byte[DlrCodec.MAX_LENGTH];
+
+        int length = DlrCodec.encode(bytes, 0, id, Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 0,
+                DeliveryReport.DeliveryStatus.UNDELIV, Integer.MAX_VALUE, text);
+
+        assertTrue(length <= DlrCodec.MAX_LENGTH);
+        assertTrue(receipt.wrap(bytes, 0, length));
+        assertEquals(id, receipt.getId());
+        assertEquals(Integer.MAX_VALUE, receipt.getSubmitted());
+        assertEquals(Integer.MAX_VALUE, receipt.getError());
+    }
+
+    @Test
+    void shortDestinationIsRejected() {
+        byte[] bytes = new byte[DlrCodec.MAX_LENGTH + 10];
+
+        assertThrows(IndexOutOfBoundsException.class, () -> DlrCodec.encode(bytes, 11, "id", 1, 1, 0, 0,
+                DeliveryReport.DeliveryStatus.DELIVRD, 0, null));
+        assertThrows(IndexOutOfBoundsException.class, () -> DlrCodec.encode(bytes, -1, "id", 1, 1, 0, 0,
+                DeliveryReport.DeliveryStatus.DELIVRD, 0, null));
+    }
+
+    @Test
+    void invalidFieldsAreRejected() {
+        byte[] bytes = new byte[DlrCodec.MAX_LENGTH];
+
+        assertThrows(IllegalArgumentException.class, () -> DlrCodec.encode(bytes, 0, "x".repeat(66), 1, 1, 0, 0,
+                DeliveryReport.DeliveryStatus.DELIVRD, 0, null));
+        assertThrows(IllegalArgumentException.class, () -> DlrCodec.encode(bytes, 0, "id", -1, 1, 0, 0,
+                DeliveryReport.DeliveryStatus.DELIVRD, 0, null));
+        assertThrows(IllegalArgumentException.class, () -> DlrCodec.encode(bytes, 0, "id", 1, -1, 0, 0,
+                DeliveryReport.DeliveryStatus.DELIVRD, 0, null));
+        assertThrows(IllegalArgumentException.class, () -> DlrCodec.encode(bytes, 0, "id", 1, 1, 0, 0,
+                DeliveryReport.DeliveryStatus.DELIVRD, -5, null));
+    }
+}
@@ -0,0 +1,85 @@
+package org.alpha.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DlrCorrelationIndexTest {
+    private static final long TTL = 60000;
+
+    private final DlrCorrelationIndex index = new DlrCorrelationIndex(16, TTL);
+    private final DlrCorrelationIndex.Correlation out = new DlrCorrelationIndex.Correlation();
+
+    @Test
+    void removeReturnsTheEntryOnce() {
+        long now = System.currentTimeMillis();
+        index.put("a1b2c3", 42, now);
+
+        assertTrue(index.remove("a1b2c3", out));
+        assertEquals(42, out.getInternalId());
+        assertEquals(now, out.getSubmitTime());
+        assertFalse(index.remove("a1b2c3", out));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void putReplacesTheEntryOfTheSameId() {
+        long now = System.currentTimeMillis();
+        index.put("a1b2c3", 1, now);
+        index.put("a1b2c3", 2, now);
+
+        assertEquals(1, index.size());
+        assertTrue(index.remove("a1b2c3", out));
+        assertEquals(2, out.getInternalId());
+    }
+
+    @Test
+    void removeIgnoresAnEntryPastItsTtl() {
+        index.put("old", 7, System.currentTimeMillis() - TTL - 1000);
+
+        assertFalse(index.remove("old", out));
+    }
+
+    @Test
+    void expirePurgesOnlyEntriesPastTheTtl() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            index.put("old-" + i, i, now - TTL - 1000);
+            index.put("new-" + i, i, now);
+        }
+
+        assertEquals(1000, index.expire(now));
+        assertEquals(1000, index.size());
+        // Deleting the old entries shifted the new ones back along their probe chains
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(index.remove("new-" + i, out), "new-" + i);
+            assertEquals(i, out.getInternalId());
+        }
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void tablesGrowPastTheExpectedEntries() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 50000; i++) {
+            index.put(Integer.toHexString(i), i, now);
+        }
+
+        assertEquals(50000, index.size());
+        for (int i = 0; i < 50000; i++) {
+            assertTrue(index.remove(Integer.toHexString(i), out));
+            assertEquals(i, out.getInternalId());
+        }
+    }
+
+    @Test
+    void hashOfBytesMatchesHashOfText() {
+        byte[] bytes = "xx0123456789abcdefxx".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(DlrCorrelationIndex.hash("0123456789abcdef"), DlrCorrelationIndex.hash(bytes, 2, 16));
+    }
+}
@@ -0,0 +1,96 @@
+package org.alpha.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    private static final double MAX_RELATIVE_ERROR = 1.0 / 64; // one sub-bucket of a magnitude
+
+    @Test
+    void percentilesAreWithinOneSubBucketAcrossMagnitudes() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform from 1 µs to about 1 s
+            values[i] = (long) Math.pow(10, 3 + random.nextDouble() * 6);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double percentile : new double[]{1, 10, 50, 90, 99, 99.9, 99.99}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = snapshot.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact && reported <= exact * (1 + MAX_RELATIVE_ERROR),
+                    "p" + percentile + ": exact " + exact + ", reported " + reported);
+        }
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 128; value++) {
+            histogram.record(value);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(63, snapshot.getValueAtPercentile(50));
+        assertEquals(127, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    void negativeDurationsCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getValueAtPercentile(100));
+    }
+
+    @Test
+    void largestValuesStayInRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(Long.MAX_VALUE, histogram.snapshot().getValueAtPercentile(50));
+    }
+
+    @Test
+    void mergeAddsSamplesAndResetClears() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            a.record(1000);
+        }
+        b.record(5_000_000);
+        LatencyHistogram.Snapshot merged = a.snapshot().merge(b.snapshot());
+
+        assertEquals(100, merged.getCount());
+        assertEquals(5_000_000, merged.getMax());
+        assertEquals(1000, merged.getValueAtPercentile(99), 1000 * MAX_RELATIVE_ERROR);
+        assertTrue(merged.getValueAtPercentile(100) >= 5_000_000);
+
+        a.reset();
+        assertEquals(0, a.snapshot().getCount());
+        assertEquals(0, a.snapshot().getValueAtPercentile(50));
+    }
+
+    @Test
+    void scopeRecordsIntoSessionAndHost() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.scope("s1", "h:1").record(LatencyRecorder.Metric.SUBMIT_RESP, 2000);
+        recorder.scope("s2", "h:1").record(LatencyRecorder.Metric.SUBMIT_RESP, 4000);
+
+        assertEquals(1, recorder.histogram("submit->resp session=s1").snapshot().getCount());
+        assertEquals(2, recorder.histogram("submit->resp host=h:1").snapshot().getCount());
+        assertEquals(0, recorder.histogram("window-wait host=h:1").snapshot().getCount());
+    }
+}
@@ -0,0 +1,104 @@
+package org.alpha.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PduEventLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordedEventsAreReadBack() throws IOException {
+        Path file = directory.resolve("events.pdulog");
+        PduEventLog log = new PduEventLog(file, 64, "");
+        byte[] data = "hello".getBytes(StandardCharsets.US_ASCII);
+
+        assertTrue(log.record(PduEventLog.Category.SUBMIT, PduEventLog.Direction.IN, "esme-1", 0, 7, data));
+        assertTrue(log.record(PduEventLog.Category.SUBMIT_RESP, PduEventLog.Direction.OUT, "esme-1", 0x58, 7, null));
+        log.close();
+
+        List<PduEventLog.Event> events = new ArrayList<>();
+        PduEventLog.read(file, events::add);
+        assertEquals(2, events.size());
+        assertEquals(2, log.getWritten());
+        PduEventLog.Event submit = events.get(0);
+        assertEquals(PduEventLog.Category.SUBMIT, submit.category());
+        assertEquals(PduEventLog.Direction.IN, submit.direction());
+        assertEquals("esme-1", submit.session());
+        assertEquals(7, submit.sequenceNumber());
+        assertArrayEquals(data, submit.data());
+        assertEquals(0x58, events.get(1).commandStatus());
+        assertEquals(0, events.get(1).data().length);
+    }
+
+    @Test
+    void oversizedDataIsTruncatedToTheSlot() throws IOException {
+        Path file = directory.resolve("events.pdulog");
+        PduEventLog log = new PduEventLog(file, 64, "");
+
+        assertTrue(log.record(PduEventLog.Category.DELIVER, PduEventLog.Direction.OUT, "esme", 0, 1, new byte[1000]));
+        log.close();
+
+        List<PduEventLog.Event> events = new ArrayList<>();
+        PduEventLog.read(file, events::add);
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).data().length < 256);
+    }
+
+    @Test
+    void disabledCategoryIsSampledOut() throws IOException {
+        PduEventLog log = new PduEventLog(directory.resolve("events.pdulog"), 64, "RECEIPT:0:0");
+
+        assertFalse(log.record(PduEventLog.Category.RECEIPT, PduEventLog.Direction.OUT, "esme", 0, 1, null));
+        assertTrue(log.record(PduEventLog.Category.ERROR, PduEventLog.Direction.OUT, "esme", 0, 1, null));
+        log.close();
+
+        assertEquals(1, log.getSampledOut());
+        assertEquals(1, log.getWritten());
+    }
+
+    @Test
+    void everyAcceptedEventIsWrittenWhenCloseRacesRecording() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            Path file = directory.resolve("race-" + round + ".pdulog");
+            PduEventLog log = new PduEventLog(file, 1024, "");
+            AtomicInteger accepted = new AtomicInteger();
+            AtomicBoolean stop = new AtomicBoolean();
+            Thread[] producers = new Thread[4];
+            for (int t = 0; t < producers.length; t++) {
+                producers[t] = new Thread(() -> {
+                    while (!stop.get()) {
+                        if (log.record(PduEventLog.Category.SUBMIT, PduEventLog.Direction.IN, "esme", 0, 1, null)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                });
+                producers[t].start();
+            }
+            Thread.sleep(5);
+            log.close();
+            stop.set(true);
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            int[] read = new int[1];
+            PduEventLog.read(file, event -> read[0]++);
+            assertEquals(accepted.get(), read[0], "round " + round);
+            assertEquals(accepted.get(), log.getWritten(), "round " + round);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.alpha.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SmsEncoderTest {
+    @Test
+    void selectPicksTheSmallestEncoding() {
+        assertEquals(SmsEncoder.Encoding.GSM7, SmsEncoder.select("Hello {world} €5", true));
+        assertEquals(SmsEncoder.Encoding.LATIN1, SmsEncoder.select("Crème brûlée", true));
+        assertEquals(SmsEncoder.Encoding.UCS2, SmsEncoder.select("Crème brûlée", false));
+        assertEquals(SmsEncoder.Encoding.UCS2, SmsEncoder.select("Привет", true));
+    }
+
+    @Test
+    void selectDoesNotPickLatin1ForGsmOnlyCharacters() {
+        // Ω is in the GSM alphabet but not in Latin-1, â the other way round; é is in both
+        assertEquals(SmsEncoder.Encoding.UCS2, SmsEncoder.select("Ω â", true));
+        assertEquals(SmsEncoder.Encoding.UCS2, SmsEncoder.select("â Ω", true));
+        assertEquals(SmsEncoder.Encoding.GSM7, SmsEncoder.select("Ω é", true));
+    }
+
+    @Test
+    void selectPrefersLatin1WhenEscapesNeedMoreSegments() {
+        String braces = "{".repeat(140);
+
+        assertEquals(2, SmsEncoder.countSegments(braces, SmsEncoder.Encoding.GSM7));
+        assertEquals(SmsEncoder.Encoding.LATIN1, SmsEncoder.select(braces, true));
+        assertEquals(SmsEncoder.Encoding.GSM7, SmsEncoder.select(braces, false));
+        // Same segment count: GSM7 stays
+        assertEquals(SmsEncoder.Encoding.GSM7, SmsEncoder.select("{".repeat(80), true));
+    }
+
+    @Test
+    void segmentCountsFollowEachCharset() {
+        assertSegments(1, "a".repeat(160), SmsEncoder.Encoding.GSM7);
+        assertSegments(2, "a".repeat(161), SmsEncoder.Encoding.GSM7);
+        assertSegments(2, "a".repeat(306), SmsEncoder.Encoding.GSM7);
+        assertSegments(3, "a".repeat(307), SmsEncoder.Encoding.GSM7);
+        assertSegments(1, "a".repeat(140), SmsEncoder.Encoding.LATIN1);
+        assertSegments(2, "a".repeat(141), SmsEncoder.Encoding.LATIN1);
+        assertSegments(3, "a".repeat(269), SmsEncoder.Encoding.LATIN1);
+        assertSegments(1, "я".repeat(70), SmsEncoder.Encoding.UCS2);
+        assertSegments(2, "я".repeat(71), SmsEncoder.Encoding.UCS2);
+        assertSegments(3, "я".repeat(135), SmsEncoder.Encoding.UCS2);
+    }
+
+    @Test
+    void gsmExtensionCharactersTakeTwoSeptets() {
+        assertEquals(2, SmsEncoder.encodedLength('€', SmsEncoder.Encoding.GSM7));
+        assertSegments(1, "€".repeat(80), SmsEncoder.Encoding.GSM7);
+        // 76 escape sequences fill 152 of a part's 153 septets; the 77th goes to the next part
+        assertSegments(2, "€".repeat(81), SmsEncoder.Encoding.GSM7);
+        assertEquals(76, SmsEncoder.segmentEnd("€".repeat(81), 0, SmsEncoder.Encoding.GSM7, 153));
+    }
+
+    @Test
+    void surrogatePairIsNotSplit() {
+        String text = "a".repeat(66) + "😀" + "b".repeat(10);
+
+        assertEquals(66, SmsEncoder.segmentEnd(text, 0, SmsEncoder.Encoding.UCS2, 67));
+    }
+
+    @Test
+    void encodedTextDecodesBack() {
+        String text = "Price: €10 [ok] ^_^";
+        byte[] bytes = new byte[SmsEncoder.encodedLength(text, SmsEncoder.Encoding.GSM7)];
+        SmsEncoder.encode(text, SmsEncoder.Encoding.GSM7, bytes, 0);
+
+        assertEquals(text.length() + 5, bytes.length); // € [ ] ^ ^ are escaped
+        assertEquals(text, SmsEncoder.decode(bytes, SmsEncoder.Encoding.GSM7.getDataCoding()));
+    }
+
+    private static void assertSegments(int expected, String text, SmsEncoder.Encoding encoding) {
+        assertEquals(expected, SmsEncoder.countSegments(text, encoding), text.length() + " chars in " + encoding);
+    }
+}
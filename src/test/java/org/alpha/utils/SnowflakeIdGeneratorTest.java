@@ -0,0 +1,80 @@
+package org.alpha.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 200_000;
+
+    @Test
+    void idsOfConcurrentThreadsHaveNoDuplicates() throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, SnowflakeIdGenerator.Format.HEX);
+        Set<String> seen = ConcurrentHashMap.newKeySet(THREADS * IDS_PER_THREAD * 2);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    seen.add(generator.next());
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(THREADS * IDS_PER_THREAD, seen.size());
+    }
+
+    @Test
+    void idsOfOneThreadAreStrictlyIncreasing() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, SnowflakeIdGenerator.Format.DECIMAL);
+        long previous = generator.nextLong();
+        // Far more than the 512 ids one stripe hands out per millisecond
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextLong();
+            assertTrue(id > previous, "id " + id + " after " + previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void idCarriesNodeAndCreationTime() {
+        long before = System.currentTimeMillis();
+        long id = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID, SnowflakeIdGenerator.Format.HEX).nextLong();
+
+        assertEquals(SnowflakeIdGenerator.MAX_NODE_ID, SnowflakeIdGenerator.nodeOf(id));
+        assertTrue(SnowflakeIdGenerator.timestampOf(id) >= before);
+    }
+
+    @Test
+    void hexIdsSortLikeTheirValues() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, SnowflakeIdGenerator.Format.HEX);
+        long first = generator.nextLong();
+        long second = generator.nextLong();
+
+        assertEquals(16, generator.format(first).length());
+        assertTrue(generator.format(first).compareTo(generator.format(second)) < 0);
+        assertEquals(first, Long.parseUnsignedLong(generator.format(first), 16));
+    }
+
+    @Test
+    void nodeIdOutOfRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1, SnowflakeIdGenerator.Format.HEX));
+    }
+}
@@ -0,0 +1,81 @@
+package org.alpha.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    private static final long TICK = 10;
+    private static final int WHEEL_SIZE = 8; // one rotation is 80 ms
+    private static final long START = 1_000_000;
+
+    private final TimingWheel wheel = new TimingWheel(TICK, WHEEL_SIZE, START);
+
+    @Test
+    void timerBeyondOneRotationWaitsForItsRound() {
+        long deadline = START + 2 * WHEEL_SIZE * TICK + 35;
+        wheel.schedule(deadline, 1, 2, 3);
+        List<long[]> fired = new ArrayList<>();
+
+        // Its bucket comes round twice before the deadline
+        assertEquals(0, wheel.advance(deadline - TICK, (a, b, c) -> fired.add(new long[]{a, b, c})));
+        assertEquals(1, wheel.size());
+        assertEquals(1, wheel.advance(deadline, (a, b, c) -> fired.add(new long[]{a, b, c})));
+        assertEquals(0, wheel.size());
+        assertEquals(1, fired.size());
+        assertEquals(1, fired.get(0)[0]);
+        assertEquals(2, fired.get(0)[1]);
+        assertEquals(3, fired.get(0)[2]);
+    }
+
+    @Test
+    void timersFireInTheirTickAcrossRotations() {
+        int timers = 500;
+        for (int i = 0; i < timers; i++) {
+            // Several rotations' worth, many timers per bucket, scheduled out of order
+            long deadline = START + TICK + (i * 37L) % (5 * WHEEL_SIZE * TICK);
+            wheel.schedule(deadline, i, deadline, 0);
+        }
+        int[] fired = new int[1];
+        for (long now = START; now <= START + 6 * WHEEL_SIZE * TICK; now += TICK) {
+            long tickEnd = (now / TICK + 1) * TICK;
+            long tickStart = tickEnd - TICK;
+            fired[0] += wheel.advance(now, (a, deadline, c) -> {
+                assertTrue(deadline >= tickStart && deadline < tickEnd, "timer " + a + " fired in the wrong tick");
+            });
+        }
+        assertEquals(timers, fired[0]);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlineFiresOnTheNextTick() {
+        wheel.advance(START + 100, (a, b, c) -> {
+        });
+        wheel.schedule(START, 9, 0, 0);
+        long[] fired = new long[1];
+
+        assertEquals(1, wheel.advance(START + 100 + TICK, (a, b, c) -> fired[0] = a));
+        assertEquals(9, fired[0]);
+    }
+
+    @Test
+    void expiryMayScheduleIntoTheBucketBeingFired() {
+        wheel.schedule(START + TICK, 1, 0, 0);
+        int[] fired = new int[1];
+        TimingWheel.Expiry reschedule = (a, b, c) -> {
+            fired[0]++;
+            if (a < 3) {
+                wheel.schedule(START + (a + 1) * WHEEL_SIZE * TICK + TICK, a + 1, 0, 0);
+            }
+        };
+
+        wheel.advance(START + 4 * WHEEL_SIZE * TICK + TICK, reschedule);
+        assertEquals(3, fired[0]);
+        assertEquals(0, wheel.size());
+    }
+}